@@ -0,0 +1,118 @@
+package com.urlshortener.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bearer token authentication as the filter used to do it, with three
+ * parses that each rebuild the key and parser, against one parse with the
+ * precomputed parser and against the filter answering from its principal
+ * cache. The user lookup of the first two is a mock, so their numbers leave
+ * out the database round trip that the filter no longer makes.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="JwtAuthBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long";
+    private static final String USERNAME = "benchmark@example.com";
+    private static final Long USER_ID = 42L;
+
+    private JwtUtil jwtUtil;
+    private UserDetailsServiceImpl userDetailsService;
+    private JwtAuthFilter filter;
+    private String token;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private MockFilterChain chain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.DAYS.toMillis(1));
+        jwtUtil.init();
+        token = jwtUtil.generateToken(USERNAME, USER_ID);
+
+        UserDetails user = new User(USERNAME, "$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchma", List.of());
+        userDetailsService = Mockito.mock(UserDetailsServiceImpl.class);
+        Mockito.when(userDetailsService.loadUserByUsername(USERNAME)).thenReturn(user);
+
+        filter = new JwtAuthFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "principalCacheSize", 10_000L);
+        filter.init();
+
+        request = new MockHttpServletRequest("GET", "/api/urls");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+    }
+
+    @Benchmark
+    public boolean threeParses() {
+        String username = legacyClaims(token).getSubject();
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        return legacyClaims(token).getSubject().equals(userDetails.getUsername())
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean singleParse() {
+        Claims claims = jwtUtil.parseClaims(token);
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        return claims.getSubject().equals(userDetails.getUsername());
+    }
+
+    @Benchmark
+    public Object cachedFilter() throws Exception {
+        filter.doFilterInternal(request, response, chain);
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        chain.reset();
+        return principal;
+    }
+
+    // What JwtUtil did before the key and parser were precomputed
+    private static Claims legacyClaims(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
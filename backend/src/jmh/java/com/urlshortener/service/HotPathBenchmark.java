@@ -0,0 +1,131 @@
+package com.urlshortener.service;
+
+import com.urlshortener.dto.UrlResponse;
+import com.urlshortener.entity.Url;
+import com.urlshortener.security.JwtUtil;
+import com.urlshortener.util.ClientIpResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request CPU paths that do not touch the database: short code
+ * generation, client IP extraction, entity-to-DTO mapping, JWT parsing,
+ * payment QR rendering and the analytics row conversion. Run with the gc
+ * profiler so allocation per operation is reported next to throughput:
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="HotPathBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class HotPathBenchmark {
+
+    private static final String USERNAME = "benchmark@example.com";
+    private static final Long USER_ID = 42L;
+
+    // A quarter of daily rows, as in the per-URL analytics chart
+    private static final int ANALYTICS_DAYS = 90;
+
+    private UrlService urlService;
+    private Url url;
+    private MockHttpServletRequest request;
+    private JwtUtil jwtUtil;
+    private String token;
+    private PaymentService paymentService;
+    private String upiString;
+    private List<Object[]> analyticsRows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        urlService = new UrlService();
+        ReflectionTestUtils.setField(urlService, "shortCodeLength", 7);
+        ReflectionTestUtils.setField(urlService, "baseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(urlService, "cachedClickEstimator", new CachedClickEstimator(null, null));
+
+        url = new Url();
+        url.setId(42L);
+        url.setUserId(1L);
+        url.setOriginalUrl("https://example.com/articles/2024/02/a-fairly-long-path?utm_source=newsletter");
+        url.setShortCode("aBcD123");
+        url.setTotalClicks(1_234);
+        url.setCreatedAt(LocalDateTime.of(2024, 2, 10, 10, 30));
+
+        request = new MockHttpServletRequest("GET", "/aBcD123");
+        request.setRemoteAddr("198.51.100.7");
+
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmark-secret-key-that-is-at-least-256-bits-long");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.DAYS.toMillis(1));
+        jwtUtil.init();
+        token = jwtUtil.generateToken(USERNAME, USER_ID);
+
+        paymentService = new PaymentService();
+        ReflectionTestUtils.setField(paymentService, "upiId", "merchant@upi");
+        ReflectionTestUtils.setField(paymentService, "merchantName", "URL Shortener");
+        ReflectionTestUtils.setField(paymentService, "paymentAmount", 9_900);
+        ReflectionTestUtils.setField(paymentService, "currency", "INR");
+        upiString = paymentService.createUpiPaymentString("PAY-12AB34CD");
+
+        analyticsRows = new ArrayList<>(ANALYTICS_DAYS);
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < ANALYTICS_DAYS; i++) {
+            analyticsRows.add(new Object[] { java.sql.Date.valueOf(day.plusDays(i)), (long) i * 17 });
+        }
+    }
+
+    @Benchmark
+    public String generateRandomCode() {
+        return urlService.generateRandomCode();
+    }
+
+    @Benchmark
+    public String clientIp() {
+        return ClientIpResolver.resolve(request);
+    }
+
+    @Benchmark
+    public UrlResponse mapToResponse() {
+        return urlService.mapToResponse(url);
+    }
+
+    @Benchmark
+    public String jwtExtractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public Boolean jwtValidateToken() {
+        return jwtUtil.validateToken(token, USERNAME);
+    }
+
+    @Benchmark
+    public byte[] renderQrCode() throws Exception {
+        return paymentService.renderQrCode(upiString);
+    }
+
+    @Benchmark
+    public Map<LocalDate, Long> analyticsRowsToDailyCounts() {
+        return AnalyticsService.toDailyCounts(analyticsRows);
+    }
+}
@@ -0,0 +1,88 @@
+package com.urlshortener.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.urlshortener.util.QrCodePngWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The payment QR code as {@code /api/payment/generate-qr} used to render it,
+ * through {@code MatrixToImageWriter}, a {@code BufferedImage} and ImageIO's
+ * PNG writer, against {@link QrCodePngWriter}, both end to end (encode, PNG,
+ * Base64) and for the PNG step alone on a pre-encoded matrix. Run with the gc
+ * profiler to see the allocation per code:
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="QrCodeBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class QrCodeBenchmark {
+
+    private static final String UPI = "upi://pay?pa=merchant@upi&pn=URL_Shortener&am=99.00&cu=INR&tn=Payment_PAY-12AB34CD";
+
+    private BitMatrix matrix;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        matrix = encode();
+    }
+
+    @Benchmark
+    public String imageIoEndToEnd() throws Exception {
+        return Base64.getEncoder().encodeToString(imageIoPng(encode()));
+    }
+
+    @Benchmark
+    public String directEndToEnd() throws Exception {
+        return Base64.getEncoder().encodeToString(QrCodePngWriter.write(encode()));
+    }
+
+    @Benchmark
+    public byte[] imageIoPngOnly() throws Exception {
+        return imageIoPng(matrix);
+    }
+
+    @Benchmark
+    public byte[] directPngOnly() {
+        return QrCodePngWriter.write(matrix);
+    }
+
+    private static BitMatrix encode() throws Exception {
+        Map<EncodeHintType, Object> hints = new HashMap<>();
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        return new QRCodeWriter().encode(UPI, BarcodeFormat.QR_CODE, 300, 300, hints);
+    }
+
+    // What PaymentService did before QrCodePngWriter
+    private static byte[] imageIoPng(BitMatrix matrix) throws Exception {
+        BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(matrix);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(qrImage, "PNG", baos);
+        return baos.toByteArray();
+    }
+}
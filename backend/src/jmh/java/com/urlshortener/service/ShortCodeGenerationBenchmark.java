@@ -0,0 +1,110 @@
+package com.urlshortener.service;
+
+import com.urlshortener.repository.UrlRepository;
+import com.urlshortener.util.Base62;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random code + existsByShortCode probing versus the sequence/Feistel
+ * allocator, on a 3-character keyspace (238,328 codes) pre-filled to the
+ * given fraction. Every existence probe and every block lease spins for
+ * {@code roundTripMicros} to stand in for a database round trip.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ShortCodeGenerationBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShortCodeGenerationBenchmark {
+
+    private static final int CODE_LENGTH = 3;
+    private static final int BLOCK_SIZE = 1000;
+
+    @Param({ "0.0", "0.5", "0.9", "0.99" })
+    public double fill;
+
+    @Param({ "0", "250" })
+    public long roundTripMicros;
+
+    private UrlService randomGenerator;
+    private ShortCodeAllocator allocator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long keyspace = Base62.keyspace(CODE_LENGTH);
+        Set<String> existing = new HashSet<>();
+        SplittableRandom random = new SplittableRandom(42);
+        while (existing.size() < (long) (keyspace * fill)) {
+            existing.add(Base62.encode(random.nextLong(keyspace), CODE_LENGTH));
+        }
+
+        UrlRepository repository = (UrlRepository) Proxy.newProxyInstance(
+                UrlRepository.class.getClassLoader(),
+                new Class<?>[] { UrlRepository.class },
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("existsByShortCode")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    simulateRoundTrip();
+                    return existing.contains((String) args[0]);
+                });
+
+        randomGenerator = new UrlService();
+        ReflectionTestUtils.setField(randomGenerator, "urlRepository", repository);
+        ReflectionTestUtils.setField(randomGenerator, "shortCodeLength", CODE_LENGTH);
+
+        // Allocation cost does not depend on fill, so the fake sequence simply wraps around the keyspace
+        long firstId = (long) (keyspace * fill) / BLOCK_SIZE * BLOCK_SIZE;
+        long blocks = keyspace / BLOCK_SIZE;
+        allocator = new ShortCodeAllocator(null, "sequence", CODE_LENGTH, "benchmark-key", BLOCK_SIZE, 1000) {
+            private long leased;
+
+            @Override
+            long leaseBlock() {
+                simulateRoundTrip();
+                return (firstId + leased++ * BLOCK_SIZE) % (blocks * BLOCK_SIZE);
+            }
+        };
+    }
+
+    @Benchmark
+    public String randomWithExistenceProbe() {
+        return randomGenerator.generateUniqueShortCode();
+    }
+
+    @Benchmark
+    public String sequenceAllocator() {
+        return allocator.nextCode();
+    }
+
+    private void simulateRoundTrip() {
+        if (roundTripMicros == 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
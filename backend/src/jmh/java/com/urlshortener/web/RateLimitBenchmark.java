@@ -0,0 +1,93 @@
+package com.urlshortener.web;
+
+import com.urlshortener.security.JwtAuthFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rate limiting a request: one token from a bucket among 4096
+ * clients, the same from 4 threads hammering a single client's bucket (the
+ * compare-and-set contention worst case), and the whole filter on a redirect
+ * minus the same request through an empty chain. The limits are high enough
+ * that every request is admitted.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="RateLimitBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimitBenchmark {
+
+    private static final int CLIENTS = 4096;
+    private static final RateLimiter.Limit LIMIT = new RateLimiter.Limit(Integer.MAX_VALUE, Duration.ofSeconds(1));
+
+    private final String[] keys = new String[CLIENTS];
+    private RateLimiter limiter;
+    private RateLimitFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private MockFilterChain chain;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(100_000, Duration.ofMinutes(1), System::nanoTime);
+        for (int i = 0; i < CLIENTS; i++) {
+            keys[i] = "0:203.0." + (i >> 8) + "." + (i & 255);
+            limiter.tryAcquire(keys[i], LIMIT);
+        }
+        filter = new RateLimitFilter(limiter, Map.of(RateLimitFilter.Route.REDIRECT, LIMIT),
+                Mockito.mock(JwtAuthFilter.class), new SimpleMeterRegistry());
+        request = new MockHttpServletRequest("GET", "/aBcD123");
+        request.setRemoteAddr("203.0.113.7");
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+    }
+
+    @Benchmark
+    public long acquire() {
+        return limiter.tryAcquire(keys[next++ & (CLIENTS - 1)], LIMIT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long acquireContended() {
+        return limiter.tryAcquire(keys[0], LIMIT);
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        chain.reset();
+        filter.doFilter(request, response, chain);
+        return chain.getRequest();
+    }
+
+    @Benchmark
+    public Object baseline() throws Exception {
+        chain.reset();
+        chain.doFilter(request, response);
+        return chain.getRequest();
+    }
+}
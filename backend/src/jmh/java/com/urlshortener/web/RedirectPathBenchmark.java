@@ -0,0 +1,161 @@
+package com.urlshortener.web;
+
+import com.urlshortener.cache.ResolvedUrl;
+import com.urlshortener.cache.ShortCodeBloomFilter;
+import com.urlshortener.cache.ShortCodeIndexService;
+import com.urlshortener.cache.UrlResolutionCache;
+import com.urlshortener.config.CorsConfig;
+import com.urlshortener.config.SecurityConfig;
+import com.urlshortener.controller.UrlController;
+import com.urlshortener.ingest.ClickCounter;
+import com.urlshortener.ingest.ClickIngestionQueue;
+import com.urlshortener.ingest.OverflowPolicy;
+import com.urlshortener.security.JwtAuthFilter;
+import com.urlshortener.security.JwtUtil;
+import com.urlshortener.security.UserDetailsServiceImpl;
+import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.AuthService;
+import com.urlshortener.service.PaymentService;
+import com.urlshortener.service.UrlService;
+import com.urlshortener.util.Base62;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Filter;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotatedBeanDefinitionReader;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.support.GenericWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * A cached redirect through the fast-path filter versus the same redirect
+ * through Spring Security, CORS and the DispatcherServlet into
+ * {@code UrlController.redirectUrl}. Both run through MockMvc on the same
+ * application context, so request construction costs the same on each side
+ * and the difference is the stack the fast path skips. Tomcat itself is
+ * not part of either number.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="RedirectPathBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedirectPathBenchmark {
+
+    private static final int CODES = 1024;
+
+    private final String[] paths = new String[CODES];
+    private GenericWebApplicationContext context;
+    private MockMvc fullStack;
+    private MockMvc fastPath;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        UrlService urlService = new UrlService();
+        UrlResolutionCache cache = new UrlResolutionCache(10_000, Duration.ofHours(1), Duration.ofSeconds(30),
+                new SimpleMeterRegistry());
+        for (int i = 0; i < CODES; i++) {
+            String code = Base62.encode(i * 7919L, 7);
+            paths[i] = "/" + code;
+            cache.put(code, new ResolvedUrl((long) i, "https://example.com/articles/" + i, true));
+        }
+        ReflectionTestUtils.setField(urlService, "urlResolutionCache", cache);
+        ReflectionTestUtils.setField(urlService, "clickCounter", new ClickCounter(null, null,
+                new SimpleMeterRegistry(), 1000));
+        // Never started: the index stays empty and the filter lets every code through
+        ReflectionTestUtils.setField(urlService, "shortCodeIndexService", new ShortCodeIndexService(null, null,
+                new SimpleMeterRegistry(), false, Path.of("unused")));
+        ReflectionTestUtils.setField(urlService, "shortCodeBloomFilter", new ShortCodeBloomFilter(null, null,
+                new SimpleMeterRegistry(), false, 1000, 0.01, DataSize.ofKilobytes(1)));
+
+        // The writer thread is not started; once full the queue drops, which is as cheap as it gets
+        AnalyticsService analyticsService = new AnalyticsService();
+        ReflectionTestUtils.setField(analyticsService, "urlService", urlService);
+        ReflectionTestUtils.setField(analyticsService, "clickIngestionQueue", new ClickIngestionQueue(null,
+                new SimpleMeterRegistry(), 1024, 500, Duration.ofMillis(200), OverflowPolicy.DROP,
+                Duration.ofMillis(50), 0.1, 1, Duration.ZERO, false));
+
+        context = new GenericWebApplicationContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("app.cors.allowed-origins", "http://localhost:5173")));
+        var beans = context.getBeanFactory();
+        beans.registerSingleton("urlService", urlService);
+        beans.registerSingleton("analyticsService", analyticsService);
+        beans.registerSingleton("authService", Mockito.mock(AuthService.class));
+        beans.registerSingleton("paymentService", Mockito.mock(PaymentService.class));
+        beans.registerSingleton("jwtUtil", Mockito.mock(JwtUtil.class));
+        beans.registerSingleton("userDetailsServiceImpl", Mockito.mock(UserDetailsServiceImpl.class));
+        beans.registerSingleton("meterRegistry", new SimpleMeterRegistry());
+        new AnnotatedBeanDefinitionReader(context).register(WebConfig.class, SecurityConfig.class,
+                CorsConfig.class, JwtAuthFilter.class, UrlController.class);
+        context.refresh();
+
+        Filter securityChain = context.getBean("springSecurityFilterChain", Filter.class);
+        fullStack = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(securityChain)
+                .build();
+        fastPath = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(new RedirectFastPathFilter(urlService, analyticsService), securityChain)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult fullStack() throws Exception {
+        return fullStack.perform(request()).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult fastPath() throws Exception {
+        return fastPath.perform(request()).andReturn();
+    }
+
+    private RequestBuilder request() {
+        return get(paths[next++ & (CODES - 1)])
+                .header("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) Firefox/119.0")
+                .header("Referer", "https://news.example.org/")
+                .with(r -> {
+                    r.setRemoteAddr("203.0.113.7");
+                    return r;
+                });
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class WebConfig {
+    }
+}
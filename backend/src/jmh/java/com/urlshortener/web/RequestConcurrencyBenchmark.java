@@ -0,0 +1,98 @@
+package com.urlshortener.web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency ceiling of blocking request handling: one operation is a burst
+ * of {@code concurrency} simultaneous requests, each blocked for
+ * {@code blockMillis} as if waiting on the database. Compared executors:
+ * <ul>
+ *   <li>{@code platform} - 200 platform threads, Tomcat's default max-threads</li>
+ *   <li>{@code virtual} - a virtual thread per request (spring.threads.virtual.enabled)</li>
+ *   <li>{@code virtual-pinned} - the same, but blocking inside a synchronized block,
+ *       which pins the carrier and caps concurrency at the number of cores</li>
+ * </ul>
+ * Requests per second = concurrency / burst time. With a real database the
+ * virtual-thread ceiling moves to the connection pool for requests that need
+ * a connection; redirects served from the cache or index are not bound by it.
+ * <p>
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="RequestConcurrencyBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestConcurrencyBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({ "platform", "virtual", "virtual-pinned" })
+    public String executor;
+
+    @Param({ "200", "1000", "4000" })
+    public int concurrency;
+
+    @Param({ "10" })
+    public long blockMillis;
+
+    private ExecutorService executorService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executorService = executor.equals("platform")
+                ? Executors.newFixedThreadPool(PLATFORM_THREADS)
+                : Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        boolean pinned = executor.equals("virtual-pinned");
+        for (int i = 0; i < concurrency; i++) {
+            executorService.execute(() -> {
+                if (pinned) {
+                    Object monitor = new Object();
+                    synchronized (monitor) {
+                        block();
+                    }
+                } else {
+                    block();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    private void block() {
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
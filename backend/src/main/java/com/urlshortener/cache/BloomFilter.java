@@ -0,0 +1,112 @@
+package com.urlshortener.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Fixed-size Bloom filter over strings. Adds are lock-free (atomic OR on
+ * the bit words) and may run concurrently with lookups; a string that has
+ * been added is always reported as possibly present.
+ */
+final class BloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** 256 MiB; keeps the multiply-shift in {@link #index(int)} within a long. */
+    static final long MAX_BITS = 1L << 31;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long bitCount, int hashCount) {
+        if (bitCount < Long.SIZE || hashCount < 1) {
+            throw new IllegalArgumentException("Bloom filter needs at least 64 bits and one hash function");
+        }
+        if (bitCount > MAX_BITS) {
+            throw new IllegalArgumentException("Bloom filter of " + bitCount + " bits is too large");
+        }
+        long wordCount = (bitCount + Long.SIZE - 1) / Long.SIZE;
+        this.words = new long[(int) wordCount];
+        this.bitCount = wordCount * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Sizes a filter for {@code expectedInsertions} at {@code falsePositiveRate},
+     * using at most {@code maxBytes}. A capped filter simply has a higher
+     * false-positive rate than requested.
+     */
+    static BloomFilter create(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        }
+        long n = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long bits = Math.max(Long.SIZE, Math.min(Math.min(optimalBits, maxBytes * Byte.SIZE), MAX_BITS));
+        int hashes = (int) Math.max(1, Math.min(16, Math.round((double) bits / n * ln2)));
+        return new BloomFilter(bits, hashes);
+    }
+
+    /** Returns {@code true} if any bit changed, i.e. the value was certainly not present before. */
+    boolean add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if (((long) WORDS.getAcquire(words, word) & mask) == 0) {
+                long previous = (long) WORDS.getAndBitwiseOrRelease(words, word, mask);
+                changed |= (previous & mask) == 0;
+            }
+        }
+        return changed;
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if (((long) WORDS.getAcquire(words, (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    /** False-positive rate expected after {@code insertions} distinct adds. */
+    double expectedFalsePositiveRate(long insertions) {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions / bitCount), hashCount);
+    }
+
+    private long index(int combined) {
+        // Kirsch-Mitzenmacher double hashing, mapped onto [0, bitCount) without a division
+        return Integer.toUnsignedLong(combined) * bitCount >>> 32;
+    }
+
+    /** FNV-1a over the UTF-16 units followed by a SplitMix64 finalizer. */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,132 @@
+package com.urlshortener.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of (urlId, originalUrl) records outside the Java heap.
+ * Records are never reclaimed in place; {@link ShortCodeIndex} copies the
+ * live ones into a new store once enough are dead.
+ * Records are 8-byte aligned and never span a segment, so a record is
+ * addressed by a 32-bit ref (byte offset / 8), covering 32 GiB.
+ * <p>
+ * Record layout: {@code [urlId: long][length: int][attributes: int][utf-8 bytes][padding]},
+ * where attributes is an opaque int the caller packs per-link settings into.
+ * Segments are either direct buffers or read-only mappings of a snapshot
+ * file. Appends are not thread-safe and must be serialized by the caller;
+ * reads of previously published refs are safe from any thread.
+ */
+final class OffHeapUrlStore {
+
+    static final int SEGMENT_SHIFT = 24;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    static final int HEADER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    static final int MAX_URL_BYTES = 8192;
+    static final long MAX_BYTES = 1L << 35;
+
+    private volatile ByteBuffer[] segments;
+    private long size;
+
+    OffHeapUrlStore() {
+        this.segments = new ByteBuffer[0];
+    }
+
+    /** Wraps previously written segments, e.g. read-only mappings of a snapshot file. */
+    OffHeapUrlStore(ByteBuffer[] segments) {
+        this.segments = segments;
+        // New records go to a fresh segment; mapped segments are read-only
+        this.size = (long) segments.length << SEGMENT_SHIFT;
+    }
+
+    static int recordBytes(int urlBytes) {
+        return align(HEADER_BYTES + urlBytes);
+    }
+
+    /** Position a record of {@code recordBytes} would be written at, given the current end offset. */
+    static long placement(long offset, int recordBytes) {
+        long segmentEnd = ((offset >>> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+        return offset + recordBytes > segmentEnd ? segmentEnd : offset;
+    }
+
+    /** Appends a record and returns its ref, or -1 if the URL is too long to store. */
+    int append(long urlId, int attributes, byte[] url) {
+        if (url.length > MAX_URL_BYTES) {
+            return -1;
+        }
+        int recordBytes = recordBytes(url.length);
+        long offset = placement(size, recordBytes);
+        if (offset + recordBytes > MAX_BYTES) {
+            throw new IllegalStateException("Off-heap URL store is full");
+        }
+
+        int segmentIndex = (int) (offset >>> SEGMENT_SHIFT);
+        ByteBuffer[] current = segments;
+        if (segmentIndex >= current.length) {
+            ByteBuffer[] grown = Arrays.copyOf(current, segmentIndex + 1);
+            grown[segmentIndex] = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+            current = grown;
+        }
+
+        ByteBuffer segment = current[segmentIndex];
+        int position = (int) (offset & (SEGMENT_SIZE - 1));
+        segment.putLong(position, urlId);
+        segment.putInt(position + Long.BYTES, url.length);
+        segment.putInt(position + Long.BYTES + Integer.BYTES, attributes);
+        segment.put(position + HEADER_BYTES, url);
+
+        // Publishing the (possibly new) segment array makes the record visible to readers
+        segments = current;
+        size = offset + recordBytes;
+        return (int) (offset >>> 3);
+    }
+
+    long urlId(int ref) {
+        long offset = offsetOf(ref);
+        return segment(offset).getLong(position(offset));
+    }
+
+    int attributes(int ref) {
+        long offset = offsetOf(ref);
+        return segment(offset).getInt(position(offset) + Long.BYTES + Integer.BYTES);
+    }
+
+    /** Bytes the record at {@code ref} occupies, padding included. */
+    int recordBytesAt(int ref) {
+        long offset = offsetOf(ref);
+        return recordBytes(segment(offset).getInt(position(offset) + Long.BYTES));
+    }
+
+    String originalUrl(int ref) {
+        return new String(urlBytes(ref), StandardCharsets.UTF_8);
+    }
+
+    byte[] urlBytes(int ref) {
+        long offset = offsetOf(ref);
+        ByteBuffer segment = segment(offset);
+        int position = position(offset);
+        byte[] url = new byte[segment.getInt(position + Long.BYTES)];
+        segment.get(position + HEADER_BYTES, url);
+        return url;
+    }
+
+    long size() {
+        return size;
+    }
+
+    private ByteBuffer segment(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)];
+    }
+
+    private static long offsetOf(int ref) {
+        return Integer.toUnsignedLong(ref) << 3;
+    }
+
+    private static int position(long offset) {
+        return (int) (offset & (SEGMENT_SIZE - 1));
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+}
@@ -0,0 +1,29 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.entity.RedirectPolicy;
+import com.urlshortener.entity.Url;
+
+/**
+ * The slice of a {@link Url} the redirect path needs, cached per short code.
+ * A {@code null} urlId marks a negative entry for a code that does not exist.
+ */
+public record ResolvedUrl(Long urlId, String originalUrl, boolean active, RedirectPolicy redirectPolicy,
+        int cacheMaxAge) {
+
+    public static final ResolvedUrl NOT_FOUND = new ResolvedUrl(null, null, false);
+
+    /** A link with the default policy: an uncached 302. */
+    public ResolvedUrl(Long urlId, String originalUrl, boolean active) {
+        this(urlId, originalUrl, active, RedirectPolicy.TEMPORARY, 0);
+    }
+
+    public static ResolvedUrl of(Url url) {
+        return new ResolvedUrl(url.getId(), url.getOriginalUrl(), Boolean.TRUE.equals(url.isActive()),
+                url.getRedirectPolicy() == null ? RedirectPolicy.TEMPORARY : url.getRedirectPolicy(),
+                url.getCacheMaxAge() == null ? 0 : url.getCacheMaxAge());
+    }
+
+    public boolean exists() {
+        return urlId != null;
+    }
+}
@@ -0,0 +1,144 @@
+package com.urlshortener.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Membership filter over every short code ever issued, consulted by the
+ * redirect path before the resolution cache and the database. A code the
+ * filter has never seen is answered with a 404 straight away, so scanners
+ * probing random codes neither reach Postgres nor flood the cache with
+ * negative entries.
+ * <p>
+ * The filter is rebuilt from the urls table in the background at startup
+ * and lets everything through until that scan finishes. Codes created here
+ * are added by {@code UrlService.createShortUrl}; codes created on other
+ * nodes are picked up from {@link UrlChangeFeed} every
+ * {@code sync-interval-ms}, so none is missed however late it commits.
+ * Until then such a code is absent from the filter, and
+ * {@code UrlService.resolve} decides whether it may exist. Deleted codes stay
+ * in the filter and simply fall through to the database.
+ */
+@Component
+public class ShortCodeBloomFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeBloomFilter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UrlChangeFeed changeFeed;
+    private final boolean enabled;
+    private final long expectedCodes;
+    private final double falsePositiveRate;
+    private final DataSize maxMemory;
+    private final AtomicLong insertions = new AtomicLong();
+    private final Counter rejected;
+
+    private volatile BloomFilter filter;
+    private volatile boolean ready;
+    private volatile Instant cursor;
+
+    public ShortCodeBloomFilter(
+            JdbcTemplate jdbcTemplate,
+            UrlChangeFeed changeFeed,
+            MeterRegistry meterRegistry,
+            @Value("${app.url.filter.enabled:true}") boolean enabled,
+            @Value("${app.url.filter.expected-codes:1000000}") long expectedCodes,
+            @Value("${app.url.filter.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${app.url.filter.max-memory:16MB}") DataSize maxMemory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeFeed = changeFeed;
+        this.enabled = enabled;
+        this.expectedCodes = expectedCodes;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxMemory = maxMemory;
+        this.rejected = Counter.builder("url.filter.rejected")
+                .description("Redirects for unknown short codes answered without a lookup")
+                .register(meterRegistry);
+        Gauge.builder("url.filter.insertions", insertions, AtomicLong::get)
+                .description("Short codes added to the membership filter")
+                .register(meterRegistry);
+        Gauge.builder("url.filter.false.positive.rate", this, ShortCodeBloomFilter::expectedFalsePositiveRate)
+                .description("Expected false-positive rate at the current number of codes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread rebuild = new Thread(this::rebuild, "short-code-filter-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    /**
+     * Returns {@code false} only if {@code shortCode} had not been created
+     * here or on another node as of the last sync. Always {@code true} while
+     * the filter is disabled or still loading.
+     */
+    public boolean mightExist(String shortCode) {
+        return !ready || filter.mightContain(shortCode);
+    }
+
+    /** Counts a redirect answered with a 404 on the filter's word. */
+    public void recordRejection() {
+        rejected.increment();
+    }
+
+    public void add(String shortCode) {
+        BloomFilter current = filter;
+        // Re-adding a known code (sync overlap) changes no bits and is not counted
+        if (current != null && current.add(shortCode)) {
+            insertions.incrementAndGet();
+        }
+    }
+
+    /** Adds codes created on other nodes since the last scan. */
+    @Scheduled(fixedDelayString = "${app.url.filter.sync-interval-ms:5000}")
+    public void syncFromDatabase() {
+        if (ready) {
+            cursor = changeFeed.readCodes(cursor, this::add);
+        }
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.nanoTime();
+            Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM urls", Long.class);
+            // Leave headroom for growth until the next restart resizes the filter
+            long sizedFor = Math.max(expectedCodes, existing == null ? 0 : existing * 2);
+            BloomFilter created = BloomFilter.create(sizedFor, falsePositiveRate, maxMemory.toBytes());
+            // Publish before scanning so codes created meanwhile are not lost
+            filter = created;
+            int[] scanned = new int[1];
+            cursor = changeFeed.readCodes(UrlChangeFeed.BEGINNING, shortCode -> {
+                add(shortCode);
+                scanned[0]++;
+            });
+            ready = true;
+            log.info("Short code filter ready: {} codes, {} KiB, {} hash functions, expected fpp {} ({} ms)",
+                    scanned[0], created.bitCount() / Byte.SIZE / 1024, created.hashCount(),
+                    String.format("%.4f", expectedFalsePositiveRate()), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Short code filter rebuild failed; every code will be looked up", e);
+        }
+    }
+
+    private double expectedFalsePositiveRate() {
+        BloomFilter current = filter;
+        return current == null ? 0 : current.expectedFalsePositiveRate(insertions.get());
+    }
+}
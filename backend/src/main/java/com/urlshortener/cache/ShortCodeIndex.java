@@ -0,0 +1,500 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.entity.RedirectPolicy;
+import com.urlshortener.util.Base62;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Resident index of active short codes: a primitive open-addressing map from
+ * the packed code (see {@link Base62#pack(String)}) to a ref into an
+ * {@link OffHeapUrlStore}. At the default load factor an entry costs about
+ * 17 bytes of heap plus its off-heap record.
+ * <p>
+ * Lookups are optimistic reads of a {@link StampedLock}; mutations take the
+ * write lock. Replacing or removing an entry leaves its record behind in the
+ * store; once such garbage outgrows the live records, the live ones are
+ * copied into a fresh store. The index can be written to and mapped back
+ * from a snapshot file, which also records the {@link UrlChangeFeed} cursor
+ * it was synced up to.
+ */
+final class ShortCodeIndex {
+
+    private static final int MAGIC = 0x53434958; // "SCIX"
+    private static final int VERSION = 3;
+    private static final int FILE_HEADER_BYTES = 64;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double LOAD_FACTOR = 0.7;
+    private static final int MAX_MAP_CHUNK = 1 << 30;
+    // Garbage below this is never worth a copy of the store
+    private static final long MIN_COMPACTION_GARBAGE = OffHeapUrlStore.SEGMENT_SIZE;
+
+    // Record attributes: redirect policy ordinal in the low bits, cache max-age above
+    private static final int POLICY_BITS = 2;
+    private static final int POLICY_MASK = (1 << POLICY_BITS) - 1;
+    private static final RedirectPolicy[] POLICIES = RedirectPolicy.values();
+
+    private final StampedLock lock = new StampedLock();
+    private OffHeapUrlStore store;
+    private Table table;
+    private int size;
+    // Bytes of the records the table refers to; the rest of the store is garbage
+    private long liveBytes;
+    private Instant cursor;
+
+    ShortCodeIndex() {
+        this(new OffHeapUrlStore(), new Table(MIN_CAPACITY), 0, 0, UrlChangeFeed.BEGINNING);
+    }
+
+    private ShortCodeIndex(OffHeapUrlStore store, Table table, int size, long liveBytes, Instant cursor) {
+        this.store = store;
+        this.table = table;
+        this.size = size;
+        this.liveBytes = liveBytes;
+        this.cursor = cursor;
+    }
+
+    /** Returns the indexed URL for {@code shortCode}, or {@code null} if it is not indexed. */
+    ResolvedUrl get(String shortCode) {
+        long key = Base62.pack(shortCode);
+        if (key == 0) {
+            return null;
+        }
+
+        // The ref is only meaningful in the store it was read with; a compaction swaps both
+        long stamp = lock.tryOptimisticRead();
+        OffHeapUrlStore records = store;
+        int ref = refOf(table, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                records = store;
+                ref = refOf(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (ref == Table.ABSENT) {
+            return null;
+        }
+        // Records are never modified, and a replaced store stays readable while referenced
+        int attributes = records.attributes(ref);
+        return new ResolvedUrl(records.urlId(ref), records.originalUrl(ref), true,
+                POLICIES[attributes & POLICY_MASK], attributes >>> POLICY_BITS);
+    }
+
+    /** Indexes an active URL. Codes or URLs that cannot be stored are left out (and removed). */
+    boolean put(String shortCode, ResolvedUrl resolved) {
+        long key = Base62.pack(shortCode);
+        if (key == 0) {
+            return false;
+        }
+        byte[] url = resolved.originalUrl().getBytes(StandardCharsets.UTF_8);
+        if (url.length > OffHeapUrlStore.MAX_URL_BYTES) {
+            remove(shortCode);
+            return false;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > table.capacity() * LOAD_FACTOR) {
+                table = table.resized(table.capacity() * 2);
+            }
+            int attributes = resolved.cacheMaxAge() << POLICY_BITS | resolved.redirectPolicy().ordinal();
+            int ref = store.append(resolved.urlId(), attributes, url);
+            int replaced = table.insert(key, ref);
+            if (replaced == Table.ABSENT) {
+                size++;
+            } else {
+                liveBytes -= store.recordBytesAt(replaced);
+            }
+            liveBytes += OffHeapUrlStore.recordBytes(url.length);
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String shortCode) {
+        long key = Base62.pack(shortCode);
+        if (key == 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int removed = table.delete(key);
+            if (removed != Table.ABSENT) {
+                size--;
+                liveBytes -= store.recordBytesAt(removed);
+                compactIfWasteful();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Bytes the store holds, garbage included. */
+    long storeBytes() {
+        long stamp = lock.readLock();
+        try {
+            return store.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the live records into a fresh store once garbage exceeds both
+     * the live bytes and one segment, so the store stays within about twice
+     * its live size and each copy is paid for by as many bytes of updates.
+     * Called with the write lock held; lookups wait for the copy.
+     */
+    private void compactIfWasteful() {
+        long garbage = store.size() - liveBytes;
+        if (garbage < MIN_COMPACTION_GARBAGE || garbage < liveBytes) {
+            return;
+        }
+        OffHeapUrlStore compacted = new OffHeapUrlStore();
+        Table remapped = new Table(table.capacity());
+        long copiedBytes = 0;
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            long key = table.keys[slot];
+            if (key != 0) {
+                int ref = table.refs[slot];
+                byte[] url = store.urlBytes(ref);
+                remapped.keys[slot] = key;
+                remapped.refs[slot] = compacted.append(store.urlId(ref), store.attributes(ref), url);
+                copiedBytes += OffHeapUrlStore.recordBytes(url.length);
+            }
+        }
+        // Same capacity and slots, so probe chains are unchanged; readers holding the old store can still use it
+        store = compacted;
+        table = remapped;
+        liveBytes = copiedBytes;
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@link UrlChangeFeed} cursor from which changes have not been applied to this index yet. */
+    Instant cursor() {
+        long stamp = lock.readLock();
+        try {
+            return cursor;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void advanceCursor(Instant next) {
+        long stamp = lock.writeLock();
+        try {
+            if (next.isAfter(cursor)) {
+                cursor = next;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int refOf(Table table, long key) {
+        int slot = table.find(key);
+        return slot < 0 ? Table.ABSENT : table.refs[slot];
+    }
+
+    /**
+     * Writes a compacted snapshot: header, key and ref tables, then the live
+     * records laid out exactly as {@link OffHeapUrlStore} expects them, so
+     * {@link #load(Path)} can map the record region without copying it.
+     */
+    void writeSnapshot(Path file) throws IOException {
+        long[] keys;
+        int[] refs;
+        int liveEntries;
+        Instant snapshotCursor;
+        OffHeapUrlStore store;
+        long stamp = lock.readLock();
+        try {
+            keys = table.keys.clone();
+            refs = table.refs.clone();
+            liveEntries = size;
+            snapshotCursor = cursor;
+            store = this.store;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        // Records referenced by the copied table are immutable, so the rest runs unlocked
+
+        int[] newRefs = new int[keys.length];
+        long storeBytes = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                int recordBytes = OffHeapUrlStore.recordBytes(store.urlBytes(refs[slot]).length);
+                storeBytes = OffHeapUrlStore.placement(storeBytes, recordBytes);
+                newRefs[slot] = (int) (storeBytes >>> 3);
+                storeBytes += recordBytes;
+            }
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SnapshotWriter out = new SnapshotWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(ChronoUnit.MICROS.between(Instant.EPOCH, snapshotCursor));
+            out.putLong(System.currentTimeMillis());
+            out.putInt(keys.length);
+            out.putInt(liveEntries);
+            out.putLong(storeBytes);
+            out.padTo(FILE_HEADER_BYTES);
+            for (long key : keys) {
+                out.putLong(key);
+            }
+            for (int ref : newRefs) {
+                out.putInt(ref);
+            }
+            long storeStart = out.position();
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    byte[] url = store.urlBytes(refs[slot]);
+                    out.padTo(storeStart + (Integer.toUnsignedLong(newRefs[slot]) << 3));
+                    out.putLong(store.urlId(refs[slot]));
+                    out.putInt(url.length);
+                    out.putInt(store.attributes(refs[slot]));
+                    out.put(url);
+                }
+            }
+            out.padTo(storeStart + storeBytes);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot back in. The key and ref tables are bulk-copied onto
+     * the heap; the record region stays memory-mapped and is served straight
+     * from the page cache.
+     */
+    static ShortCodeIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a short code index snapshot: " + file);
+            }
+            Instant cursor = Instant.EPOCH.plus(header.getLong(), ChronoUnit.MICROS);
+            header.getLong(); // created at
+            int capacity = header.getInt();
+            int liveEntries = header.getInt();
+            long storeBytes = header.getLong();
+
+            long keysStart = FILE_HEADER_BYTES;
+            long refsStart = keysStart + (long) capacity * Long.BYTES;
+            long storeStart = refsStart + (long) capacity * Integer.BYTES;
+            if (Integer.bitCount(capacity) != 1 || channel.size() < storeStart + storeBytes) {
+                throw new IOException("Truncated or corrupt short code index snapshot: " + file);
+            }
+
+            Table table = new Table(capacity);
+            int chunkLongs = MAX_MAP_CHUNK / Long.BYTES;
+            for (int from = 0; from < capacity; from += chunkLongs) {
+                int count = Math.min(chunkLongs, capacity - from);
+                LongBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY,
+                        keysStart + (long) from * Long.BYTES, (long) count * Long.BYTES).asLongBuffer();
+                keys.get(table.keys, from, count);
+            }
+            int chunkInts = MAX_MAP_CHUNK / Integer.BYTES;
+            for (int from = 0; from < capacity; from += chunkInts) {
+                int count = Math.min(chunkInts, capacity - from);
+                IntBuffer refs = channel.map(FileChannel.MapMode.READ_ONLY,
+                        refsStart + (long) from * Integer.BYTES, (long) count * Integer.BYTES).asIntBuffer();
+                refs.get(table.refs, from, count);
+            }
+
+            int segmentCount = (int) ((storeBytes + OffHeapUrlStore.SEGMENT_SIZE - 1) >>> OffHeapUrlStore.SEGMENT_SHIFT);
+            ByteBuffer[] segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long offset = (long) i << OffHeapUrlStore.SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, storeStart + offset,
+                        Math.min(OffHeapUrlStore.SEGMENT_SIZE, storeBytes - offset));
+            }
+
+            return new ShortCodeIndex(new OffHeapUrlStore(segments), table, liveEntries, storeBytes, cursor);
+        }
+    }
+
+    /** Linear-probing table; key 0 marks an empty slot. */
+    private static final class Table {
+
+        static final int ABSENT = -1;
+
+        final long[] keys;
+        final int[] refs;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.refs = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        int find(long key) {
+            int slot = slotFor(key);
+            // Bounded so a torn optimistic read can never spin forever
+            for (int probes = 0; probes <= mask; probes++) {
+                long candidate = keys[slot];
+                if (candidate == key) {
+                    return slot;
+                }
+                if (candidate == 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /** Returns the ref the key had before, or {@link #ABSENT} if it was not present. */
+        int insert(long key, int ref) {
+            int slot = slotFor(key);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            int previous = keys[slot] == 0 ? ABSENT : refs[slot];
+            keys[slot] = key;
+            refs[slot] = ref;
+            return previous;
+        }
+
+        /**
+         * Backward-shift deletion keeps probe chains intact without tombstones.
+         * Returns the removed ref, or {@link #ABSENT} if the key was not present.
+         */
+        int delete(long key) {
+            int hole = find(key);
+            if (hole < 0) {
+                return ABSENT;
+            }
+            int removed = refs[hole];
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                long candidate = keys[slot];
+                if (candidate == 0) {
+                    break;
+                }
+                int home = slotFor(candidate);
+                boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+                if (movable) {
+                    keys[hole] = candidate;
+                    refs[hole] = refs[slot];
+                    hole = slot;
+                }
+            }
+            keys[hole] = 0;
+            refs[hole] = 0;
+            return removed;
+        }
+
+        Table resized(int capacity) {
+            Table grown = new Table(capacity);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    grown.insert(keys[slot], refs[slot]);
+                }
+            }
+            return grown;
+        }
+
+        private int slotFor(long key) {
+            long z = key * 0x9E3779B97F4A7C15L;
+            return (int) (z ^ (z >>> 32)) & mask;
+        }
+    }
+
+    /** Buffered sequential writer that tracks the absolute file position. */
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private long position;
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return position;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                position += chunk;
+            }
+        }
+
+        void padTo(long target) throws IOException {
+            while (position < target) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
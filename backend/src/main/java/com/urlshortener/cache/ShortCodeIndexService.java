@@ -0,0 +1,171 @@
+package com.urlshortener.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Optional resident index of every active short code
+ * ({@code app.url.index.enabled}). On startup the last snapshot is mapped
+ * in and only rows inserted or changed after its cursor are replayed from
+ * the urls table through {@link UrlChangeFeed}, so a restarted node serves
+ * redirects from memory within seconds. The same feed applies links
+ * created, deactivated or given a new redirect policy on other nodes every
+ * {@code sync-interval-ms}, then drops their cached resolutions, so the
+ * reload reads the updated index (see {@link UrlCacheSync}).
+ * <p>
+ * The index only accelerates reads: a code that is not indexed (not yet
+ * replayed, created on another node since the last sync, URL too long)
+ * still resolves through the database.
+ */
+@Component
+public class ShortCodeIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeIndexService.class);
+
+    private final UrlChangeFeed changeFeed;
+    private final UrlResolutionCache urlResolutionCache;
+    private final boolean enabled;
+    private final Path snapshotPath;
+
+    private volatile ShortCodeIndex index;
+    private volatile boolean replayed;
+
+    public ShortCodeIndexService(
+            UrlChangeFeed changeFeed,
+            UrlResolutionCache urlResolutionCache,
+            MeterRegistry meterRegistry,
+            @Value("${app.url.index.enabled:false}") boolean enabled,
+            @Value("${app.url.index.snapshot-path:data/short-code-index.snapshot}") Path snapshotPath) {
+        this.changeFeed = changeFeed;
+        this.urlResolutionCache = urlResolutionCache;
+        this.enabled = enabled;
+        this.snapshotPath = snapshotPath;
+        Gauge.builder("url.index.size", this, service -> service.index == null ? 0 : service.index.size())
+                .description("Short codes resident in the in-memory index")
+                .register(meterRegistry);
+        Gauge.builder("url.index.store.bytes", this, service -> service.index == null ? 0 : service.index.storeBytes())
+                .description("Off-heap bytes held by the index, including records awaiting compaction")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        index = loadSnapshot();
+        Thread replay = new Thread(this::initialReplay, "short-code-index-replay");
+        replay.setDaemon(true);
+        replay.start();
+    }
+
+    /** Returns the indexed resolution, or {@code null} if the code has to be looked up in the database. */
+    public ResolvedUrl lookup(String shortCode) {
+        ShortCodeIndex current = index;
+        return current == null ? null : current.get(shortCode);
+    }
+
+    public void onSaved(String shortCode, ResolvedUrl resolved) {
+        ShortCodeIndex current = index;
+        if (current == null) {
+            return;
+        }
+        if (resolved.active()) {
+            current.put(shortCode, resolved);
+        } else {
+            current.remove(shortCode);
+        }
+    }
+
+    public void onRemoved(String shortCode) {
+        ShortCodeIndex current = index;
+        if (current != null) {
+            current.remove(shortCode);
+        }
+    }
+
+    /** Applies links created or changed on other nodes since the last replay. */
+    @Scheduled(fixedDelayString = "${app.url.index.sync-interval-ms:5000}")
+    public void syncFromDatabase() {
+        if (index != null && replayed) {
+            replayChangedSince(index.cursor());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.url.index.snapshot-interval-ms:600000}",
+            initialDelayString = "${app.url.index.snapshot-interval-ms:600000}")
+    public void writeSnapshot() {
+        ShortCodeIndex current = index;
+        if (current == null || !replayed) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            current.writeSnapshot(snapshotPath);
+            log.info("Wrote short code index snapshot with {} codes in {} ms", current.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.error("Failed to write short code index snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        writeSnapshot();
+    }
+
+    private ShortCodeIndex loadSnapshot() {
+        if (Files.exists(snapshotPath)) {
+            long start = System.nanoTime();
+            try {
+                ShortCodeIndex loaded = ShortCodeIndex.load(snapshotPath);
+                log.info("Mapped short code index snapshot with {} codes synced to {} in {} ms",
+                        loaded.size(), loaded.cursor(), (System.nanoTime() - start) / 1_000_000);
+                return loaded;
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable short code index snapshot {}", snapshotPath, e);
+            }
+        }
+        return new ShortCodeIndex();
+    }
+
+    private void initialReplay() {
+        try {
+            Instant cursor = index.cursor();
+            int replayedRows = replayChangedSince(cursor);
+            replayed = true;
+            log.info("Short code index ready: {} codes, replayed {} rows changed since {}", index.size(),
+                    replayedRows, cursor);
+        } catch (RuntimeException e) {
+            log.error("Short code index replay failed; redirects fall back to the database", e);
+        }
+    }
+
+    private int replayChangedSince(Instant cursor) {
+        ShortCodeIndex current = index;
+        int[] count = new int[1];
+        Instant next = changeFeed.readResolutions(cursor, (shortCode, resolved) -> {
+            if (resolved.active()) {
+                current.put(shortCode, resolved);
+            } else {
+                current.remove(shortCode);
+            }
+            urlResolutionCache.invalidate(shortCode);
+            count[0]++;
+        });
+        current.advanceCursor(next);
+        return count[0];
+    }
+}
@@ -0,0 +1,59 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.entity.Url;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Drops the cached resolution of a {@link Url} whenever the row is inserted,
+ * changed or removed, and keeps the resident short code index in step.
+ * Both happen after commit so a concurrent redirect cannot reload the
+ * pre-commit state back into the cache.
+ */
+@Component
+public class UrlCacheInvalidationListener {
+
+    @Autowired
+    private UrlResolutionCache urlResolutionCache;
+
+    @Autowired
+    private ShortCodeIndexService shortCodeIndexService;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Url url) {
+        String shortCode = url.getShortCode();
+        ResolvedUrl resolved = ResolvedUrl.of(url);
+        afterCommit(() -> {
+            urlResolutionCache.invalidate(shortCode);
+            shortCodeIndexService.onSaved(shortCode, resolved);
+        });
+    }
+
+    @PostRemove
+    public void onRemove(Url url) {
+        String shortCode = url.getShortCode();
+        afterCommit(() -> {
+            urlResolutionCache.invalidate(shortCode);
+            shortCodeIndexService.onRemoved(shortCode);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.urlshortener.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Drops cached resolutions of links other nodes created or changed
+ * (deactivated, new redirect policy or max-age), so a node does not keep
+ * sending an old 301 or {@code Cache-Control} until the entry's TTL runs
+ * out. Changes made on this node are handled after commit by
+ * {@link UrlCacheInvalidationListener}.
+ * <p>
+ * With the resident index enabled, {@link ShortCodeIndexService} does this
+ * itself, right after applying each change to the index; dropping the entry
+ * first could let a redirect reload the old state from the index.
+ */
+@Component
+public class UrlCacheSync {
+
+    private final UrlChangeFeed changeFeed;
+    private final UrlResolutionCache urlResolutionCache;
+    private final boolean indexEnabled;
+
+    // Null until the first sync, which starts from an empty cache
+    private Instant cursor;
+
+    public UrlCacheSync(
+            UrlChangeFeed changeFeed,
+            UrlResolutionCache urlResolutionCache,
+            @Value("${app.url.index.enabled:false}") boolean indexEnabled) {
+        this.changeFeed = changeFeed;
+        this.urlResolutionCache = urlResolutionCache;
+        this.indexEnabled = indexEnabled;
+    }
+
+    @Scheduled(fixedDelayString = "${app.url.cache.sync-interval-ms:2000}")
+    public void syncFromDatabase() {
+        if (indexEnabled) {
+            return;
+        }
+        if (cursor == null) {
+            // Entries cached before the cursor existed could miss a change; there are few yet
+            Instant next = changeFeed.cursorNow();
+            urlResolutionCache.invalidateAll();
+            cursor = next;
+            return;
+        }
+        cursor = changeFeed.readCodes(cursor, urlResolutionCache::invalidate);
+    }
+}
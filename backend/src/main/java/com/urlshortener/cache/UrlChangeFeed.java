@@ -0,0 +1,92 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.entity.RedirectPolicy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Reads rows of the urls table that were inserted or changed since a
+ * cursor, so per-node copies (resident index, membership filter, resolution
+ * cache) pick up what other nodes wrote.
+ * <p>
+ * {@code updated_at} is set from the database clock on every insert and
+ * update and is the start time of the writing transaction, which may commit
+ * much later. A cursor of "highest {@code updated_at} seen" would therefore
+ * skip rows that commit late. Instead each read returns the start of the
+ * oldest transaction still open when it began (or the current time), and the
+ * next read resumes there: every row changed before that has committed and
+ * was seen, every row changed after it is read next time. Rows near the
+ * cursor are read twice, which consumers apply idempotently.
+ * <p>
+ * A long open transaction (a click export streams for minutes) holds the
+ * cursor back, so reads re-scan the rows changed since it began; link
+ * changes are rare, so that stays small. Transactions of other database
+ * roles are not visible in {@code pg_stat_activity}; only this application
+ * writes urls.
+ */
+@Component
+public class UrlChangeFeed {
+
+    /** Cursor that reads the whole table. */
+    public static final Instant BEGINNING = Instant.EPOCH;
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private static final String CURSOR_SQL = "SELECT LEAST(clock_timestamp(), (SELECT min(xact_start)"
+            + " FROM pg_stat_activity WHERE datname = current_database() AND backend_type = 'client backend'"
+            + " AND pid <> pg_backend_pid()))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public UrlChangeFeed(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /** Cursor from which a read returns only changes made from now on. */
+    public Instant cursorNow() {
+        return jdbcTemplate.queryForObject(CURSOR_SQL, OffsetDateTime.class).toInstant();
+    }
+
+    /** Passes the short code of every row changed at or after {@code since}; returns the next cursor. */
+    public Instant readCodes(Instant since, Consumer<String> consumer) {
+        return read(since, "short_code", rs -> consumer.accept(rs.getString(1)));
+    }
+
+    /**
+     * Passes every row changed at or after {@code since} as a resolution,
+     * inactive links included; returns the next cursor.
+     */
+    public Instant readResolutions(Instant since, BiConsumer<String, ResolvedUrl> consumer) {
+        return read(since, "short_code, id, original_url, is_active, redirect_policy, cache_max_age",
+                rs -> consumer.accept(rs.getString(1), new ResolvedUrl(rs.getLong(2), rs.getString(3),
+                        rs.getBoolean(4), RedirectPolicy.valueOf(rs.getString(5)), rs.getInt(6))));
+    }
+
+    private Instant read(Instant since, String columns, RowCallbackHandler handler) {
+        return readOnlyTransaction.execute(status -> {
+            // Taken before the scan, whose snapshot then holds everything that committed by now
+            Instant next = cursorNow();
+            jdbcTemplate.query(connection -> {
+                var statement = connection.prepareStatement(
+                        "SELECT " + columns + " FROM urls WHERE updated_at >= ? ORDER BY updated_at");
+                statement.setObject(1, OffsetDateTime.ofInstant(since, ZoneOffset.UTC));
+                // A fetch size inside a transaction makes the driver stream through a cursor
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, handler);
+            return next;
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Bounded shortCode -> {@link ResolvedUrl} cache in front of the urls table.
+ * Unknown codes are cached as negative entries with a shorter TTL so that a
+ * code created on another node becomes visible quickly.
+ * <p>
+ * Misses are loaded outside Caffeine's map lock: the cache holds an
+ * in-flight future and concurrent misses for the same code wait on it, so a
+ * slow query never blocks other codes in the same bin or pins the carrier
+ * of a virtual thread.
+ */
+@Component
+public class UrlResolutionCache {
+
+    private final AsyncCache<String, ResolvedUrl> cache;
+
+    public UrlResolutionCache(
+            @Value("${app.url.cache.max-size:100000}") long maxSize,
+            @Value("${app.url.cache.ttl:10m}") Duration ttl,
+            @Value("${app.url.cache.negative-ttl:30s}") Duration negativeTtl,
+            MeterRegistry meterRegistry) {
+        this(maxSize, ttl, negativeTtl, meterRegistry, Ticker.systemTicker());
+    }
+
+    UrlResolutionCache(long maxSize, Duration ttl, Duration negativeTtl, MeterRegistry meterRegistry, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .expireAfter(new ResolutionExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "url.resolution");
+    }
+
+    public ResolvedUrl get(String shortCode, Function<String, ResolvedUrl> loader) {
+        CompletableFuture<ResolvedUrl> placeholder = new CompletableFuture<>();
+        CompletableFuture<ResolvedUrl> future = cache.get(shortCode, (code, executor) -> placeholder);
+        if (future == placeholder) {
+            try {
+                placeholder.complete(loader.apply(shortCode));
+            } catch (RuntimeException e) {
+                // Failed futures are dropped by the cache, so the next request retries the load
+                placeholder.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /** Returns the cached resolution, or {@code null} if there is none (or it is still loading). */
+    public ResolvedUrl getIfPresent(String shortCode) {
+        CompletableFuture<ResolvedUrl> future = cache.getIfPresent(shortCode);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+
+    public void put(String shortCode, ResolvedUrl resolvedUrl) {
+        cache.put(shortCode, CompletableFuture.completedFuture(resolvedUrl));
+    }
+
+    public void invalidate(String shortCode) {
+        cache.synchronous().invalidate(shortCode);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private record ResolutionExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, ResolvedUrl> {
+
+        @Override
+        public long expireAfterCreate(String key, ResolvedUrl value, long currentTime) {
+            return value.exists() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, ResolvedUrl value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, ResolvedUrl value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
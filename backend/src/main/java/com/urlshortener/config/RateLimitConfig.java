@@ -0,0 +1,63 @@
+package com.urlshortener.config;
+
+import com.urlshortener.security.JwtAuthFilter;
+import com.urlshortener.web.RateLimitFilter;
+import com.urlshortener.web.RateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(JwtAuthFilter jwtAuthFilter,
+            MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.max-clients:100000}") long maxClients,
+            @Value("${app.rate-limit.redirect.capacity:300}") int redirectCapacity,
+            @Value("${app.rate-limit.redirect.period:1m}") Duration redirectPeriod,
+            @Value("${app.rate-limit.auth.capacity:10}") int authCapacity,
+            @Value("${app.rate-limit.auth.period:1m}") Duration authPeriod,
+            @Value("${app.rate-limit.shorten.capacity:30}") int shortenCapacity,
+            @Value("${app.rate-limit.shorten.period:1h}") Duration shortenPeriod) {
+        // A capacity of 0 leaves the route unlimited
+        Map<RateLimitFilter.Route, RateLimiter.Limit> limits = new EnumMap<>(RateLimitFilter.Route.class);
+        putLimit(limits, RateLimitFilter.Route.REDIRECT, redirectCapacity, redirectPeriod);
+        putLimit(limits, RateLimitFilter.Route.AUTH, authCapacity, authPeriod);
+        putLimit(limits, RateLimitFilter.Route.SHORTEN, shortenCapacity, shortenPeriod);
+
+        Duration idleTimeout = limits.values().stream()
+                .map(RateLimiter.Limit::period)
+                .max(Duration::compareTo)
+                .orElse(Duration.ofMinutes(1));
+        RateLimiter limiter = new RateLimiter(maxClients, idleTimeout, System::nanoTime);
+        Gauge.builder("http.rate-limit.buckets", limiter, RateLimiter::size)
+                .description("Clients with a rate limit bucket on this node")
+                .register(meterRegistry);
+
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+                new RateLimitFilter(limiter, limits, jwtAuthFilter, meterRegistry));
+        registration.setName("rateLimitFilter");
+        registration.addUrlPatterns("/*");
+        // Ahead of the redirect fast path, so limited redirects never reach the cache or the database
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 20);
+        return registration;
+    }
+
+    private static void putLimit(Map<RateLimitFilter.Route, RateLimiter.Limit> limits, RateLimitFilter.Route route,
+            int capacity, Duration period) {
+        if (capacity > 0) {
+            limits.put(route, new RateLimiter.Limit(capacity, period));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.urlshortener.config;
+
+import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.UrlService;
+import com.urlshortener.web.RedirectFastPathFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RedirectFilterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.redirect.fast-path", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<RedirectFastPathFilter> redirectFastPathFilter(UrlService urlService,
+            AnalyticsService analyticsService) {
+        FilterRegistrationBean<RedirectFastPathFilter> registration = new FilterRegistrationBean<>(
+                new RedirectFastPathFilter(urlService, analyticsService));
+        registration.setName("redirectFastPathFilter");
+        registration.addUrlPatterns("/*");
+        // Ahead of RequestContextFilter (-105) and the Spring Security filter chain (-100)
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+}
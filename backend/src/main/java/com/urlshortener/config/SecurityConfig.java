@@ -1,8 +1,12 @@
 package com.urlshortener.config;
 
+import com.urlshortener.security.BoundedPasswordEncoder;
 import com.urlshortener.security.JwtAuthFilter;
 import com.urlshortener.security.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,10 +18,15 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
@@ -28,33 +37,72 @@ public class SecurityConfig {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    // New hashes use this encoder; others are rewritten with it on the user's next login
+    @Value("${app.auth.password.encoder:bcrypt}")
+    private String passwordEncoderId;
+
+    @Value("${app.auth.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${app.auth.password.hash-threads:2}")
+    private int hashThreads;
+
+    @Value("${app.auth.password.hash-queue-capacity:64}")
+    private int hashQueueCapacity;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationProvider authenticationProvider)
+            throws Exception {
+        // Metrics are for operators only; they are reachable just on the management port, which is not public
+        boolean separateManagementPort = managementPort > 0 && managementPort != serverPort;
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(request -> separateManagementPort && request.getLocalPort() == managementPort)
+                        .permitAll()
+                        // Ahead of "/{shortCode}", which also matches the bare /actuator path
+                        .requestMatchers("/actuator", "/actuator/**").denyAll()
                         .requestMatchers("/api/auth/**", "/{shortCode}", "/swagger-ui/**", "/api-docs/**").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
+                        // Re-dispatches of streaming responses (SSE, export) were authorized by the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .anyRequest().authenticated())
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authenticationProvider(authenticationProvider())
+                .authenticationProvider(authenticationProvider)
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!encoders.containsKey(passwordEncoderId)) {
+            throw new IllegalArgumentException("app.auth.password.encoder must be one of " + encoders.keySet());
+        }
+        DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(passwordEncoderId, encoders);
+        // Hashes stored before they carried an {id} prefix are plain BCrypt
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(encoders.get("bcrypt"));
+        return new BoundedPasswordEncoder(delegatingEncoder, hashThreads, hashQueueCapacity, meterRegistry);
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Rehashes the password on a successful login when its encoding is outdated
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
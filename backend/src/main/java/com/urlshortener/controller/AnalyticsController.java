@@ -1,18 +1,38 @@
 package com.urlshortener.controller;
 
+import com.urlshortener.dto.AgentBreakdownResponse;
 import com.urlshortener.dto.AnalyticsResponse;
-import com.urlshortener.entity.User;
+import com.urlshortener.dto.TimeSeriesResponse;
+import com.urlshortener.dto.TopValueResponse;
+import com.urlshortener.entity.Url;
+import com.urlshortener.exception.ForbiddenException;
+import com.urlshortener.repository.ClickRollupRepository;
+import com.urlshortener.repository.ClickTopValuesRepository;
+import com.urlshortener.security.AuthenticatedUser;
 import com.urlshortener.service.AnalyticsService;
-import com.urlshortener.service.AuthService;
+import com.urlshortener.service.ClickExportService;
+import com.urlshortener.service.UrlService;
+import com.urlshortener.web.LiveClickBroker;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -25,20 +45,166 @@ public class AnalyticsController {
     private AnalyticsService analyticsService;
 
     @Autowired
-    private AuthService authService;
+    private UrlService urlService;
+
+    @Autowired
+    private ClickExportService clickExportService;
+
+    @Autowired
+    private LiveClickBroker liveClickBroker;
 
     @GetMapping("/{shortCode}")
-    @Operation(summary = "Get analytics for a specific URL")
-    public ResponseEntity<AnalyticsResponse> getUrlAnalytics(@PathVariable("shortCode") String shortCode) {
-        AnalyticsResponse analytics = analyticsService.getUrlAnalyticsByShortCode(shortCode);
+    @Operation(summary = "Get a URL's clicks as a dense series plus unique visitors, by default over its whole history")
+    public ResponseEntity<AnalyticsResponse> getUrlAnalytics(
+            @PathVariable("shortCode") String shortCode,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "maxPoints", defaultValue = "500") int maxPoints,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        AnalyticsResponse analytics = analyticsService.getUrlAnalytics(ownedUrl(shortCode, user),
+                parseTime(from, false), parseTime(to, true), parseGranularity(granularity), maxPoints);
         return ResponseEntity.ok(analytics);
     }
 
+    @GetMapping("/{shortCode}/series")
+    @Operation(summary = "Get a URL's clicks as a dense time series by minute, hour, day or week")
+    public ResponseEntity<TimeSeriesResponse> getUrlSeries(
+            @PathVariable("shortCode") String shortCode,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "maxPoints", defaultValue = "500") int maxPoints,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long urlId = ownedUrl(shortCode, user).getId();
+        return ResponseEntity.ok(analyticsService.getUrlSeries(urlId, parseTime(from, false), parseTime(to, true),
+                parseGranularity(granularity), maxPoints));
+    }
+
+    @GetMapping("/{shortCode}/referrers")
+    @Operation(summary = "Get the most frequent referrers of a URL")
+    public ResponseEntity<List<TopValueResponse>> getTopReferrers(
+            @PathVariable("shortCode") String shortCode,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long urlId = ownedUrl(shortCode, user).getId();
+        return ResponseEntity.ok(analyticsService.getTopValues(urlId, ClickTopValuesRepository.Field.REFERRER, limit));
+    }
+
+    @GetMapping("/{shortCode}/user-agents")
+    @Operation(summary = "Get the most frequent user agents of a URL")
+    public ResponseEntity<List<TopValueResponse>> getTopUserAgents(
+            @PathVariable("shortCode") String shortCode,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long urlId = ownedUrl(shortCode, user).getId();
+        return ResponseEntity.ok(analyticsService.getTopValues(urlId, ClickTopValuesRepository.Field.USER_AGENT, limit));
+    }
+
+    @GetMapping("/{shortCode}/breakdown")
+    @Operation(summary = "Get a URL's clicks by device type, browser and operating system")
+    public ResponseEntity<AgentBreakdownResponse> getAgentBreakdown(
+            @PathVariable("shortCode") String shortCode,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(analyticsService.getAgentBreakdown(ownedUrl(shortCode, user).getId()));
+    }
+
+    @GetMapping("/{shortCode}/export")
+    @Operation(summary = "Stream a URL's raw clicks as CSV or NDJSON, resumable by click id")
+    public ResponseEntity<StreamingResponseBody> exportClicks(
+            @PathVariable("shortCode") String shortCode,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "limit", required = false) Long limit,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Long urlId = ownedUrl(shortCode, user).getId();
+        ClickExportService.Format exportFormat = ClickExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        clickExportService.checkAvailable();
+
+        // Dates are inclusive; the query takes [from, to) timestamps
+        LocalDateTime fromTime = (from != null ? from : LocalDate.of(1970, 1, 1)).atStartOfDay();
+        LocalDateTime toTime = (to != null ? to : LocalDate.of(9999, 12, 30)).plusDays(1).atStartOfDay();
+        long maxRows = limit != null ? limit : Long.MAX_VALUE;
+        StreamingResponseBody body = out -> clickExportService.export(urlId, fromTime, toTime, after, maxRows,
+                exportFormat, gzip, out);
+
+        String filename = "clicks-" + shortCode + "." + exportFormat.extension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    @GetMapping(value = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream click count deltas of the logged-in user's URLs as Server-Sent Events",
+            description = "Only clicks redirected by the node serving this stream are included; with several"
+                    + " backend nodes, each stream sees that node's share of the traffic.")
+    public ResponseEntity<SseEmitter> streamClicks(@AuthenticationPrincipal AuthenticatedUser user) {
+        SseEmitter emitter = liveClickBroker.subscribe(user.id());
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        // Keeps reverse proxies from buffering the stream
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+
+    /** Superseded by {@link #getUserSeries}, which is bounded and dense. */
+    @Deprecated
     @GetMapping("/user")
-    @Operation(summary = "Get aggregate analytics for logged-in user")
-    public ResponseEntity<Map<LocalDate, Long>> getUserAnalytics(Authentication authentication) {
-        User user = authService.getUserByEmail(authentication.getName());
-        Map<LocalDate, Long> analytics = analyticsService.getUserAnalytics(user.getId());
-        return ResponseEntity.ok(analytics);
+    @Operation(summary = "Get the logged-in user's daily clicks over their whole history; use /user/series instead",
+            deprecated = true)
+    public ResponseEntity<Map<LocalDate, Long>> getUserAnalytics(@AuthenticationPrincipal AuthenticatedUser user) {
+        Map<LocalDate, Long> analytics = analyticsService.getUserAnalytics(user.id());
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header(HttpHeaders.LINK, "</api/analytics/user/series>; rel=\"successor-version\"")
+                .body(analytics);
+    }
+
+    @GetMapping("/user/series")
+    @Operation(summary = "Get the logged-in user's clicks over all URLs as a dense time series")
+    public ResponseEntity<TimeSeriesResponse> getUserSeries(
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "maxPoints", defaultValue = "500") int maxPoints,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(analyticsService.getUserSeries(user.id(), parseTime(from, false),
+                parseTime(to, true), parseGranularity(granularity), maxPoints));
+    }
+
+    /** The link behind {@code shortCode}, looked up once; 403 unless {@code user} owns it. */
+    private Url ownedUrl(String shortCode, AuthenticatedUser user) {
+        Url url = urlService.getUrlByShortCode(shortCode);
+        if (!url.getUserId().equals(user.id())) {
+            throw new ForbiddenException("You do not own this short URL");
+        }
+        return url;
+    }
+
+    private static ClickRollupRepository.Granularity parseGranularity(String granularity) {
+        return ClickRollupRepository.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+    }
+
+    /** An ISO date-time, or an ISO date meaning the start (or, for an end bound, the end) of that day. */
+    private static LocalDateTime parseTime(String value, boolean end) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                LocalDate day = LocalDate.parse(value);
+                return end ? day.atTime(LocalTime.MAX) : day.atStartOfDay();
+            }
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date or date-time: " + value);
+        }
     }
 }
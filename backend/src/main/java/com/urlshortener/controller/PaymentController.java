@@ -2,18 +2,18 @@ package com.urlshortener.controller;
 
 import com.google.zxing.WriterException;
 import com.urlshortener.dto.QrCodeResponse;
-import com.urlshortener.entity.User;
-import com.urlshortener.service.AuthService;
+import com.urlshortener.security.AuthenticatedUser;
 import com.urlshortener.service.PaymentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,28 +23,38 @@ import java.util.Map;
 @SecurityRequirement(name = "bearer-jwt")
 public class PaymentController {
 
-    @Autowired
-    private PaymentService paymentService;
+    public static final String PAYMENT_REFERENCE_HEADER = "X-Payment-Reference-Id";
 
     @Autowired
-    private AuthService authService;
+    private PaymentService paymentService;
 
     @PostMapping("/generate-qr")
     @Operation(summary = "Generate QR code for payment")
-    public ResponseEntity<QrCodeResponse> generateQrCode(Authentication authentication)
-            throws WriterException, IOException {
-        User user = authService.getUserByEmail(authentication.getName());
-        QrCodeResponse qrCode = paymentService.generateQrCode(user.getId());
+    public ResponseEntity<QrCodeResponse> generateQrCode(@AuthenticationPrincipal AuthenticatedUser user)
+            throws WriterException {
+        QrCodeResponse qrCode = paymentService.generateQrCode(user.id());
         return ResponseEntity.ok(qrCode);
     }
 
+    @PostMapping(value = "/generate-qr", params = "format=png", produces = MediaType.IMAGE_PNG_VALUE)
+    @Operation(summary = "Generate QR code for payment as a PNG image, with the payment reference in "
+            + PAYMENT_REFERENCE_HEADER)
+    public ResponseEntity<byte[]> generateQrCodePng(@AuthenticationPrincipal AuthenticatedUser user)
+            throws WriterException {
+        PaymentService.PaymentQrCode qrCode = paymentService.generateQrCodePng(user.id());
+        return ResponseEntity.ok()
+                .header(PAYMENT_REFERENCE_HEADER, qrCode.paymentReferenceId())
+                .cacheControl(CacheControl.noStore())
+                .contentType(MediaType.IMAGE_PNG)
+                .body(qrCode.png());
+    }
+
     @PostMapping("/confirm")
     @Operation(summary = "Confirm payment completion")
     public ResponseEntity<Map<String, Object>> confirmPayment(
             @RequestParam("paymentReferenceId") String paymentReferenceId,
-            Authentication authentication) {
-        User user = authService.getUserByEmail(authentication.getName());
-        paymentService.confirmPayment(paymentReferenceId, user.getId());
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        paymentService.confirmPayment(paymentReferenceId, user.id());
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
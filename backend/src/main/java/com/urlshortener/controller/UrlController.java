@@ -1,14 +1,17 @@
 package com.urlshortener.controller;
 
+import com.urlshortener.cache.ResolvedUrl;
+import com.urlshortener.dto.RedirectSettingsRequest;
 import com.urlshortener.dto.UrlRequest;
 import com.urlshortener.dto.UrlResponse;
 import com.urlshortener.entity.Payment;
-import com.urlshortener.entity.User;
 import com.urlshortener.entity.Url;
+import com.urlshortener.security.AuthenticatedUser;
 import com.urlshortener.service.AnalyticsService;
-import com.urlshortener.service.AuthService;
 import com.urlshortener.service.PaymentService;
 import com.urlshortener.service.UrlService;
+import com.urlshortener.util.ClientIpResolver;
+import com.urlshortener.web.Redirects;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -18,10 +21,9 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -31,9 +33,6 @@ public class UrlController {
     @Autowired
     private UrlService urlService;
 
-    @Autowired
-    private AuthService authService;
-
     @Autowired
     private PaymentService paymentService;
 
@@ -45,13 +44,11 @@ public class UrlController {
     @Operation(summary = "Create short URL after payment confirmation")
     public ResponseEntity<UrlResponse> shortenUrl(
             @Valid @RequestBody UrlRequest request,
-            Authentication authentication) {
-        User user = authService.getUserByEmail(authentication.getName());
-
+            @AuthenticationPrincipal AuthenticatedUser user) {
         // Verify payment via reference ID
         Payment payment = paymentService.getPaymentByReference(request.getPaymentReferenceId());
 
-        if (!payment.getUserId().equals(user.getId())) {
+        if (!payment.getUserId().equals(user.id())) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
@@ -60,46 +57,52 @@ public class UrlController {
         }
 
         // Create short URL
-        UrlResponse response = urlService.createShortUrl(request.getOriginalUrl(), user.getId());
+        UrlResponse response = urlService.createShortUrl(request.getOriginalUrl(), user.id(),
+                request.getRedirectPolicy(), request.getCacheMaxAge());
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/api/url/user")
     @SecurityRequirement(name = "bearer-jwt")
     @Operation(summary = "Get all URLs for logged-in user")
-    public ResponseEntity<List<UrlResponse>> getUserUrls(Authentication authentication) {
-        User user = authService.getUserByEmail(authentication.getName());
-        List<UrlResponse> urls = urlService.getUserUrls(user.getId());
+    public ResponseEntity<List<UrlResponse>> getUserUrls(@AuthenticationPrincipal AuthenticatedUser user) {
+        List<UrlResponse> urls = urlService.getUserUrls(user.id());
         return ResponseEntity.ok(urls);
     }
 
+    @PutMapping("/api/url/{shortCode}/redirect")
+    @SecurityRequirement(name = "bearer-jwt")
+    @Operation(summary = "Change a URL's redirect status code and Cache-Control max-age")
+    public ResponseEntity<UrlResponse> updateRedirectSettings(
+            @PathVariable("shortCode") String shortCode,
+            @Valid @RequestBody RedirectSettingsRequest request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        Url url = urlService.getUrlByShortCode(shortCode);
+
+        if (!url.getUserId().equals(user.id())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        UrlResponse response = urlService.updateRedirectSettings(url, request.getRedirectPolicy(),
+                request.getCacheMaxAge());
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{shortCode}")
     @Operation(summary = "Redirect to original URL")
     public void redirectUrl(
             @PathVariable("shortCode") String shortCode,
             HttpServletRequest request,
-            HttpServletResponse response) throws IOException {
+            HttpServletResponse response) {
 
-        String ipAddress = getClientIp(request);
+        String ipAddress = ClientIpResolver.resolve(request);
         String userAgent = request.getHeader("User-Agent");
         String referrer = request.getHeader("Referer");
 
-        // Single transactional call to lookup and track
-        String originalUrl = urlService.getOriginalUrlAndTrack(shortCode, ipAddress, userAgent, referrer,
-                analyticsService);
+        // Single call to lookup and track
+        ResolvedUrl url = urlService.resolveAndTrack(shortCode, ipAddress, userAgent, referrer, analyticsService);
 
-        // Redirect
-        response.sendRedirect(originalUrl);
-    }
-
-    private String getClientIp(HttpServletRequest request) {
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("X-Real-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
-        }
-        return ip;
+        // Redirect with the link's status code and Cache-Control
+        Redirects.send(response, url);
     }
 }
@@ -0,0 +1,19 @@
+package com.urlshortener.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentBreakdownResponse {
+    private Long totalClicks;
+    // Keyed by DeviceType, BrowserFamily and OsFamily names, largest first
+    private Map<String, Long> deviceTypes;
+    private Map<String, Long> browsers;
+    private Map<String, Long> operatingSystems;
+    private Long botClicks;
+}
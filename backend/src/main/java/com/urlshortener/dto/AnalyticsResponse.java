@@ -4,8 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.time.LocalDate;
-import java.util.Map;
+import java.time.LocalDateTime;
 
 @Data
 @NoArgsConstructor
@@ -14,5 +13,15 @@ public class AnalyticsResponse {
     private Long urlId;
     private String shortCode;
     private Long totalClicks;
-    private Map<LocalDate, Long> clicksByDate;
+    private Long estimatedCachedClicks;
+    // Clicks as a dense series; clicks[i] covers [start + i * stepSeconds, start + (i + 1) * stepSeconds)
+    private String granularity;
+    private LocalDateTime start;
+    private Long stepSeconds;
+    private long[] clicks;
+    // HyperLogLog estimates over (IP address, user agent); see uniqueVisitorsRelativeError
+    private Long uniqueVisitors;
+    // Aligned with clicks when each point is a whole number of days, otherwise null
+    private long[] uniqueVisitorsByPoint;
+    private Double uniqueVisitorsRelativeError;
 }
@@ -0,0 +1,23 @@
+package com.urlshortener.dto;
+
+import com.urlshortener.entity.RedirectPolicy;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedirectSettingsRequest {
+
+    @NotNull(message = "Redirect policy is required")
+    private RedirectPolicy redirectPolicy;
+
+    @NotNull(message = "Cache max-age is required")
+    @Min(value = 0, message = "Cache max-age cannot be negative")
+    @Max(value = 31_536_000, message = "Cache max-age cannot exceed one year")
+    private Integer cacheMaxAge;
+}
@@ -0,0 +1,20 @@
+package com.urlshortener.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesResponse {
+    private String granularity;
+    // clicks[i] covers [start + i * stepSeconds, start + (i + 1) * stepSeconds)
+    private LocalDateTime start;
+    // The granularity, or a multiple of it when the range had more buckets than maxPoints
+    private Long stepSeconds;
+    private Long totalClicks;
+    private long[] clicks;
+}
@@ -0,0 +1,15 @@
+package com.urlshortener.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopValueResponse {
+    private String value;
+    private Long clicks;
+    // clicks may overcount by up to this much; the true count is at least clicks - maxOvercount
+    private Long maxOvercount;
+}
@@ -1,5 +1,8 @@
 package com.urlshortener.dto;
 
+import com.urlshortener.entity.RedirectPolicy;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -15,4 +18,11 @@ public class UrlRequest {
 
     @NotBlank(message = "Payment reference ID is required")
     private String paymentReferenceId;
+
+    // Optional; a new link defaults to an uncached 302
+    private RedirectPolicy redirectPolicy;
+
+    @Min(value = 0, message = "Cache max-age cannot be negative")
+    @Max(value = 31_536_000, message = "Cache max-age cannot exceed one year")
+    private Integer cacheMaxAge;
 }
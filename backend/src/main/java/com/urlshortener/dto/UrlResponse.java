@@ -1,5 +1,6 @@
 package com.urlshortener.dto;
 
+import com.urlshortener.entity.RedirectPolicy;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,4 +17,7 @@ public class UrlResponse {
     private String shortUrl;
     private Integer totalClicks;
     private LocalDateTime createdAt;
+    private RedirectPolicy redirectPolicy;
+    private Integer cacheMaxAge;
+    private Long estimatedCachedClicks;
 }
@@ -0,0 +1,16 @@
+package com.urlshortener.entity;
+
+/**
+ * Browser family derived from a click's User-Agent. Stored by ordinal in
+ * SMALLINT columns, so constants may only be appended.
+ */
+public enum BrowserFamily {
+    OTHER,
+    CHROME,
+    SAFARI,
+    FIREFOX,
+    EDGE,
+    OPERA,
+    SAMSUNG_INTERNET,
+    INTERNET_EXPLORER
+}
@@ -27,12 +27,35 @@ public class ClickAnalytics {
     @Column(name = "ip_address", length = 45)
     private String ipAddress;
 
+    // Ids in click_user_agents / click_referrers
+    @Column(name = "user_agent_id")
+    private Integer userAgentId;
+
+    @Column(name = "referrer_id")
+    private Integer referrerId;
+
+    // Only set on rows written before interning that are not migrated yet, or for a value that could not be interned
     @Column(name = "user_agent", columnDefinition = "TEXT")
     private String userAgent;
 
     @Column(columnDefinition = "TEXT")
     private String referrer;
 
+    // Derived from the user agent at ingestion; NULL on rows written before classification
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "device_type", columnDefinition = "SMALLINT")
+    private DeviceType deviceType;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "browser_family", columnDefinition = "SMALLINT")
+    private BrowserFamily browserFamily;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "os_family", columnDefinition = "SMALLINT")
+    private OsFamily osFamily;
+
+    private Boolean bot;
+
     @PrePersist
     protected void onCreate() {
         clickedAt = LocalDateTime.now();
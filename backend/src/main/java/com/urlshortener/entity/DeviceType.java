@@ -0,0 +1,14 @@
+package com.urlshortener.entity;
+
+/**
+ * Kind of client a click came from, derived from its User-Agent. Stored by
+ * ordinal in SMALLINT columns, so constants may only be appended.
+ */
+public enum DeviceType {
+    OTHER,
+    DESKTOP,
+    MOBILE,
+    TABLET,
+    /** Crawlers, link previewers and HTTP libraries. */
+    BOT
+}
@@ -0,0 +1,15 @@
+package com.urlshortener.entity;
+
+/**
+ * Operating system family derived from a click's User-Agent. Stored by
+ * ordinal in SMALLINT columns, so constants may only be appended.
+ */
+public enum OsFamily {
+    OTHER,
+    WINDOWS,
+    MACOS,
+    IOS,
+    ANDROID,
+    LINUX,
+    CHROME_OS
+}
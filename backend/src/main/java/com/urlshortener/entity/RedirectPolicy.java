@@ -0,0 +1,28 @@
+package com.urlshortener.entity;
+
+/**
+ * How a short link redirects. Only {@link #PERMANENT} is cached by browsers
+ * without an explicit max-age; every policy honours the link's
+ * {@code cacheMaxAge}.
+ */
+public enum RedirectPolicy {
+
+    /** 301 Moved Permanently. */
+    PERMANENT(301),
+
+    /** 302 Found; the historical behaviour. */
+    TEMPORARY(302),
+
+    /** 307 Temporary Redirect; the client must repeat the request with the same method. */
+    PRESERVE_METHOD(307);
+
+    private final int status;
+
+    RedirectPolicy(int status) {
+        this.status = status;
+    }
+
+    public int status() {
+        return status;
+    }
+}
@@ -1,14 +1,20 @@
 package com.urlshortener.entity;
 
+import com.urlshortener.cache.UrlCacheInvalidationListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SourceType;
+import org.hibernate.generator.EventType;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "urls")
+@Table(name = "urls", indexes = @Index(name = "idx_urls_updated_at", columnList = "updated_at"))
+@EntityListeners(UrlCacheInvalidationListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,18 +30,33 @@ public class Url {
     @Column(name = "original_url", nullable = false, columnDefinition = "TEXT")
     private String originalUrl;
 
-    @Column(name = "short_code", nullable = false, unique = true, length = 20)
+    @Column(name = "short_code", nullable = false, unique = true, length = 20, updatable = false)
     private String shortCode;
 
-    @Column(name = "total_clicks", nullable = false)
+    // Maintained only through relative updates by ClickCounter
+    @Column(name = "total_clicks", nullable = false, updatable = false)
     private Integer totalClicks = 0;
 
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "redirect_policy", nullable = false, columnDefinition = "VARCHAR(20) DEFAULT 'TEMPORARY'")
+    private RedirectPolicy redirectPolicy = RedirectPolicy.TEMPORARY;
+
+    // Seconds browsers and CDNs may reuse the redirect; 0 sends no-store so every click is counted
+    @Column(name = "cache_max_age", nullable = false, columnDefinition = "INTEGER DEFAULT 0")
+    private Integer cacheMaxAge = 0;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // Start of the writing transaction on the database clock; UrlChangeFeed reads changes in this order
+    @CurrentTimestamp(event = { EventType.INSERT, EventType.UPDATE }, source = SourceType.DB)
+    @Column(name = "updated_at", nullable = false,
+            columnDefinition = "TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP")
+    private Instant updatedAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
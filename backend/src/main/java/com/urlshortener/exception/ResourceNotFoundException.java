@@ -4,4 +4,17 @@ public class ResourceNotFoundException extends RuntimeException {
     public ResourceNotFoundException(String message) {
         super(message);
     }
+
+    private ResourceNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * For hot paths that reject the same kind of request over and over (e.g.
+     * unknown short codes): no stack trace is captured and, since the instance
+     * is immutable, it can be shared and thrown repeatedly.
+     */
+    public static ResourceNotFoundException withoutStackTrace(String message) {
+        return new ResourceNotFoundException(message, false);
+    }
 }
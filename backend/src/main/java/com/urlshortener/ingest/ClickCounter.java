@@ -0,0 +1,184 @@
+package com.urlshortener.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Per-URL click deltas kept in striped {@link LongAdder}s and periodically
+ * applied to urls.total_clicks as relative updates. Redirects never read or
+ * lock the urls row, so a viral link costs one uncontended add per click.
+ * Each applied batch is also handed to the registered flush listeners.
+ */
+@Component
+public class ClickCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickCounter.class);
+
+    private static final String APPLY_DELTA_SQL = "UPDATE urls SET total_clicks = total_clicks + ? WHERE id = ?";
+
+    private static final long RETIRED_GRACE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final ConcurrentHashMap<Long, LongAdder> cells = new ConcurrentHashMap<>();
+    private final List<RetiredAdder> retired = new ArrayList<>();
+    private final List<Consumer<Map<Long, Long>>> flushListeners = new CopyOnWriteArrayList<>();
+    // A lock rather than synchronized: flush holds it across JDBC calls, which would pin a virtual thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter flushedCounter;
+
+    public ClickCounter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.counter.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.flushedCounter = meterRegistry.counter("clicks.counter.flushed");
+        Gauge.builder("clicks.counter.pending.urls", cells, Map::size)
+                .description("URLs with click deltas not yet written to total_clicks")
+                .register(meterRegistry);
+    }
+
+    public void increment(Long urlId) {
+        add(urlId, 1);
+    }
+
+    /**
+     * Registers a callback that receives each batch of per-URL deltas once it
+     * is committed, on the flushing thread. It must not block.
+     */
+    public void addFlushListener(Consumer<Map<Long, Long>> listener) {
+        flushListeners.add(listener);
+    }
+
+    /**
+     * Drains all pending deltas and applies them in JDBC batches within one
+     * transaction. On failure the deltas are put back and retried next run.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.counter.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Long> deltas = drain();
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            long clicks = 0;
+            for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+                args.add(new Object[] { entry.getValue(), entry.getKey() });
+                clicks += entry.getValue();
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int from = 0; from < args.size(); from += batchSize) {
+                        jdbcTemplate.batchUpdate(APPLY_DELTA_SQL,
+                                args.subList(from, Math.min(from + batchSize, args.size())));
+                    }
+                });
+                flushedCounter.increment(clicks);
+            } catch (RuntimeException e) {
+                deltas.forEach(this::add);
+                log.error("Failed to apply click deltas for {} URLs, will retry", deltas.size(), e);
+                return;
+            }
+            notifyListeners(deltas);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void notifyListeners(Map<Long, Long> deltas) {
+        if (flushListeners.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> applied = Map.copyOf(deltas);
+        for (Consumer<Map<Long, Long>> listener : flushListeners) {
+            try {
+                listener.accept(applied);
+            } catch (RuntimeException e) {
+                log.warn("Click flush listener failed", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    void add(Long urlId, long delta) {
+        LongAdder adder = cells.get(urlId);
+        if (adder == null) {
+            adder = cells.computeIfAbsent(urlId, id -> new LongAdder());
+        }
+        adder.add(delta);
+    }
+
+    /**
+     * Collects and resets every non-zero delta. URLs that were idle for a
+     * whole interval are unlinked from the map; their adders are still
+     * drained for a grace period so a redirect that looked the adder up just
+     * before it was unlinked is not lost.
+     */
+    Map<Long, Long> drain() {
+        flushLock.lock();
+        try {
+            Map<Long, Long> deltas = new HashMap<>();
+            long now = System.nanoTime();
+
+            for (Iterator<RetiredAdder> it = retired.iterator(); it.hasNext();) {
+                RetiredAdder retiredAdder = it.next();
+                long delta = retiredAdder.adder().sumThenReset();
+                if (delta != 0) {
+                    deltas.merge(retiredAdder.urlId(), delta, Long::sum);
+                }
+                if (now - retiredAdder.retiredAt() > RETIRED_GRACE_NANOS) {
+                    it.remove();
+                }
+            }
+
+            cells.forEach((urlId, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta != 0) {
+                    deltas.merge(urlId, delta, Long::sum);
+                } else if (cells.remove(urlId, adder)) {
+                    retired.add(new RetiredAdder(urlId, adder, now));
+                }
+            });
+            return deltas;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private record RetiredAdder(Long urlId, LongAdder adder, long retiredAt) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.repository.ClickDictionaryRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves the user agent and referrer strings of click_analytics rows written
+ * before interning into the {@link ClickDictionaryRepository} lookup tables,
+ * replacing them with ids. Chunks of ids run in parallel, each in one
+ * transaction that interns the chunk's distinct values and then rewrites
+ * its rows once. A migrated row no longer has strings, so the work is
+ * idempotent: an interrupted run simply starts again and skips over what
+ * is done. The space held by the strings is reused by later inserts once
+ * autovacuum has processed the table.
+ */
+@Component
+public class ClickDictionaryMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickDictionaryMigration.class);
+
+    private static final String INTERN_USER_AGENTS = "INSERT INTO click_user_agents (value)"
+            + " SELECT v FROM (SELECT DISTINCT user_agent AS v FROM click_analytics"
+            + " WHERE id >= ? AND id < ? AND user_agent IS NOT NULL) d"
+            + " ORDER BY md5(v) ON CONFLICT ((md5(value))) DO NOTHING";
+
+    private static final String INTERN_REFERRERS = "INSERT INTO click_referrers (value)"
+            + " SELECT v FROM (SELECT DISTINCT referrer AS v FROM click_analytics"
+            + " WHERE id >= ? AND id < ? AND referrer IS NOT NULL) d"
+            + " ORDER BY md5(v) ON CONFLICT ((md5(value))) DO NOTHING";
+
+    // One new row version per click; a string without a matching entry (md5 collision) is left in place
+    private static final String REPLACE_STRINGS = "UPDATE click_analytics c SET"
+            + " user_agent_id = coalesce(m.user_agent_id, c.user_agent_id),"
+            + " user_agent = CASE WHEN m.user_agent_id IS NULL THEN c.user_agent END,"
+            + " referrer_id = coalesce(m.referrer_id, c.referrer_id),"
+            + " referrer = CASE WHEN m.referrer_id IS NULL THEN c.referrer END"
+            + " FROM (SELECT x.id, ua.id AS user_agent_id, rf.id AS referrer_id FROM click_analytics x"
+            + " LEFT JOIN click_user_agents ua ON md5(ua.value) = md5(x.user_agent) AND ua.value = x.user_agent"
+            + " LEFT JOIN click_referrers rf ON md5(rf.value) = md5(x.referrer) AND rf.value = x.referrer"
+            + " WHERE x.id >= ? AND x.id < ? AND (x.user_agent IS NOT NULL OR x.referrer IS NOT NULL)) m"
+            + " WHERE c.id = m.id AND c.id >= ? AND c.id < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int parallelism;
+
+    public ClickDictionaryMigration(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.analytics.dictionary.migration.enabled:false}") boolean enabled,
+            @Value("${app.analytics.dictionary.migration.parallelism:2}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.parallelism = parallelism;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread migration = new Thread(this::run, "click-dictionary-migration");
+        migration.setDaemon(true);
+        migration.start();
+    }
+
+    /** Migrates every chunk that still has strings; returns the number of rows rewritten. */
+    public long run() {
+        long start = System.nanoTime();
+        // Rows written from here on are interned by the writer, so the range only shrinks
+        long[] range = jdbcTemplate.queryForObject("SELECT min(id), max(id) FROM click_analytics"
+                + " WHERE user_agent IS NOT NULL OR referrer IS NOT NULL",
+                (rs, rowNum) -> rs.getObject(1) == null ? null : new long[] { rs.getLong(1), rs.getLong(2) + 1 });
+        if (range == null) {
+            log.info("Click dictionary migration: no rows left to migrate");
+            return 0;
+        }
+        List<long[]> chunks = ClickRollupBackfill.chunks(range[0], range[1]);
+
+        AtomicLong migrated = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+            for (long[] chunk : chunks) {
+                futures.add(executor.submit(() -> {
+                    Integer rows = transactionTemplate.execute(status -> migrateChunk(chunk[0], chunk[1]));
+                    long total = migrated.addAndGet(rows == null ? 0 : rows);
+                    if (chunk[0] / ClickRollupBackfill.CHUNK_IDS % 100 == 0) {
+                        log.info("Click dictionary migration: {} rows so far, at id {}", total, chunk[0]);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            // Finished chunks stay committed and are skipped by the next run
+            log.error("Click dictionary migration stopped after {} rows", migrated.get(), e);
+            return migrated.get();
+        }
+        log.info("Click dictionary migration finished: {} rows in {} chunks ({} ms)",
+                migrated.get(), chunks.size(), (System.nanoTime() - start) / 1_000_000);
+        return migrated.get();
+    }
+
+    private int migrateChunk(long fromId, long toId) {
+        jdbcTemplate.update(INTERN_USER_AGENTS, fromId, toId);
+        jdbcTemplate.update(INTERN_REFERRERS, fromId, toId);
+        return jdbcTemplate.update(REPLACE_STRINGS, fromId, toId, fromId, toId);
+    }
+}
@@ -0,0 +1,10 @@
+package com.urlshortener.ingest;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single redirect, captured on the request thread and persisted later by
+ * the background writer.
+ */
+public record ClickEvent(Long urlId, LocalDateTime clickedAt, String ipAddress, String userAgent, String referrer) {
+}
@@ -0,0 +1,44 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.repository.ClickAgentRollupRepository;
+import com.urlshortener.repository.ClickRollupRepository;
+import com.urlshortener.repository.ClickTopValuesRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Persists drained click events to the configured {@link RawClickStore} and
+ * adds them to the daily rollups, top-value summaries and user agent
+ * breakdowns in the same transaction. The urls.total_clicks counter is maintained separately by {@link ClickCounter}.
+ */
+@Component
+public class ClickEventWriter {
+
+    @Autowired
+    private RawClickStore rawClickStore;
+
+    @Autowired
+    private ClickRollupRepository clickRollupRepository;
+
+    @Autowired
+    private ClickTopValuesRepository clickTopValuesRepository;
+
+    @Autowired
+    private ClickAgentRollupRepository clickAgentRollupRepository;
+
+    @Transactional
+    public void write(List<ClickEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // Rollups first: a store outside the database appends last, so a failed append rolls them back
+        clickRollupRepository.addClicks(events);
+        clickTopValuesRepository.addClicks(events);
+        clickAgentRollupRepository.addClicks(events);
+        rawClickStore.append(events);
+    }
+}
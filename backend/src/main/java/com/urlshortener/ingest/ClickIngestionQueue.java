@@ -0,0 +1,234 @@
+package com.urlshortener.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded hand-off between the redirect path and the database. Request
+ * threads only enqueue; a single background writer drains the queue and
+ * flushes whenever a batch fills up or the oldest queued event reaches the
+ * configured max delay. A batch whose write fails is retried with
+ * exponential backoff before it is given up, so a brief database outage
+ * does not leave the rollups short of clicks that total_clicks counted;
+ * meanwhile new events wait in the queue.
+ */
+@Component
+public class ClickIngestionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickIngestionQueue.class);
+
+    // PostgreSQL accepts at most 65535 bind parameters per statement
+    static final int MAX_BATCH_SIZE = 65535 / JdbcRawClickStore.COLUMNS;
+    private static final long MAX_RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final BlockingQueue<ClickEvent> queue;
+    private final ClickEventWriter writer;
+    private final int capacity;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final double sampleRate;
+    private final int highWaterMark;
+    private final int writeAttempts;
+    private final long retryBackoffNanos;
+    private final boolean virtualThreads;
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter sampledOutCounter;
+    private final Counter failedCounter;
+    private final Counter retriedCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public ClickIngestionQueue(
+            ClickEventWriter writer,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.ingest.queue-capacity:10000}") int capacity,
+            @Value("${app.analytics.ingest.batch-size:500}") int batchSize,
+            @Value("${app.analytics.ingest.max-delay:200ms}") Duration maxDelay,
+            @Value("${app.analytics.ingest.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+            @Value("${app.analytics.ingest.block-timeout:50ms}") Duration blockTimeout,
+            @Value("${app.analytics.ingest.sample-rate:0.1}") double sampleRate,
+            @Value("${app.analytics.ingest.retry.max-attempts:5}") int writeAttempts,
+            @Value("${app.analytics.ingest.retry.initial-backoff:200ms}") Duration retryBackoff,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("app.analytics.ingest.batch-size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (writeAttempts < 1) {
+            throw new IllegalArgumentException("app.analytics.ingest.retry.max-attempts must be at least 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = writer;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.sampleRate = sampleRate;
+        this.highWaterMark = (int) (capacity * 0.75);
+        this.writeAttempts = writeAttempts;
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        this.virtualThreads = virtualThreads;
+
+        Gauge.builder("clicks.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Click events waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("clicks.ingest.flush")
+                .description("Time spent writing one batch of click events")
+                .register(meterRegistry);
+        this.writtenCounter = meterRegistry.counter("clicks.ingest.written");
+        this.droppedCounter = meterRegistry.counter("clicks.ingest.rejected", "reason", "overflow");
+        this.sampledOutCounter = meterRegistry.counter("clicks.ingest.rejected", "reason", "sampled");
+        this.failedCounter = meterRegistry.counter("clicks.ingest.rejected", "reason", "write-failure");
+        this.retriedCounter = meterRegistry.counter("clicks.ingest.retries");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        writerThread = builder.name("click-ingest-writer").start(this::drainLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 5000);
+    }
+
+    /**
+     * Hands a click event to the background writer according to the
+     * configured overflow policy. Never throws; rejected events are counted.
+     */
+    public void submit(ClickEvent event) {
+        switch (overflowPolicy) {
+            case DROP -> offer(event);
+            case BLOCK -> offerBlocking(event);
+            case SAMPLE -> offerSampled(event);
+        }
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private void offer(ClickEvent event) {
+        if (!queue.offer(event)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void offerBlocking(ClickEvent event) {
+        try {
+            if (!queue.offer(event, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                droppedCounter.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCounter.increment();
+        }
+    }
+
+    private void offerSampled(ClickEvent event) {
+        if (queue.size() >= highWaterMark && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOutCounter.increment();
+            return;
+        }
+        offer(event);
+    }
+
+    private void drainLoop() {
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                ClickEvent first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    ClickEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Write out whatever is still queued on shutdown
+        while (!batch.isEmpty() || queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<ClickEvent> batch) {
+        long backoff = retryBackoffNanos;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                // The write is one transaction, so a failed attempt leaves nothing behind to double count
+                writer.write(batch);
+                writtenCounter.increment(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == writeAttempts) {
+                    failedCounter.increment(batch.size());
+                    log.error("Failed to write {} click events after {} attempts", batch.size(), attempt, e);
+                    return;
+                }
+                log.warn("Failed to write {} click events, retrying in {} ms", batch.size(),
+                        TimeUnit.NANOSECONDS.toMillis(backoff), e);
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            retriedCounter.increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                // Shutting down: one more attempt, then the batch is given up
+                Thread.currentThread().interrupt();
+                attempt = writeAttempts - 1;
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_NANOS);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.repository.ClickDictionaryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps click_analytics range-partitioned by month on clicked_at: converts
+ * the plain table once, creates partitions ahead of time and detaches,
+ * archives or drops partitions past the retention period.
+ * <p>
+ * The conversion does not copy rows. The existing table gets a validated
+ * {@code CHECK (clicked_at < boundary)} and the indexes the partitioned
+ * table declares, (id, clicked_at) unique plus (url_id, clicked_at) and
+ * (url_id, id), while it stays writable, then is renamed and attached as the partition
+ * for everything before the boundary; only that last step briefly locks
+ * out click writes. Monthly partitions start at the boundary, and a default
+ * partition catches clicks outside every range so a missed maintenance run
+ * never loses a batch.
+ * <p>
+ * Nodes serialize maintenance on a lease row in click_partition_lease
+ * rather than a session advisory lock, which a transaction-mode pooler
+ * would leave held on some other client's server connection. The lease is
+ * renewed before each step and expires on its own if its holder dies. The
+ * work runs on its own thread so a long archive never delays the scheduled
+ * flushes.
+ */
+@Component
+public class ClickPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickPartitionManager.class);
+
+    static final String TABLE = "click_analytics";
+    static final String LEGACY_PARTITION = "click_analytics_legacy";
+    static final String DEFAULT_PARTITION = "click_analytics_default";
+    private static final String ID_SEQUENCE = "click_analytics_event_id_seq";
+    private static final String BOUND_CONSTRAINT = "click_analytics_legacy_bound";
+    // A primary key on a partitioned table must include the partition key
+    private static final String LEGACY_KEY_INDEX = "click_analytics_legacy_id_clicked_at";
+    private static final String EXPORT_INDEX = "idx_click_analytics_url_id_id";
+
+    // Single autocommit statements, so the lease works through a transaction-mode pooler
+    private static final String ACQUIRE_LEASE = "INSERT INTO click_partition_lease (id, holder, expires_at)"
+            + " VALUES (1, ?, now() + ? * interval '1 second') ON CONFLICT (id) DO UPDATE"
+            + " SET holder = EXCLUDED.holder, expires_at = EXCLUDED.expires_at"
+            + " WHERE click_partition_lease.expires_at < now() OR click_partition_lease.holder = EXCLUDED.holder";
+
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    public enum RetentionAction { DETACH, DROP }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final RetentionAction retentionAction;
+    private final Path archiveDir;
+    private final Duration interval;
+    private final Duration lease;
+    private final String holder = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService executor;
+
+    public ClickPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.analytics.partitioning.enabled:false}") boolean enabled,
+            @Value("${app.analytics.partitioning.premake-months:3}") int premakeMonths,
+            @Value("${app.analytics.partitioning.retention-months:0}") int retentionMonths,
+            @Value("${app.analytics.partitioning.retention-action:DETACH}") RetentionAction retentionAction,
+            @Value("${app.analytics.partitioning.archive-dir:}") String archiveDir,
+            @Value("${app.analytics.partitioning.interval:6h}") Duration interval,
+            @Value("${app.analytics.partitioning.lease:2h}") Duration lease) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.retentionAction = retentionAction;
+        this.archiveDir = archiveDir.isBlank() ? null : Path.of(archiveDir);
+        this.interval = interval;
+        this.lease = lease;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "click-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::maintainQuietly, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.error("Click partition maintenance failed, will retry in {}", interval, e);
+        }
+    }
+
+    /** Converts, pre-creates and expires partitions; skipped while another node holds the lease. */
+    public void maintain() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!renewLease(connection)) {
+                log.warn("Click partition maintenance skipped: the lease is held by another node ({}), retrying in {}",
+                        leaseHolder(connection), interval);
+                return null;
+            }
+            try {
+                YearMonth current = YearMonth.now();
+                if (!isPartitioned(connection)) {
+                    convert(connection, current.plusMonths(2));
+                }
+                createMonthlyPartitions(connection, current.plusMonths(premakeMonths));
+                if (retentionMonths > 0) {
+                    expirePartitions(connection, current.minusMonths(retentionMonths).atDay(1));
+                }
+            } finally {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM click_partition_lease WHERE id = 1 AND holder = ?")) {
+                    statement.setString(1, holder);
+                    statement.executeUpdate();
+                }
+            }
+            return null;
+        });
+    }
+
+    /** Takes the lease if it is free or expired, or extends it if this node holds it. */
+    private boolean renewLease(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(ACQUIRE_LEASE)) {
+            statement.setString(1, holder);
+            statement.setLong(2, lease.toSeconds());
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    /** Before a step that may run long; fails it rather than overlap with a node that took an expired lease. */
+    private void keepLease(Connection connection) throws SQLException {
+        if (!renewLease(connection)) {
+            throw new IllegalStateException("Lost the click partition maintenance lease to " + leaseHolder(connection));
+        }
+    }
+
+    private String leaseHolder(Connection connection) throws SQLException {
+        return queryString(connection, "SELECT holder || ' until ' || expires_at FROM click_partition_lease"
+                + " WHERE id = 1");
+    }
+
+    /**
+     * Turns the plain table into the partition for everything before
+     * {@code boundary}. The boundary leaves at least a month for the
+     * validating scan to finish before new clicks would violate the check.
+     */
+    private void convert(Connection connection, YearMonth boundary) throws SQLException {
+        String bound = boundary.atDay(1).atStartOfDay().toString();
+        log.info("Converting {} to monthly partitions; existing rows become {} (clicks before {})",
+                TABLE, LEGACY_PARTITION, bound);
+
+        // Both steps scan the table but let click writes continue. A bound left over from an earlier
+        // attempt is replaced, since it would start rejecting clicks once its month arrives.
+        execute(connection, "ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + BOUND_CONSTRAINT);
+        execute(connection, "ALTER TABLE " + TABLE + " ADD CONSTRAINT " + BOUND_CONSTRAINT
+                + " CHECK (clicked_at < TIMESTAMP '" + bound + "') NOT VALID");
+        try {
+            execute(connection, "ALTER TABLE " + TABLE + " VALIDATE CONSTRAINT " + BOUND_CONSTRAINT);
+            keepLease(connection);
+            execute(connection, "CREATE INDEX CONCURRENTLY IF NOT EXISTS click_analytics_legacy_url_id_clicked_at"
+                    + " ON " + TABLE + " (url_id, clicked_at)");
+            keepLease(connection);
+            execute(connection, "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS " + LEGACY_KEY_INDEX
+                    + " ON " + TABLE + " (id, clicked_at)");
+            keepLease(connection);
+            // Normally there already, from schema.sql
+            execute(connection, "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + EXPORT_INDEX
+                    + " ON " + TABLE + " (url_id, id)");
+            keepLease(connection);
+            swap(connection, bound);
+        } catch (SQLException | RuntimeException e) {
+            execute(connection, "ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + BOUND_CONSTRAINT);
+            throw e;
+        }
+        log.info("{} is now partitioned by month", TABLE);
+    }
+
+    private void swap(Connection connection, String bound) throws SQLException {
+        // The swap itself holds an exclusive lock but neither scans nor copies
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            execute(connection, "LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+            execute(connection, "ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+            // Attaching adopts a partition's index only if it backs the same kind of constraint
+            String primaryKey = queryString(connection, "SELECT conname::text FROM pg_constraint"
+                    + " WHERE conrelid = to_regclass(?) AND contype = 'p'", LEGACY_PARTITION);
+            if (primaryKey != null) {
+                execute(connection, "ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT " + primaryKey);
+            }
+            execute(connection, "ALTER TABLE " + LEGACY_PARTITION + " ADD CONSTRAINT " + LEGACY_PARTITION + "_pkey"
+                    + " PRIMARY KEY USING INDEX " + LEGACY_KEY_INDEX);
+            // Frees the name for the parent's index
+            execute(connection, "ALTER INDEX " + EXPORT_INDEX + " RENAME TO " + LEGACY_PARTITION + "_url_id_id");
+            execute(connection, "CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS,"
+                    + " PRIMARY KEY (id, clicked_at)) PARTITION BY RANGE (clicked_at)");
+            // The old id default (identity or serial) stays with the old table; continue after its highest id
+            execute(connection, "CREATE SEQUENCE IF NOT EXISTS " + ID_SEQUENCE);
+            execute(connection, "SELECT setval('" + ID_SEQUENCE + "', coalesce((SELECT max(id) FROM "
+                    + LEGACY_PARTITION + "), 0) + 1, false)");
+            execute(connection, "ALTER TABLE " + TABLE + " ALTER COLUMN id SET DEFAULT nextval('"
+                    + ID_SEQUENCE + "')");
+            execute(connection, "ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+            execute(connection, "ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP DEFAULT");
+            execute(connection, "ALTER TABLE " + TABLE + " ADD FOREIGN KEY (url_id) REFERENCES urls(id)"
+                    + " ON DELETE CASCADE");
+            // Checked by the validated constraint above, so attaching does not scan
+            execute(connection, "ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION
+                    + " FOR VALUES FROM (MINVALUE) TO ('" + bound + "')");
+            // Adopt the indexes built concurrently above instead of building them
+            execute(connection, "CREATE INDEX IF NOT EXISTS idx_click_analytics_url_id_clicked_at"
+                    + " ON " + TABLE + " (url_id, clicked_at)");
+            execute(connection, "CREATE INDEX " + EXPORT_INDEX + " ON " + TABLE + " (url_id, id)");
+            execute(connection, "CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void createMonthlyPartitions(Connection connection, YearMonth through) throws SQLException {
+        LocalDateTime firstMonthly = legacyUpperBound(connection);
+        YearMonth month = firstMonthly == null ? YearMonth.now() : YearMonth.from(firstMonthly);
+        for (; !month.isAfter(through); month = month.plusMonths(1)) {
+            String name = partitionName(month);
+            if (!tableExists(connection, name)) {
+                keepLease(connection);
+                createMonthlyPartition(connection, name, month);
+            }
+        }
+    }
+
+    /**
+     * Creating a partition fails while the default partition holds rows of
+     * its range, e.g. clicks from a month maintenance fell behind on. Those
+     * are moved in the same transaction: the default partition is detached,
+     * the month created, its rows moved over and the default reattached.
+     * Click writes wait for that transaction, which is short because the
+     * default partition normally holds nothing.
+     */
+    private void createMonthlyPartition(Connection connection, String name, YearMonth month) throws SQLException {
+        String from = month.atDay(1).atStartOfDay().toString();
+        String to = month.plusMonths(1).atDay(1).atStartOfDay().toString();
+        String range = " WHERE clicked_at >= TIMESTAMP '" + from + "' AND clicked_at < TIMESTAMP '" + to + "'";
+        String create = "CREATE TABLE " + name + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+        if (!tableExists(connection, DEFAULT_PARTITION)
+                || queryString(connection, "SELECT 'y' FROM " + DEFAULT_PARTITION + range + " LIMIT 1") == null) {
+            // Scans only the default partition, which holds nothing of this month
+            execute(connection, create);
+            log.info("Created click partition {}", name);
+            return;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            execute(connection, "ALTER TABLE " + TABLE + " DETACH PARTITION " + DEFAULT_PARTITION);
+            execute(connection, create);
+            int moved;
+            try (Statement statement = connection.createStatement()) {
+                moved = statement.executeUpdate("INSERT INTO " + name + " SELECT * FROM " + DEFAULT_PARTITION + range);
+            }
+            execute(connection, "DELETE FROM " + DEFAULT_PARTITION + range);
+            execute(connection, "ALTER TABLE " + TABLE + " ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+            connection.commit();
+            log.info("Created click partition {} and moved {} clicks into it from {}", name, moved, DEFAULT_PARTITION);
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void expirePartitions(Connection connection, LocalDate keepFrom) throws SQLException {
+        for (String[] partition : partitions(connection)) {
+            LocalDateTime upper = upperBound(partition[1]);
+            if (upper == null || upper.isAfter(keepFrom.atStartOfDay())) {
+                continue;
+            }
+            String name = partition[0];
+            keepLease(connection);
+            execute(connection, "ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            if (archiveDir != null) {
+                Path file = archive(connection, name);
+                execute(connection, "DROP TABLE " + name);
+                log.info("Archived click partition {} to {} and dropped it", name, file);
+            } else if (retentionAction == RetentionAction.DROP) {
+                execute(connection, "DROP TABLE " + name);
+                log.info("Dropped click partition {}", name);
+            } else {
+                log.info("Detached click partition {}", name);
+            }
+        }
+    }
+
+    /** Writes a detached partition as gzip-compressed CSV; the file only appears once complete. */
+    private Path archive(Connection connection, String table) throws SQLException {
+        try {
+            Files.createDirectories(archiveDir);
+            Path file = archiveDir.resolve(table + ".csv.gz");
+            Path tmp = archiveDir.resolve(table + ".csv.gz.tmp");
+            boolean autoCommit = connection.getAutoCommit();
+            // The driver only streams with a fetch size inside a transaction
+            connection.setAutoCommit(false);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024), StandardCharsets.UTF_8));
+                    Statement statement = connection.createStatement()) {
+                statement.setFetchSize(10_000);
+                out.write("id,url_id,clicked_at,ip_address,user_agent,referrer\n");
+                try (ResultSet rs = statement.executeQuery("SELECT c.id, c.url_id, c.clicked_at, c.ip_address, "
+                        + ClickDictionaryRepository.USER_AGENT + ", " + ClickDictionaryRepository.REFERRER
+                        + " FROM " + table + " c" + ClickDictionaryRepository.JOINS + " ORDER BY c.id")) {
+                    while (rs.next()) {
+                        out.write(rs.getLong(1) + "," + rs.getLong(2) + ","
+                                + rs.getTimestamp(3).toLocalDateTime() + ","
+                                + csv(rs.getString(4)) + "," + csv(rs.getString(5)) + ","
+                                + csv(rs.getString(6)) + "\n");
+                    }
+                }
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(autoCommit);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive " + table, e);
+        }
+    }
+
+    private boolean isPartitioned(Connection connection) throws SQLException {
+        return "p".equals(queryString(connection,
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", TABLE));
+    }
+
+    private LocalDateTime legacyUpperBound(Connection connection) throws SQLException {
+        for (String[] partition : partitions(connection)) {
+            if (partition[0].equals(LEGACY_PARTITION)) {
+                return upperBound(partition[1]);
+            }
+        }
+        return null;
+    }
+
+    /** (name, bound expression) of every attached partition. */
+    private List<String[]> partitions(Connection connection) throws SQLException {
+        List<String[]> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT c.relname::text, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i"
+                        + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)"
+                        + " ORDER BY c.relname")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(new String[] { rs.getString(1), rs.getString(2) });
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private boolean tableExists(Connection connection, String name) throws SQLException {
+        return queryString(connection, "SELECT to_regclass(?)::text", name) != null;
+    }
+
+    private static String queryString(Connection connection, String sql, String arg) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, arg);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static String queryString(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    static String partitionName(YearMonth month) {
+        return String.format("%s_%04d_%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+
+    /** Exclusive upper bound of a range partition, or {@code null} for the default partition. */
+    static LocalDateTime upperBound(String boundExpression) {
+        Matcher matcher = UPPER_BOUND.matcher(boundExpression);
+        return matcher.find() ? LocalDateTime.parse(matcher.group(1).replace(' ', 'T')) : null;
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,136 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.repository.ClickAgentRollupRepository;
+import com.urlshortener.repository.ClickRollupRepository;
+import com.urlshortener.repository.ClickTopValuesRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the daily click rollups from raw click_analytics rows written
+ * before the rollups existed, i.e. with an id below the boundary recorded
+ * in click_rollup_state. The id range is cut into fixed chunks that run in
+ * parallel, each in its own transaction together with a row in
+ * click_rollup_backfill claiming it, so an interrupted backfill resumes
+ * where it stopped and nodes running it at the same time never count a
+ * chunk twice.
+ */
+@Component
+public class ClickRollupBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickRollupBackfill.class);
+
+    // Chunk boundaries identify finished work, so the size must never change
+    static final long CHUNK_IDS = 100_000;
+
+    private final ClickRollupRepository clickRollupRepository;
+    private final ClickTopValuesRepository clickTopValuesRepository;
+    private final ClickAgentRollupRepository clickAgentRollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int parallelism;
+
+    public ClickRollupBackfill(
+            ClickRollupRepository clickRollupRepository,
+            ClickTopValuesRepository clickTopValuesRepository,
+            ClickAgentRollupRepository clickAgentRollupRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.analytics.rollup.backfill.enabled:true}") boolean enabled,
+            @Value("${app.analytics.rollup.backfill.parallelism:4}") int parallelism) {
+        this.clickRollupRepository = clickRollupRepository;
+        this.clickTopValuesRepository = clickTopValuesRepository;
+        this.clickAgentRollupRepository = clickAgentRollupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.parallelism = parallelism;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread backfill = new Thread(this::run, "click-rollup-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /** Rolls up every chunk not yet claimed; returns the number of chunks done by this call. */
+    public int run() {
+        long start = System.nanoTime();
+        long before = clickRollupRepository.backfillBeforeId();
+        Long minId = jdbcTemplate.queryForObject("SELECT min(id) FROM click_analytics", Long.class);
+        List<long[]> chunks = minId == null ? new ArrayList<>() : chunks(minId, before);
+        // Once the backfill has finished, restarts stop here
+        Set<Long> completed = clickRollupRepository.completedBackfillChunks();
+        chunks.removeIf(chunk -> completed.contains(chunk[0]));
+        if (chunks.isEmpty()) {
+            log.info("Click rollup backfill: nothing below id {}", before);
+            return 0;
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+            for (long[] chunk : chunks) {
+                futures.add(executor.submit(() -> {
+                    if (Boolean.TRUE.equals(transactionTemplate.execute(status -> backfillChunk(chunk)))) {
+                        int count = done.incrementAndGet();
+                        if (count % 100 == 0) {
+                            log.info("Click rollup backfill: {} of {} chunks", count, chunks.size());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            // Finished chunks stay committed and are skipped by the next run
+            log.error("Click rollup backfill stopped after {} chunks", done.get(), e);
+            return done.get();
+        }
+        log.info("Click rollup backfill finished: {} chunks below id {} ({} ms)",
+                done.get(), before, (System.nanoTime() - start) / 1_000_000);
+        return done.get();
+    }
+
+    private boolean backfillChunk(long[] chunk) {
+        if (!clickRollupRepository.claimBackfillChunk(chunk[0])) {
+            return false;
+        }
+        clickRollupRepository.backfill(chunk[0], chunk[1]);
+        clickTopValuesRepository.backfill(chunk[0], chunk[1]);
+        clickAgentRollupRepository.backfill(chunk[0], chunk[1]);
+        return true;
+    }
+
+    /** [from, to) id ranges aligned to {@link #CHUNK_IDS}, clipped to {@code before}. */
+    static List<long[]> chunks(long minId, long before) {
+        List<long[]> chunks = new ArrayList<>();
+        if (minId >= before) {
+            return chunks;
+        }
+        for (long from = minId / CHUNK_IDS * CHUNK_IDS; from < before; from += CHUNK_IDS) {
+            chunks.add(new long[] { from, Math.min(from + CHUNK_IDS, before) });
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,91 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.repository.ClickDictionaryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores raw click events in click_analytics with multi-row INSERT
+ * statements, joining the caller's transaction. User agents and referrers
+ * are stored as ids from {@link ClickDictionaryRepository}, next to the
+ * user agent's classification by {@link UserAgentParser}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.analytics.raw-store", havingValue = "database", matchIfMissing = true)
+public class JdbcRawClickStore implements RawClickStore {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO click_analytics (url_id, clicked_at, ip_address, user_agent_id, referrer_id,"
+                    + " user_agent, referrer, device_type, browser_family, os_family, bot) VALUES ";
+    static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Bind parameters per row; bounds the batch size in ClickIngestionQueue
+    static final int COLUMNS = 11;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ClickDictionaryRepository clickDictionaryRepository;
+
+    @Autowired
+    private UserAgentParser userAgentParser;
+
+    private final Map<Integer, String> insertSqlByRows = new ConcurrentHashMap<>();
+
+    @Override
+    public void append(List<ClickEvent> events) {
+        Map<String, Integer> userAgents = clickDictionaryRepository.ids(ClickDictionaryRepository.Kind.USER_AGENT,
+                events.stream().map(ClickEvent::userAgent).toList());
+        Map<String, Integer> referrers = clickDictionaryRepository.ids(ClickDictionaryRepository.Kind.REFERRER,
+                events.stream().map(ClickEvent::referrer).toList());
+        jdbcTemplate.update(insertSql(events.size()),
+                (PreparedStatement ps) -> bindRows(ps, events, userAgents, referrers, userAgentParser));
+    }
+
+    private String insertSql(int rows) {
+        return insertSqlByRows.computeIfAbsent(rows, n -> {
+            StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + n * (ROW_PLACEHOLDER.length() + 2));
+            sql.append(INSERT_PREFIX);
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(ROW_PLACEHOLDER);
+            }
+            return sql.toString();
+        });
+    }
+
+    private static void bindRows(PreparedStatement ps, List<ClickEvent> events, Map<String, Integer> userAgents,
+            Map<String, Integer> referrers, UserAgentParser userAgentParser) throws SQLException {
+        int index = 1;
+        for (ClickEvent event : events) {
+            Integer userAgentId = event.userAgent() != null ? userAgents.get(event.userAgent()) : null;
+            Integer referrerId = event.referrer() != null ? referrers.get(event.referrer()) : null;
+            ps.setLong(index, event.urlId());
+            ps.setTimestamp(index + 1, Timestamp.valueOf(event.clickedAt()));
+            ps.setString(index + 2, event.ipAddress());
+            ps.setObject(index + 3, userAgentId, Types.INTEGER);
+            ps.setObject(index + 4, referrerId, Types.INTEGER);
+            // The string is only kept for a value the dictionary could not intern
+            ps.setString(index + 5, userAgentId == null ? event.userAgent() : null);
+            ps.setString(index + 6, referrerId == null ? event.referrer() : null);
+            UserAgentParser.UserAgent agent = userAgentParser.parse(event.userAgent());
+            ps.setShort(index + 7, (short) agent.deviceType().ordinal());
+            ps.setShort(index + 8, (short) agent.browser().ordinal());
+            ps.setShort(index + 9, (short) agent.os().ordinal());
+            ps.setBoolean(index + 10, agent.bot());
+            index += COLUMNS;
+        }
+    }
+}
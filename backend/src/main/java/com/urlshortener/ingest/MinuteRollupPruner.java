@@ -0,0 +1,36 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.repository.ClickRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes per-minute click rollups older than
+ * {@code app.analytics.rollup.minute-retention}. Every node runs it; the
+ * deletes are idempotent, so overlapping runs only repeat an empty pass.
+ */
+@Component
+public class MinuteRollupPruner {
+
+    private static final Logger log = LoggerFactory.getLogger(MinuteRollupPruner.class);
+
+    private final ClickRollupRepository clickRollupRepository;
+
+    public MinuteRollupPruner(ClickRollupRepository clickRollupRepository) {
+        this.clickRollupRepository = clickRollupRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.rollup.minute-prune-interval-ms:600000}")
+    public void prune() {
+        try {
+            int deleted = clickRollupRepository.deleteExpiredMinuteBuckets();
+            if (deleted > 0) {
+                log.debug("Deleted {} expired minute rollup rows", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Pruning minute rollups failed, will retry", e);
+        }
+    }
+}
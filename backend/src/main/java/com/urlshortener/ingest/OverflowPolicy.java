@@ -0,0 +1,14 @@
+package com.urlshortener.ingest;
+
+/**
+ * What the redirect path does with a click event when the ingestion queue
+ * cannot take it immediately.
+ */
+public enum OverflowPolicy {
+    /** Discard the event as soon as the queue is full. */
+    DROP,
+    /** Wait up to the configured block timeout for space, then discard. */
+    BLOCK,
+    /** Above the high-water mark keep only a sampled fraction; discard when full. */
+    SAMPLE
+}
@@ -0,0 +1,14 @@
+package com.urlshortener.ingest;
+
+import java.util.List;
+
+/**
+ * Where raw click events end up. {@link ClickEventWriter} appends each
+ * drained batch here and then adds it to the daily rollups. Selected with
+ * {@code app.analytics.raw-store}: {@code database} (click_analytics, the
+ * default) or {@code segments} (local compressed segment files).
+ */
+public interface RawClickStore {
+
+    void append(List<ClickEvent> events);
+}
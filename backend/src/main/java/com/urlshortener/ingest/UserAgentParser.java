@@ -0,0 +1,130 @@
+package com.urlshortener.ingest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.urlshortener.entity.BrowserFamily;
+import com.urlshortener.entity.DeviceType;
+import com.urlshortener.entity.OsFamily;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Classifies User-Agent headers into device type, browser family, OS family
+ * and a bot flag. Parsing is a handful of substring checks, and results are
+ * memoized in a bounded cache keyed by the header: clicks repeat a small set
+ * of user agents, so nearly every lookup is a cache hit.
+ */
+@Component
+public class UserAgentParser {
+
+    /** What a User-Agent header says about the client. */
+    public record UserAgent(DeviceType deviceType, BrowserFamily browser, OsFamily os, boolean bot) {
+
+        public static final UserAgent UNKNOWN = new UserAgent(DeviceType.OTHER, BrowserFamily.OTHER, OsFamily.OTHER, false);
+    }
+
+    // Lower-case markers of crawlers, link previewers, monitors and HTTP libraries
+    private static final String[] BOT_MARKERS = { "bot", "crawl", "spider", "slurp", "preview", "facebookexternalhit",
+            "headless", "curl/", "wget/", "python-", "go-http-client", "okhttp", "java/", "apache-httpclient",
+            "libwww", "httpie", "postman", "monitor", "lighthouse" };
+
+    private final Cache<String, UserAgent> cache;
+
+    public UserAgentParser(
+            @Value("${app.analytics.user-agent-cache-size:10000}") long cacheSize,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user.agent");
+    }
+
+    public UserAgent parse(String header) {
+        if (header == null || header.isBlank()) {
+            return UserAgent.UNKNOWN;
+        }
+        return cache.get(header, UserAgentParser::classify);
+    }
+
+    static UserAgent classify(String header) {
+        String lower = header.toLowerCase(Locale.ROOT);
+        OsFamily os = os(header);
+        BrowserFamily browser = browser(header);
+        boolean bot = false;
+        for (String marker : BOT_MARKERS) {
+            if (lower.contains(marker)) {
+                bot = true;
+                break;
+            }
+        }
+        return new UserAgent(bot ? DeviceType.BOT : device(header, os), browser, os, bot);
+    }
+
+    private static OsFamily os(String header) {
+        // iOS and Android before macOS and Linux, whose tokens they also contain
+        if (header.contains("iPhone") || header.contains("iPad") || header.contains("iPod")) {
+            return OsFamily.IOS;
+        }
+        if (header.contains("Android")) {
+            return OsFamily.ANDROID;
+        }
+        if (header.contains("Windows")) {
+            return OsFamily.WINDOWS;
+        }
+        if (header.contains("CrOS")) {
+            return OsFamily.CHROME_OS;
+        }
+        if (header.contains("Mac OS X") || header.contains("Macintosh")) {
+            return OsFamily.MACOS;
+        }
+        if (header.contains("Linux") || header.contains("X11")) {
+            return OsFamily.LINUX;
+        }
+        return OsFamily.OTHER;
+    }
+
+    private static BrowserFamily browser(String header) {
+        // Most specific first: Edge, Opera and Samsung Internet also claim Chrome and Safari
+        if (header.contains("Edg/") || header.contains("Edge/") || header.contains("EdgA/") || header.contains("EdgiOS/")) {
+            return BrowserFamily.EDGE;
+        }
+        if (header.contains("OPR/") || header.contains("Opera")) {
+            return BrowserFamily.OPERA;
+        }
+        if (header.contains("SamsungBrowser/")) {
+            return BrowserFamily.SAMSUNG_INTERNET;
+        }
+        if (header.contains("Firefox/") || header.contains("FxiOS/")) {
+            return BrowserFamily.FIREFOX;
+        }
+        if (header.contains("Chrome/") || header.contains("CriOS/") || header.contains("Chromium/")) {
+            return BrowserFamily.CHROME;
+        }
+        if (header.contains("MSIE ") || header.contains("Trident/")) {
+            return BrowserFamily.INTERNET_EXPLORER;
+        }
+        if (header.contains("Safari/")) {
+            return BrowserFamily.SAFARI;
+        }
+        return BrowserFamily.OTHER;
+    }
+
+    private static DeviceType device(String header, OsFamily os) {
+        if (header.contains("iPad") || header.contains("Tablet")
+                || (os == OsFamily.ANDROID && !header.contains("Mobile"))) {
+            return DeviceType.TABLET;
+        }
+        if (header.contains("Mobi") || os == OsFamily.IOS || os == OsFamily.ANDROID) {
+            return DeviceType.MOBILE;
+        }
+        return switch (os) {
+            case WINDOWS, MACOS, LINUX, CHROME_OS -> DeviceType.DESKTOP;
+            default -> DeviceType.OTHER;
+        };
+    }
+}
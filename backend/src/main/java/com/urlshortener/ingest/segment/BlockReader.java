@@ -0,0 +1,171 @@
+package com.urlshortener.ingest.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes one block at a time into buffers that are reused for every block
+ * of a scan, so a scan holds at most one block's columns on the heap no
+ * matter how large the segments are. Not thread-safe; one per scan.
+ */
+final class BlockReader implements AutoCloseable {
+
+    private final Inflater inflater = new Inflater();
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(ClickBlock.HEADER_BYTES);
+    private ByteBuffer compressed = ByteBuffer.allocate(0);
+    private byte[] raw = new byte[0];
+    private long[] urlIds = new long[0];
+    private long[] millis = new long[0];
+    private int rows;
+    private int stringsOffset;
+    private int position;
+
+    /** Reads the header at {@code offset}, or {@code null} if there is no complete block there. */
+    ClickBlock.Header readHeader(FileChannel channel, long offset) throws IOException {
+        headerBuffer.clear();
+        if (!readFully(channel, headerBuffer, offset)) {
+            return null;
+        }
+        headerBuffer.flip();
+        return ClickBlock.Header.read(headerBuffer);
+    }
+
+    /** Reads the payload and checks its CRC without decoding it. */
+    boolean verify(FileChannel channel, long offset, ClickBlock.Header header) throws IOException {
+        return readPayload(channel, offset, header);
+    }
+
+    /** Loads the block's url id and clicked-at columns. */
+    void load(FileChannel channel, long offset, ClickBlock.Header header) throws IOException {
+        if (!readPayload(channel, offset, header)) {
+            throw new IOException("Corrupt click block at offset " + offset);
+        }
+        if (raw.length < header.rawLength()) {
+            raw = new byte[header.rawLength()];
+        }
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, header.compressedLength());
+        try {
+            int inflated = 0;
+            while (inflated < header.rawLength() && !inflater.finished()) {
+                inflated += inflater.inflate(raw, inflated, header.rawLength() - inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt click block at offset " + offset, e);
+        }
+
+        rows = header.rows();
+        if (urlIds.length < rows) {
+            urlIds = new long[rows];
+            millis = new long[rows];
+        }
+        position = 0;
+        long urlId = header.minUrlId();
+        for (int i = 0; i < rows; i++) {
+            urlId += readVarLong();
+            urlIds[i] = urlId;
+        }
+        long time = header.minMillis();
+        for (int i = 0; i < rows; i++) {
+            time += ClickBlock.unzigzag(readVarLong());
+            millis[i] = time;
+        }
+        stringsOffset = position;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long urlId(int row) {
+        return urlIds[row];
+    }
+
+    long millis(int row) {
+        return millis[row];
+    }
+
+    /** First row of {@code urlId}, or {@link #rows()} if the block has none; rows are sorted by url id. */
+    int firstRow(long urlId) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (urlIds[mid] < urlId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Decodes one string column: returns its dictionary (index 0 is null)
+     * and fills {@code codes} with each row's dictionary index.
+     */
+    String[] stringColumn(int column, int[] codes) {
+        position = stringsOffset;
+        for (int i = 0; i < column; i++) {
+            int length = (int) readVarLong();
+            position += length;
+        }
+        readVarLong();
+        String[] dictionary = new String[(int) readVarLong() + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            int length = (int) readVarLong();
+            dictionary[i] = new String(raw, position, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+        for (int i = 0; i < rows; i++) {
+            codes[i] = (int) readVarLong();
+        }
+        return dictionary;
+    }
+
+    private boolean readPayload(FileChannel channel, long offset, ClickBlock.Header header) throws IOException {
+        if (compressed.capacity() < header.compressedLength()) {
+            compressed = ByteBuffer.allocate(header.compressedLength());
+        }
+        compressed.clear().limit(header.compressedLength());
+        if (!readFully(channel, compressed, offset + ClickBlock.HEADER_BYTES)) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(compressed.array(), 0, header.compressedLength());
+        return (int) crc.getValue() == header.crc();
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = raw[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+    }
+}
@@ -0,0 +1,192 @@
+package com.urlshortener.ingest.segment;
+
+import com.urlshortener.ingest.ClickEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * On-disk encoding of one batch of clicks: a fixed header followed by a
+ * deflate-compressed, column-oriented payload.
+ * <pre>
+ * header  magic, rows, raw length, compressed length (int)
+ *         min/max url id, min/max clicked-at millis (long), CRC32 of the payload (int), reserved (int)
+ * payload url ids     varints, delta from the previous row (rows sorted by url id, then time)
+ *         clicked-at  zigzag varints, delta from the previous row
+ *         ip, user agent, referrer: each a varint byte length, then a dictionary
+ *                     (count, then length-prefixed UTF-8 entries; code 0 is null) and one varint code per row
+ * </pre>
+ * The header carries the url id range so scans skip blocks without reading
+ * their payload, and each string column is length-prefixed so a scan can
+ * jump over the columns it does not need.
+ */
+final class ClickBlock {
+
+    static final int MAGIC = 0x434C4B42;
+    static final int HEADER_BYTES = 56;
+    static final int IP_ADDRESS = 0;
+    static final int USER_AGENT = 1;
+    static final int REFERRER = 2;
+
+    private ClickBlock() {
+    }
+
+    record Header(int rows, int rawLength, int compressedLength, long minUrlId, long maxUrlId,
+            long minMillis, long maxMillis, int crc) {
+
+        /** Parses a header, or returns {@code null} if the bytes are not one (e.g. a torn tail). */
+        static Header read(ByteBuffer buffer) {
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                return null;
+            }
+            Header header = new Header(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getLong(),
+                    buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt());
+            buffer.getInt();
+            return header.rows > 0 && header.rawLength > 0 && header.compressedLength > 0 ? header : null;
+        }
+
+        boolean mayContain(long urlId) {
+            return urlId >= minUrlId && urlId <= maxUrlId;
+        }
+
+        long blockBytes() {
+            return HEADER_BYTES + (long) compressedLength;
+        }
+    }
+
+    /** Encodes a non-empty batch as header plus payload, ready to append. */
+    static ByteBuffer encode(List<ClickEvent> events) {
+        List<ClickEvent> rows = new ArrayList<>(events);
+        rows.sort(Comparator.comparing(ClickEvent::urlId).thenComparing(ClickEvent::clickedAt));
+
+        long minUrlId = rows.get(0).urlId();
+        long maxUrlId = rows.get(rows.size() - 1).urlId();
+        long minMillis = Long.MAX_VALUE;
+        long maxMillis = Long.MIN_VALUE;
+        long[] millis = new long[rows.size()];
+        for (int i = 0; i < millis.length; i++) {
+            millis[i] = toMillis(rows.get(i).clickedAt());
+            minMillis = Math.min(minMillis, millis[i]);
+            maxMillis = Math.max(maxMillis, millis[i]);
+        }
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(rows.size() * 8);
+        long previousUrlId = minUrlId;
+        for (ClickEvent row : rows) {
+            writeVarLong(raw, row.urlId() - previousUrlId);
+            previousUrlId = row.urlId();
+        }
+        long previousMillis = minMillis;
+        for (long value : millis) {
+            writeVarLong(raw, zigzag(value - previousMillis));
+            previousMillis = value;
+        }
+        writeStringColumn(raw, rows, ClickEvent::ipAddress);
+        writeStringColumn(raw, rows, ClickEvent::userAgent);
+        writeStringColumn(raw, rows, ClickEvent::referrer);
+
+        byte[] payload = deflate(raw.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        block.putInt(MAGIC)
+                .putInt(rows.size())
+                .putInt(raw.size())
+                .putInt(payload.length)
+                .putLong(minUrlId)
+                .putLong(maxUrlId)
+                .putLong(minMillis)
+                .putLong(maxMillis)
+                .putInt((int) crc.getValue())
+                .putInt(0)
+                .put(payload)
+                .flip();
+        return block;
+    }
+
+    /**
+     * Clicked-at as milliseconds on the UTC epoch scale of the local
+     * timestamp, so day boundaries match DATE(clicked_at) in the database.
+     */
+    static long toMillis(LocalDateTime clickedAt) {
+        return clickedAt.toEpochSecond(ZoneOffset.UTC) * 1000 + clickedAt.getNano() / 1_000_000;
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static void writeStringColumn(ByteArrayOutputStream out, List<ClickEvent> rows,
+            Function<ClickEvent, String> column) {
+        Map<String, Integer> codes = new HashMap<>();
+        List<byte[]> dictionary = new ArrayList<>();
+        ByteArrayOutputStream codeBytes = new ByteArrayOutputStream(rows.size());
+        for (ClickEvent row : rows) {
+            String value = column.apply(row);
+            int code = 0;
+            if (value != null) {
+                code = codes.computeIfAbsent(value, v -> {
+                    dictionary.add(v.getBytes(StandardCharsets.UTF_8));
+                    return dictionary.size();
+                });
+            }
+            writeVarLong(codeBytes, code);
+        }
+
+        ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+        writeVarLong(columnBytes, dictionary.size());
+        for (byte[] entry : dictionary) {
+            writeVarLong(columnBytes, entry.length);
+            columnBytes.writeBytes(entry);
+        }
+        columnBytes.writeBytes(codeBytes.toByteArray());
+
+        writeVarLong(out, columnBytes.size());
+        out.writeBytes(columnBytes.toByteArray());
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,288 @@
+package com.urlshortener.ingest.segment;
+
+import com.urlshortener.ingest.ClickEvent;
+import com.urlshortener.ingest.RawClickStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Raw click store made of append-only segment files on local disk, used
+ * instead of click_analytics with {@code app.analytics.raw-store=segments}.
+ * Each drained batch becomes one {@link ClickBlock}: columnar, with
+ * dictionary-encoded strings, delta-encoded timestamps and deflate
+ * compression. A segment is closed once it reaches
+ * {@code max-segment-size} and the next one is started.
+ * <p>
+ * Scans read block headers first and only decompress blocks whose url id
+ * range covers the requested URL, one block at a time. A torn block left at
+ * the end of the last segment by a crash is cut off on startup.
+ * <p>
+ * Segments are local to the node that wrote them; each node only sees its
+ * own clicks.
+ */
+@Component
+@ConditionalOnProperty(name = "app.analytics.raw-store", havingValue = "segments")
+public class ClickSegmentStore implements RawClickStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickSegmentStore.class);
+
+    private static final String PREFIX = "clicks-";
+    private static final String SUFFIX = ".seg";
+
+    // Keeps a block, and the arrays a scan decodes it into, to a few hundred KiB
+    static final int MAX_BLOCK_ROWS = 8192;
+
+    /** Receives each click of a scanned URL; clicked-at is as stored, to the millisecond. */
+    @FunctionalInterface
+    public interface ClickVisitor {
+        void visit(LocalDateTime clickedAt, String ipAddress, String userAgent, String referrer);
+    }
+
+    private static final class Segment {
+        final Path path;
+        volatile long size;
+
+        Segment(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+
+    // Not synchronized: appends block on disk writes and may run on a virtual thread
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private Segment active;
+    private FileChannel activeChannel;
+    private long nextSequence;
+
+    public ClickSegmentStore(
+            @Value("${app.analytics.segments.dir:data/click-segments}") Path directory,
+            @Value("${app.analytics.segments.max-segment-size:64MB}") DataSize maxSegmentSize) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentSize.toBytes();
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> existing;
+        try (Stream<Path> files = Files.list(directory)) {
+            existing = files.filter(file -> sequenceOf(file) >= 0)
+                    .sorted((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)))
+                    .toList();
+        }
+        for (int i = 0; i < existing.size(); i++) {
+            Path file = existing.get(i);
+            boolean last = i == existing.size() - 1;
+            segments.add(new Segment(file, validLength(file, last)));
+            nextSequence = sequenceOf(file) + 1;
+        }
+        if (segments.isEmpty() || segments.get(segments.size() - 1).size >= maxSegmentBytes) {
+            startSegment();
+        } else {
+            active = segments.get(segments.size() - 1);
+            activeChannel = FileChannel.open(active.path, StandardOpenOption.WRITE);
+            // Drops a torn tail block; everything before it was verified
+            activeChannel.truncate(active.size);
+        }
+        log.info("Click segment store open at {}: {} segments", directory, segments.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (activeChannel != null) {
+                activeChannel.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void append(List<ClickEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            for (int from = 0; from < events.size(); from += MAX_BLOCK_ROWS) {
+                List<ClickEvent> rows = events.subList(from, Math.min(events.size(), from + MAX_BLOCK_ROWS));
+                ByteBuffer block = ClickBlock.encode(rows);
+                if (active.size > 0 && active.size + block.remaining() > maxSegmentBytes) {
+                    activeChannel.close();
+                    startSegment();
+                }
+                long position = active.size;
+                while (block.hasRemaining()) {
+                    position += activeChannel.write(block, position);
+                }
+                activeChannel.force(false);
+                // Scans read up to size, so the block becomes visible only once it is fully on disk
+                active.size = position;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append click block to " + active.path, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /** A URL's clicks per day, oldest first. */
+    public Map<LocalDate, Long> clicksByDay(long urlId) {
+        Map<LocalDate, Long> byDay = new TreeMap<>();
+        scanBlocks(urlId, reader -> {
+            long day = Long.MIN_VALUE;
+            long count = 0;
+            for (int row = reader.firstRow(urlId); row < reader.rows() && reader.urlId(row) == urlId; row++) {
+                long rowDay = Math.floorDiv(reader.millis(row), 86_400_000L);
+                if (rowDay != day && count > 0) {
+                    byDay.merge(LocalDate.ofEpochDay(day), count, Long::sum);
+                    count = 0;
+                }
+                day = rowDay;
+                count++;
+            }
+            if (count > 0) {
+                byDay.merge(LocalDate.ofEpochDay(day), count, Long::sum);
+            }
+        });
+        return byDay;
+    }
+
+    /** A URL's clicks per referrer; clicks without a Referer header are counted under "". */
+    public Map<String, Long> clicksByReferrer(long urlId) {
+        Map<String, Long> byReferrer = new HashMap<>();
+        int[] codes = new int[MAX_BLOCK_ROWS];
+        scanBlocks(urlId, reader -> {
+            String[] dictionary = reader.stringColumn(ClickBlock.REFERRER, codes);
+            long[] counts = new long[dictionary.length];
+            for (int row = reader.firstRow(urlId); row < reader.rows() && reader.urlId(row) == urlId; row++) {
+                counts[codes[row]]++;
+            }
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    byReferrer.merge(code == 0 ? "" : dictionary[code], counts[code], Long::sum);
+                }
+            }
+        });
+        return byReferrer;
+    }
+
+    /** Streams every stored click of a URL to {@code visitor}, block by block. */
+    public void scan(long urlId, ClickVisitor visitor) {
+        int[] ipCodes = new int[MAX_BLOCK_ROWS];
+        int[] userAgentCodes = new int[MAX_BLOCK_ROWS];
+        int[] referrerCodes = new int[MAX_BLOCK_ROWS];
+        scanBlocks(urlId, reader -> {
+            String[] ips = reader.stringColumn(ClickBlock.IP_ADDRESS, ipCodes);
+            String[] userAgents = reader.stringColumn(ClickBlock.USER_AGENT, userAgentCodes);
+            String[] referrers = reader.stringColumn(ClickBlock.REFERRER, referrerCodes);
+            for (int row = reader.firstRow(urlId); row < reader.rows() && reader.urlId(row) == urlId; row++) {
+                visitor.visit(ClickBlock.fromMillis(reader.millis(row)), ips[ipCodes[row]],
+                        userAgents[userAgentCodes[row]], referrers[referrerCodes[row]]);
+            }
+        });
+    }
+
+    private interface BlockConsumer {
+        void accept(BlockReader reader) throws IOException;
+    }
+
+    private void scanBlocks(long urlId, BlockConsumer consumer) {
+        try (BlockReader reader = new BlockReader()) {
+            for (Segment segment : segments) {
+                long size = segment.size;
+                try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                    long offset = 0;
+                    while (offset < size) {
+                        ClickBlock.Header header = reader.readHeader(channel, offset);
+                        if (header == null) {
+                            break;
+                        }
+                        if (header.mayContain(urlId)) {
+                            reader.load(channel, offset, header);
+                            consumer.accept(reader);
+                        }
+                        offset += header.blockBytes();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not scan click segments in " + directory, e);
+        }
+    }
+
+    private void startSegment() throws IOException {
+        Path path = directory.resolve(String.format("%s%012d%s", PREFIX, nextSequence++, SUFFIX));
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        active = new Segment(path, 0);
+        segments.add(active);
+    }
+
+    /** Length of the complete blocks in a segment; the CRC of the last segment's final block is checked too. */
+    private static long validLength(Path file, boolean verifyTail) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                BlockReader reader = new BlockReader()) {
+            long size = channel.size();
+            long offset = 0;
+            long lastBlock = -1;
+            ClickBlock.Header lastHeader = null;
+            while (offset < size) {
+                ClickBlock.Header header = reader.readHeader(channel, offset);
+                if (header == null || offset + header.blockBytes() > size) {
+                    break;
+                }
+                lastBlock = offset;
+                lastHeader = header;
+                offset += header.blockBytes();
+            }
+            if (verifyTail && lastHeader != null && !reader.verify(channel, lastBlock, lastHeader)) {
+                offset = lastBlock;
+            }
+            if (offset < size) {
+                log.warn("Ignoring {} bytes of incomplete click block at the end of {}", size - offset, file);
+            }
+            return offset;
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
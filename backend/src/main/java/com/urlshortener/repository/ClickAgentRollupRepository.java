@@ -0,0 +1,129 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.entity.BrowserFamily;
+import com.urlshortener.entity.DeviceType;
+import com.urlshortener.entity.OsFamily;
+import com.urlshortener.ingest.ClickEvent;
+import com.urlshortener.ingest.UserAgentParser;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Click counts per URL by device type, browser family and OS family, as
+ * classified by {@link UserAgentParser}. Like the daily rollups, the ingest
+ * writer adds each batch in the transaction that stores its raw rows and the
+ * rollup backfill covers older rows. A link has at most a few dozen rows
+ * here, so breakdowns never touch click_analytics.
+ */
+@Repository
+public class ClickAgentRollupRepository {
+
+    // Upserts run in key order so concurrent writers lock rows in the same order
+    private static final String ADD_CLICKS = "INSERT INTO click_agent_rollup"
+            + " (url_id, device_type, browser_family, os_family, clicks)"
+            + " SELECT * FROM unnest(?::bigint[], ?::smallint[], ?::smallint[], ?::smallint[], ?::bigint[])"
+            + " ON CONFLICT (url_id, device_type, browser_family, os_family)"
+            + " DO UPDATE SET clicks = click_agent_rollup.clicks + EXCLUDED.clicks";
+
+    // Each distinct user agent of a chunk is parsed once
+    private static final String BACKFILL_AGENTS = "SELECT c.url_id, " + ClickDictionaryRepository.USER_AGENT
+            + ", count(*) FROM click_analytics c" + ClickDictionaryRepository.JOINS
+            + " WHERE c.id >= ? AND c.id < ? GROUP BY 1, 2";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserAgentParser userAgentParser;
+
+    public ClickAgentRollupRepository(JdbcTemplate jdbcTemplate, UserAgentParser userAgentParser) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userAgentParser = userAgentParser;
+    }
+
+    /** Adds a batch of clicks; must run in the transaction that stores the raw rows. */
+    public void addClicks(List<ClickEvent> events) {
+        Map<UrlAgent, Long> counts = new TreeMap<>();
+        for (ClickEvent event : events) {
+            counts.merge(UrlAgent.of(event.urlId(), userAgentParser.parse(event.userAgent())), 1L, Long::sum);
+        }
+        add(counts);
+    }
+
+    /** Adds raw rows with {@code fromId <= id < toId}; the caller guarantees each range runs once. */
+    public void backfill(long fromId, long toId) {
+        Map<UrlAgent, Long> counts = new TreeMap<>();
+        jdbcTemplate.query(BACKFILL_AGENTS, rs -> {
+            counts.merge(UrlAgent.of(rs.getLong(1), userAgentParser.parse(rs.getString(2))), rs.getLong(3), Long::sum);
+        }, fromId, toId);
+        add(counts);
+    }
+
+    /** Clicks of one URL per (device type, browser family, OS family). */
+    public Map<UrlAgent, Long> findClicksForUrl(Long urlId) {
+        Map<UrlAgent, Long> counts = new TreeMap<>();
+        jdbcTemplate.query("SELECT device_type, browser_family, os_family, clicks FROM click_agent_rollup"
+                + " WHERE url_id = ?", rs -> {
+                    counts.put(new UrlAgent(urlId, DeviceType.values()[rs.getShort(1)],
+                            BrowserFamily.values()[rs.getShort(2)], OsFamily.values()[rs.getShort(3)]), rs.getLong(4));
+                }, urlId);
+        return counts;
+    }
+
+    private void add(Map<UrlAgent, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        Long[] urlIds = new Long[counts.size()];
+        Short[] devices = new Short[counts.size()];
+        Short[] browsers = new Short[counts.size()];
+        Short[] systems = new Short[counts.size()];
+        Long[] clicks = new Long[counts.size()];
+        int i = 0;
+        for (Map.Entry<UrlAgent, Long> entry : counts.entrySet()) {
+            UrlAgent key = entry.getKey();
+            urlIds[i] = key.urlId();
+            devices[i] = (short) key.deviceType().ordinal();
+            browsers[i] = (short) key.browser().ordinal();
+            systems[i] = (short) key.os().ordinal();
+            clicks[i] = entry.getValue();
+            i++;
+        }
+        jdbcTemplate.update(ADD_CLICKS, ps -> bindArrays(ps, urlIds, devices, browsers, systems, clicks));
+    }
+
+    private static void bindArrays(PreparedStatement ps, Long[] urlIds, Short[] devices, Short[] browsers,
+            Short[] systems, Long[] clicks) throws SQLException {
+        Connection connection = ps.getConnection();
+        ps.setArray(1, connection.createArrayOf("bigint", urlIds));
+        ps.setArray(2, connection.createArrayOf("smallint", devices));
+        ps.setArray(3, connection.createArrayOf("smallint", browsers));
+        ps.setArray(4, connection.createArrayOf("smallint", systems));
+        ps.setArray(5, connection.createArrayOf("bigint", clicks));
+    }
+
+    // Ordered like the primary key, by url id and then the ordinals
+    public record UrlAgent(long urlId, DeviceType deviceType, BrowserFamily browser, OsFamily os)
+            implements Comparable<UrlAgent> {
+
+        static UrlAgent of(long urlId, UserAgentParser.UserAgent agent) {
+            return new UrlAgent(urlId, agent.deviceType(), agent.browser(), agent.os());
+        }
+
+        @Override
+        public int compareTo(UrlAgent other) {
+            int result = Long.compare(urlId, other.urlId);
+            if (result == 0) {
+                result = deviceType.compareTo(other.deviceType);
+            }
+            if (result == 0) {
+                result = browser.compareTo(other.browser);
+            }
+            return result != 0 ? result : os.compareTo(other.os);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.urlshortener.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookup tables that intern click user agents and referrers, so each
+ * click_analytics row stores two integer ids instead of two strings. Almost
+ * every click repeats one of a few thousand values, and those are served
+ * from a bounded in-process cache; only a value the node has not seen
+ * recently costs a round trip.
+ * <p>
+ * Rows written before interning keep their strings in the legacy
+ * user_agent / referrer columns until {@code ClickDictionaryMigration}
+ * moves them over, so readers select {@link #USER_AGENT} and
+ * {@link #REFERRER} through {@link #JOINS}, which cover both.
+ */
+@Repository
+public class ClickDictionaryRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickDictionaryRepository.class);
+
+    public enum Kind {
+        USER_AGENT("click_user_agents"),
+        REFERRER("click_referrers");
+
+        private final String table;
+
+        Kind(String table) {
+            this.table = table;
+        }
+    }
+
+    /** Resolves the ids of click_analytics {@code c}; use with {@link #USER_AGENT} and {@link #REFERRER}. */
+    public static final String JOINS = " LEFT JOIN click_user_agents ua ON ua.id = c.user_agent_id"
+            + " LEFT JOIN click_referrers rf ON rf.id = c.referrer_id";
+    public static final String USER_AGENT = "coalesce(ua.value, c.user_agent)";
+    public static final String REFERRER = "coalesce(rf.value, c.referrer)";
+
+    // Values are unique by md5, since a btree entry cannot hold an arbitrarily long string
+    private static final String INSERT_VALUES = "INSERT INTO %s (value) SELECT v FROM unnest(?::text[]) AS v"
+            + " ORDER BY md5(v) ON CONFLICT ((md5(value))) DO NOTHING";
+    private static final String SELECT_IDS = "SELECT id, value FROM %s"
+            + " WHERE md5(value) IN (SELECT md5(v) FROM unnest(?::text[]) AS v)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final Map<Kind, Cache<String, Integer>> caches = new EnumMap<>(Kind.class);
+
+    public ClickDictionaryRepository(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.analytics.dictionary.cache-size:16MB}") DataSize cacheSize,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        // New ids commit on their own: cached ids must survive a rolled-back click batch
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (Kind kind : Kind.values()) {
+            Cache<String, Integer> cache = Caffeine.newBuilder()
+                    .maximumWeight(cacheSize.toBytes() / Kind.values().length)
+                    // Roughly the retained size of the key string and its map entry
+                    .weigher((String value, Integer id) -> 64 + value.length() * 2)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "click.dictionary." + kind.name().toLowerCase());
+            caches.put(kind, cache);
+        }
+    }
+
+    /**
+     * Ids of the given values, interning the ones not stored yet. Nulls are
+     * skipped; a value missing from the result (an md5 collision with a
+     * different string) must be stored as a string.
+     */
+    public Map<String, Integer> ids(Kind kind, Collection<String> values) {
+        Cache<String, Integer> cache = caches.get(kind);
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value == null || ids.containsKey(value)) {
+                continue;
+            }
+            Integer id = cache.getIfPresent(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> interned = newTransaction.execute(status -> intern(kind, missing));
+            cache.putAll(interned);
+            ids.putAll(interned);
+        }
+        return ids;
+    }
+
+    private Map<String, Integer> intern(Kind kind, Set<String> values) {
+        Object[] array = values.toArray();
+        jdbcTemplate.update(String.format(INSERT_VALUES, kind.table), ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("text", array));
+        });
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(String.format(SELECT_IDS, kind.table), ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("text", array));
+        }, rs -> {
+            String value = rs.getString(2);
+            if (values.contains(value)) {
+                ids.put(value, rs.getInt(1));
+            }
+        });
+        if (ids.size() < values.size()) {
+            log.warn("{} {} value(s) share an md5 with a stored value; storing them as text",
+                    values.size() - ids.size(), kind);
+        }
+        return ids;
+    }
+}
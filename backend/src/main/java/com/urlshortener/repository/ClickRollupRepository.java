@@ -0,0 +1,407 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.ingest.ClickEvent;
+import com.urlshortener.util.HyperLogLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-minute, per-hour and per-day click counts by URL and by user, kept next to the raw
+ * click_analytics rows so dashboards read a handful of rollup rows instead of
+ * grouping every click. The ingest writer adds each batch's counts in the
+ * same transaction as its raw rows; {@code ClickRollupBackfill} covers the
+ * rows written before the rollups existed.
+ * <p>
+ * Unique visitors are kept the same way, as one {@link HyperLogLog} sketch
+ * over (IP address, user agent) per URL and day in click_daily_uniques.
+ * <p>
+ * Time series are read at any {@link Granularity} from the matching rollup,
+ * summed into evenly spaced points in SQL. Minute buckets are only kept for
+ * {@code app.analytics.rollup.minute-retention}.
+ */
+@Repository
+public class ClickRollupRepository {
+
+    /** Bucket size of a click time series and the rollup tables that serve it. */
+    public enum Granularity {
+        MINUTE("click_minute_rollup", "user_click_minute_rollup", "bucket", Duration.ofMinutes(1)),
+        HOUR("click_hourly_rollup", "user_click_hourly_rollup", "bucket", Duration.ofHours(1)),
+        DAY("click_daily_rollup", "user_click_daily_rollup", "day", Duration.ofDays(1)),
+        // Read from the daily rollups, seven rows per point
+        WEEK("click_daily_rollup", "user_click_daily_rollup", "day", Duration.ofDays(7));
+
+        private final String urlTable;
+        private final String userTable;
+        private final String column;
+        private final Duration size;
+
+        Granularity(String urlTable, String userTable, String column, Duration size) {
+            this.urlTable = urlTable;
+            this.userTable = userTable;
+            this.column = column;
+            this.size = size;
+        }
+
+        public Duration size() {
+            return size;
+        }
+
+        /** Start of the bucket containing {@code time}; weeks start on Monday. */
+        public LocalDateTime truncate(LocalDateTime time) {
+            return switch (this) {
+                case MINUTE -> time.truncatedTo(ChronoUnit.MINUTES);
+                case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+                case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+                case WEEK -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            };
+        }
+    }
+
+    /**
+     * Evenly spaced points covering {@code [start, end)}: each point sums
+     * {@code stepSeconds} worth of buckets, the last one possibly fewer.
+     */
+    public record SeriesWindow(LocalDateTime start, LocalDateTime end, long stepSeconds, int points) {
+
+        /**
+         * The window over whole buckets from the one containing {@code from}
+         * to the one containing {@code to}, with consecutive buckets summed
+         * into one point as needed to stay within {@code maxPoints}.
+         */
+        public static SeriesWindow of(LocalDateTime from, LocalDateTime to, Granularity granularity, int maxPoints) {
+            LocalDateTime start = granularity.truncate(from);
+            LocalDateTime last = granularity.truncate(to);
+            long bucketSeconds = granularity.size().toSeconds();
+            long buckets = Duration.between(start, last).toSeconds() / bucketSeconds + 1;
+            long perPoint = (buckets + maxPoints - 1) / maxPoints;
+            int points = (int) ((buckets + perPoint - 1) / perPoint);
+            return new SeriesWindow(start, last.plusSeconds(bucketSeconds), bucketSeconds * perPoint, points);
+        }
+    }
+
+    // Upserts run in (url_id, day) / (user_id, day) order so concurrent writers lock rows in the same order
+    private static final String ADD_URL_CLICKS = "INSERT INTO click_daily_rollup (url_id, day, clicks)"
+            + " SELECT * FROM unnest(?::bigint[], ?::date[], ?::bigint[])"
+            + " ON CONFLICT (url_id, day) DO UPDATE SET clicks = click_daily_rollup.clicks + EXCLUDED.clicks";
+
+    private static final String ADD_USER_CLICKS = "INSERT INTO user_click_daily_rollup (user_id, day, clicks)"
+            + " SELECT u.user_id, d.day, sum(d.clicks)"
+            + " FROM unnest(?::bigint[], ?::date[], ?::bigint[]) AS d(url_id, day, clicks)"
+            + " JOIN urls u ON u.id = d.url_id"
+            + " GROUP BY u.user_id, d.day ORDER BY u.user_id, d.day"
+            + " ON CONFLICT (user_id, day) DO UPDATE SET clicks = user_click_daily_rollup.clicks + EXCLUDED.clicks";
+
+    private static final String BACKFILL_URL_CLICKS = "INSERT INTO click_daily_rollup (url_id, day, clicks)"
+            + " SELECT url_id, CAST(clicked_at AS date), count(*) FROM click_analytics"
+            + " WHERE id >= ? AND id < ? GROUP BY 1, 2 ORDER BY 1, 2"
+            + " ON CONFLICT (url_id, day) DO UPDATE SET clicks = click_daily_rollup.clicks + EXCLUDED.clicks";
+
+    private static final String BACKFILL_USER_CLICKS = "INSERT INTO user_click_daily_rollup (user_id, day, clicks)"
+            + " SELECT u.user_id, CAST(c.clicked_at AS date), count(*)"
+            + " FROM click_analytics c JOIN urls u ON u.id = c.url_id"
+            + " WHERE c.id >= ? AND c.id < ? GROUP BY 1, 2 ORDER BY 1, 2"
+            + " ON CONFLICT (user_id, day) DO UPDATE SET clicks = user_click_daily_rollup.clicks + EXCLUDED.clicks";
+
+    private static final String CREATE_UNIQUES = "INSERT INTO click_daily_uniques (url_id, day, sketch)"
+            + " SELECT d.url_id, d.day, ''::bytea FROM unnest(?::bigint[], ?::date[]) AS d(url_id, day)"
+            + " ORDER BY 1, 2 ON CONFLICT (url_id, day) DO NOTHING";
+
+    private static final String LOCK_UNIQUES = "SELECT c.url_id, c.day, c.sketch FROM click_daily_uniques c"
+            + " JOIN unnest(?::bigint[], ?::date[]) AS d(url_id, day) ON c.url_id = d.url_id AND c.day = d.day"
+            + " ORDER BY 1, 2 FOR UPDATE OF c";
+
+    // Minute and hour buckets, in (url_id, bucket) / (user_id, bucket) order like the daily upserts
+    private static final String ADD_URL_BUCKETS = "INSERT INTO %1$s (url_id, bucket, clicks)"
+            + " SELECT * FROM unnest(?::bigint[], ?::timestamp[], ?::bigint[])"
+            + " ON CONFLICT (url_id, bucket) DO UPDATE SET clicks = %1$s.clicks + EXCLUDED.clicks";
+
+    private static final String ADD_USER_BUCKETS = "INSERT INTO %1$s (user_id, bucket, clicks)"
+            + " SELECT u.user_id, d.bucket, sum(d.clicks)"
+            + " FROM unnest(?::bigint[], ?::timestamp[], ?::bigint[]) AS d(url_id, bucket, clicks)"
+            + " JOIN urls u ON u.id = d.url_id"
+            + " GROUP BY u.user_id, d.bucket ORDER BY u.user_id, d.bucket"
+            + " ON CONFLICT (user_id, bucket) DO UPDATE SET clicks = %1$s.clicks + EXCLUDED.clicks";
+
+    private static final String BACKFILL_URL_BUCKETS = "INSERT INTO %1$s (url_id, bucket, clicks)"
+            + " SELECT url_id, date_trunc('%2$s', clicked_at), count(*) FROM click_analytics"
+            + " WHERE id >= ? AND id < ? AND clicked_at >= ? GROUP BY 1, 2 ORDER BY 1, 2"
+            + " ON CONFLICT (url_id, bucket) DO UPDATE SET clicks = %1$s.clicks + EXCLUDED.clicks";
+
+    private static final String BACKFILL_USER_BUCKETS = "INSERT INTO %1$s (user_id, bucket, clicks)"
+            + " SELECT u.user_id, date_trunc('%2$s', c.clicked_at), count(*)"
+            + " FROM click_analytics c JOIN urls u ON u.id = c.url_id"
+            + " WHERE c.id >= ? AND c.id < ? AND c.clicked_at >= ? GROUP BY 1, 2 ORDER BY 1, 2"
+            + " ON CONFLICT (user_id, bucket) DO UPDATE SET clicks = %1$s.clicks + EXCLUDED.clicks";
+
+    // Point index of each bucket relative to the window start; empty points are left out
+    private static final String SELECT_SERIES = "SELECT floor(extract(epoch FROM (%2$s::timestamp - ?)) / ?)::int, sum(clicks)"
+            + " FROM %1$s WHERE %3$s = ? AND %2$s >= ? AND %2$s < ? GROUP BY 1";
+
+    private static final String BACKFILL_VISITORS = "SELECT c.url_id, c.clicked_at, c.ip_address, "
+            + ClickDictionaryRepository.USER_AGENT + " FROM click_analytics c" + ClickDictionaryRepository.JOINS
+            + " WHERE c.id >= ? AND c.id < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration minuteRetention;
+
+    public ClickRollupRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.analytics.rollup.minute-retention:7d}") Duration minuteRetention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.minuteRetention = minuteRetention;
+    }
+
+    /**
+     * Fixes the backfill boundary once: the first node to start with rollups
+     * stores it before its writer adds anything. The tables are created by
+     * database/schema.sql.
+     */
+    @PostConstruct
+    public void initBackfillBoundary() {
+        jdbcTemplate.update("INSERT INTO click_rollup_state (id, backfill_before_id)"
+                + " SELECT 1, coalesce(max(id), 0) + 1 FROM click_analytics ON CONFLICT (id) DO NOTHING");
+    }
+
+    /**
+     * Adds a batch of clicks to both rollups. Must run in the transaction that
+     * inserts the raw rows, so a failed batch is counted in neither.
+     */
+    public void addClicks(List<ClickEvent> events) {
+        Map<UrlDay, Long> counts = countByUrlAndDay(events);
+        if (counts.isEmpty()) {
+            return;
+        }
+        Long[] urlIds = new Long[counts.size()];
+        Date[] days = new Date[counts.size()];
+        Long[] clicks = new Long[counts.size()];
+        int i = 0;
+        for (Map.Entry<UrlDay, Long> entry : counts.entrySet()) {
+            urlIds[i] = entry.getKey().urlId();
+            days[i] = Date.valueOf(entry.getKey().day());
+            clicks[i] = entry.getValue();
+            i++;
+        }
+        jdbcTemplate.update(ADD_URL_CLICKS, ps -> bindArrays(ps, urlIds, days, clicks));
+        jdbcTemplate.update(ADD_USER_CLICKS, ps -> bindArrays(ps, urlIds, days, clicks));
+        addBuckets(Granularity.MINUTE, countByUrlAndBucket(events, Granularity.MINUTE));
+        addBuckets(Granularity.HOUR, countByUrlAndBucket(events, Granularity.HOUR));
+        addVisitors(visitorsByUrlAndDay(events));
+    }
+
+    private void addBuckets(Granularity granularity, Map<UrlBucket, Long> counts) {
+        Long[] urlIds = new Long[counts.size()];
+        Timestamp[] buckets = new Timestamp[counts.size()];
+        Long[] clicks = new Long[counts.size()];
+        int i = 0;
+        for (Map.Entry<UrlBucket, Long> entry : counts.entrySet()) {
+            urlIds[i] = entry.getKey().urlId();
+            buckets[i] = Timestamp.valueOf(entry.getKey().bucket());
+            clicks[i] = entry.getValue();
+            i++;
+        }
+        jdbcTemplate.update(String.format(ADD_URL_BUCKETS, granularity.urlTable),
+                ps -> bindBuckets(ps, urlIds, buckets, clicks));
+        jdbcTemplate.update(String.format(ADD_USER_BUCKETS, granularity.userTable),
+                ps -> bindBuckets(ps, urlIds, buckets, clicks));
+    }
+
+    /** Rolls up raw rows with {@code fromId <= id < toId}; the caller guarantees each range runs once. */
+    public void backfill(long fromId, long toId) {
+        jdbcTemplate.update(BACKFILL_URL_CLICKS, fromId, toId);
+        jdbcTemplate.update(BACKFILL_USER_CLICKS, fromId, toId);
+        // Hours go back as far as the raw rows, minutes only as far as they are retained
+        Timestamp minuteHorizon = Timestamp.valueOf(minuteHorizon());
+        Timestamp allTime = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+        jdbcTemplate.update(String.format(BACKFILL_URL_BUCKETS, Granularity.HOUR.urlTable, "hour"), fromId, toId, allTime);
+        jdbcTemplate.update(String.format(BACKFILL_USER_BUCKETS, Granularity.HOUR.userTable, "hour"), fromId, toId, allTime);
+        jdbcTemplate.update(String.format(BACKFILL_URL_BUCKETS, Granularity.MINUTE.urlTable, "minute"),
+                fromId, toId, minuteHorizon);
+        jdbcTemplate.update(String.format(BACKFILL_USER_BUCKETS, Granularity.MINUTE.userTable, "minute"),
+                fromId, toId, minuteHorizon);
+        Map<UrlDay, HyperLogLog> visitors = new TreeMap<>();
+        jdbcTemplate.query(BACKFILL_VISITORS, rs -> {
+            UrlDay key = new UrlDay(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime().toLocalDate());
+            visitors.computeIfAbsent(key, k -> new HyperLogLog())
+                    .add(HyperLogLog.hash(rs.getString(3), rs.getString(4)));
+        }, fromId, toId);
+        addVisitors(visitors);
+    }
+
+    /**
+     * Merges a batch's sketches into the stored ones. Sketches cannot be
+     * merged in SQL, so the rows are created if missing, locked in key order
+     * (as the count upserts are) and rewritten.
+     */
+    private void addVisitors(Map<UrlDay, HyperLogLog> visitors) {
+        if (visitors.isEmpty()) {
+            return;
+        }
+        Long[] urlIds = new Long[visitors.size()];
+        Date[] days = new Date[visitors.size()];
+        int i = 0;
+        for (UrlDay key : visitors.keySet()) {
+            urlIds[i] = key.urlId();
+            days[i] = Date.valueOf(key.day());
+            i++;
+        }
+        jdbcTemplate.update(CREATE_UNIQUES, ps -> bindKeys(ps, urlIds, days));
+        List<Object[]> updates = new ArrayList<>(visitors.size());
+        jdbcTemplate.query(LOCK_UNIQUES, ps -> bindKeys(ps, urlIds, days), rs -> {
+            UrlDay key = new UrlDay(rs.getLong(1), rs.getDate(2).toLocalDate());
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes(3));
+            sketch.merge(visitors.get(key));
+            updates.add(new Object[] { sketch.toBytes(), key.urlId(), Date.valueOf(key.day()) });
+        });
+        jdbcTemplate.batchUpdate("UPDATE click_daily_uniques SET sketch = ? WHERE url_id = ? AND day = ?", updates);
+    }
+
+    /** Unique-visitor sketches of one URL for each day in {@code [from, to]}, oldest first. */
+    public Map<LocalDate, HyperLogLog> findVisitorSketchesForUrl(Long urlId, LocalDate from, LocalDate to) {
+        Map<LocalDate, HyperLogLog> sketches = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT day, sketch FROM click_daily_uniques"
+                + " WHERE url_id = ? AND day >= ? AND day <= ? ORDER BY day", rs -> {
+                    sketches.put(rs.getDate(1).toLocalDate(), HyperLogLog.fromBytes(rs.getBytes(2)));
+                }, urlId, Date.valueOf(from), Date.valueOf(to));
+        return sketches;
+    }
+
+    /** Click counts of one URL over {@code window}, one per point, zero where there were none. */
+    public long[] findSeriesForUrl(Long urlId, Granularity granularity, SeriesWindow window) {
+        return findSeries(granularity.urlTable, "url_id", urlId, granularity, window);
+    }
+
+    /** Click counts over all of a user's URLs over {@code window}, one per point. */
+    public long[] findSeriesForUser(Long userId, Granularity granularity, SeriesWindow window) {
+        return findSeries(granularity.userTable, "user_id", userId, granularity, window);
+    }
+
+    private long[] findSeries(String table, String keyColumn, Long id, Granularity granularity, SeriesWindow window) {
+        long[] points = new long[window.points()];
+        Timestamp start = Timestamp.valueOf(window.start());
+        jdbcTemplate.query(String.format(SELECT_SERIES, table, granularity.column, keyColumn), rs -> {
+            points[rs.getInt(1)] = rs.getLong(2);
+        }, start, window.stepSeconds(), id, start, Timestamp.valueOf(window.end()));
+        return points;
+    }
+
+    /** Minute buckets before this are deleted; a series reading them gets zeros. */
+    public LocalDateTime minuteHorizon() {
+        return LocalDateTime.now().minus(minuteRetention).truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    /** Deletes minute buckets older than the retention; returns the number of rows removed. */
+    public int deleteExpiredMinuteBuckets() {
+        Timestamp horizon = Timestamp.valueOf(minuteHorizon());
+        return jdbcTemplate.update("DELETE FROM click_minute_rollup WHERE bucket < ?", horizon)
+                + jdbcTemplate.update("DELETE FROM user_click_minute_rollup WHERE bucket < ?", horizon);
+    }
+
+    /** (date, count) rows over all of a user's URLs, oldest first. */
+    public List<Object[]> findClicksByDateForUser(Long userId) {
+        return jdbcTemplate.query("SELECT day, clicks FROM user_click_daily_rollup WHERE user_id = ? ORDER BY day",
+                (rs, rowNum) -> new Object[] { rs.getDate(1), rs.getLong(2) }, userId);
+    }
+
+    /** Raw rows with an id below this predate the rollups. */
+    public long backfillBeforeId() {
+        Long id = jdbcTemplate.queryForObject("SELECT backfill_before_id FROM click_rollup_state", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    /** Starts of the backfill chunks already done, on any node. */
+    public Set<Long> completedBackfillChunks() {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT chunk_start FROM click_rollup_backfill", Long.class));
+    }
+
+    /** Claims a backfill chunk; {@code false} if it was already done, here or on another node. */
+    public boolean claimBackfillChunk(long chunkStart) {
+        return jdbcTemplate.update("INSERT INTO click_rollup_backfill (chunk_start) VALUES (?)"
+                + " ON CONFLICT (chunk_start) DO NOTHING", chunkStart) == 1;
+    }
+
+    static Map<UrlDay, Long> countByUrlAndDay(List<ClickEvent> events) {
+        Map<UrlDay, Long> counts = new TreeMap<>();
+        for (ClickEvent event : events) {
+            counts.merge(new UrlDay(event.urlId(), event.clickedAt().toLocalDate()), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    static Map<UrlBucket, Long> countByUrlAndBucket(List<ClickEvent> events, Granularity granularity) {
+        Map<UrlBucket, Long> counts = new TreeMap<>();
+        for (ClickEvent event : events) {
+            counts.merge(new UrlBucket(event.urlId(), granularity.truncate(event.clickedAt())), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    static Map<UrlDay, HyperLogLog> visitorsByUrlAndDay(List<ClickEvent> events) {
+        Map<UrlDay, HyperLogLog> visitors = new TreeMap<>();
+        for (ClickEvent event : events) {
+            visitors.computeIfAbsent(new UrlDay(event.urlId(), event.clickedAt().toLocalDate()), k -> new HyperLogLog())
+                    .add(HyperLogLog.hash(event.ipAddress(), event.userAgent()));
+        }
+        return visitors;
+    }
+
+    private static void bindKeys(PreparedStatement ps, Long[] urlIds, Date[] days) throws SQLException {
+        Connection connection = ps.getConnection();
+        ps.setArray(1, connection.createArrayOf("bigint", urlIds));
+        ps.setArray(2, connection.createArrayOf("date", days));
+    }
+
+    private static void bindArrays(PreparedStatement ps, Long[] urlIds, Date[] days, Long[] clicks)
+            throws SQLException {
+        Connection connection = ps.getConnection();
+        ps.setArray(1, connection.createArrayOf("bigint", urlIds));
+        ps.setArray(2, connection.createArrayOf("date", days));
+        ps.setArray(3, connection.createArrayOf("bigint", clicks));
+    }
+
+    private static void bindBuckets(PreparedStatement ps, Long[] urlIds, Timestamp[] buckets, Long[] clicks)
+            throws SQLException {
+        Connection connection = ps.getConnection();
+        ps.setArray(1, connection.createArrayOf("bigint", urlIds));
+        ps.setArray(2, connection.createArrayOf("timestamp", buckets));
+        ps.setArray(3, connection.createArrayOf("bigint", clicks));
+    }
+
+    record UrlBucket(long urlId, LocalDateTime bucket) implements Comparable<UrlBucket> {
+
+        @Override
+        public int compareTo(UrlBucket other) {
+            int byUrl = Long.compare(urlId, other.urlId);
+            return byUrl != 0 ? byUrl : bucket.compareTo(other.bucket);
+        }
+    }
+
+    record UrlDay(long urlId, LocalDate day) implements Comparable<UrlDay> {
+
+        @Override
+        public int compareTo(UrlDay other) {
+            int byUrl = Long.compare(urlId, other.urlId);
+            return byUrl != 0 ? byUrl : day.compareTo(other.day);
+        }
+    }
+}
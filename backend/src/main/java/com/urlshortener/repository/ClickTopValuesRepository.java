@@ -0,0 +1,147 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.ingest.ClickEvent;
+import com.urlshortener.util.SpaceSaving;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Most frequent referrers and user agents of each URL, kept as one
+ * {@link SpaceSaving} summary per (URL, field) in click_top_values. Like the
+ * daily rollups, the ingest writer merges each batch in the transaction that
+ * stores its raw rows, and the rollup backfill covers older rows. A link's
+ * summaries are the same size whether it has ten clicks or ten million.
+ */
+@Repository
+public class ClickTopValuesRepository {
+
+    /** Counters per summary: any value with more than 1% of a link's clicks is always tracked. */
+    static final int CAPACITY = 100;
+
+    public enum Field {
+        REFERRER("referrer"),
+        USER_AGENT("user_agent");
+
+        private final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+
+        String of(ClickEvent event) {
+            String value = this == REFERRER ? event.referrer() : event.userAgent();
+            // Direct visits and clients without a User-Agent are grouped under ""
+            return value != null ? value : "";
+        }
+    }
+
+    private static final String CREATE_SUMMARIES = "INSERT INTO click_top_values (url_id, field, summary)"
+            + " SELECT k.url_id, k.field, ''::bytea FROM unnest(?::bigint[], ?::text[]) AS k(url_id, field)"
+            + " ORDER BY 1, 2 ON CONFLICT (url_id, field) DO NOTHING";
+
+    private static final String LOCK_SUMMARIES = "SELECT t.url_id, t.field, t.summary FROM click_top_values t"
+            + " JOIN unnest(?::bigint[], ?::text[]) AS k(url_id, field) ON t.url_id = k.url_id AND t.field = k.field"
+            + " ORDER BY 1, 2 FOR UPDATE OF t";
+
+    private static final String BACKFILL_VALUES = "SELECT c.url_id, " + ClickDictionaryRepository.REFERRER + ", "
+            + ClickDictionaryRepository.USER_AGENT + ", count(*) FROM click_analytics c" + ClickDictionaryRepository.JOINS
+            + " WHERE c.id >= ? AND c.id < ? GROUP BY 1, 2, 3";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ClickTopValuesRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Adds a batch of clicks; must run in the transaction that stores the raw rows. */
+    public void addClicks(List<ClickEvent> events) {
+        merge(summarize(events));
+    }
+
+    /** Adds raw rows with {@code fromId <= id < toId}; the caller guarantees each range runs once. */
+    public void backfill(long fromId, long toId) {
+        Map<UrlField, SpaceSaving> summaries = new TreeMap<>();
+        jdbcTemplate.query(BACKFILL_VALUES, rs -> {
+            long urlId = rs.getLong(1);
+            String referrer = rs.getString(2);
+            String userAgent = rs.getString(3);
+            long clicks = rs.getLong(4);
+            summaries.computeIfAbsent(new UrlField(urlId, Field.REFERRER), k -> new SpaceSaving(CAPACITY))
+                    .offer(referrer != null ? referrer : "", clicks);
+            summaries.computeIfAbsent(new UrlField(urlId, Field.USER_AGENT), k -> new SpaceSaving(CAPACITY))
+                    .offer(userAgent != null ? userAgent : "", clicks);
+        }, fromId, toId);
+        merge(summaries);
+    }
+
+    /** The {@code limit} most frequent values of a URL's field, most frequent first. */
+    public List<SpaceSaving.Item> findTopValues(Long urlId, Field field, int limit) {
+        List<byte[]> rows = jdbcTemplate.query("SELECT summary FROM click_top_values WHERE url_id = ? AND field = ?",
+                (rs, rowNum) -> rs.getBytes(1), urlId, field.column);
+        return rows.isEmpty() ? List.of() : SpaceSaving.fromBytes(rows.get(0), CAPACITY).top(limit);
+    }
+
+    /**
+     * Merges summaries into the stored ones: missing rows are created, then
+     * all are locked in key order, merged in Java and written back.
+     */
+    private void merge(Map<UrlField, SpaceSaving> summaries) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+        Long[] urlIds = new Long[summaries.size()];
+        String[] fields = new String[summaries.size()];
+        int i = 0;
+        for (UrlField key : summaries.keySet()) {
+            urlIds[i] = key.urlId();
+            fields[i] = key.field().column;
+            i++;
+        }
+        jdbcTemplate.update(CREATE_SUMMARIES, ps -> bindKeys(ps, urlIds, fields));
+        List<Object[]> updates = new ArrayList<>(summaries.size());
+        jdbcTemplate.query(LOCK_SUMMARIES, ps -> bindKeys(ps, urlIds, fields), rs -> {
+            long urlId = rs.getLong(1);
+            String column = rs.getString(2);
+            UrlField key = new UrlField(urlId, column.equals(Field.REFERRER.column) ? Field.REFERRER : Field.USER_AGENT);
+            SpaceSaving summary = SpaceSaving.fromBytes(rs.getBytes(3), CAPACITY);
+            summary.merge(summaries.get(key));
+            updates.add(new Object[] { summary.toBytes(), urlId, column });
+        });
+        jdbcTemplate.batchUpdate("UPDATE click_top_values SET summary = ? WHERE url_id = ? AND field = ?", updates);
+    }
+
+    static Map<UrlField, SpaceSaving> summarize(List<ClickEvent> events) {
+        Map<UrlField, SpaceSaving> summaries = new TreeMap<>();
+        for (ClickEvent event : events) {
+            for (Field field : Field.values()) {
+                summaries.computeIfAbsent(new UrlField(event.urlId(), field), k -> new SpaceSaving(CAPACITY))
+                        .offer(field.of(event));
+            }
+        }
+        return summaries;
+    }
+
+    private static void bindKeys(PreparedStatement ps, Long[] urlIds, String[] fields) throws SQLException {
+        Connection connection = ps.getConnection();
+        ps.setArray(1, connection.createArrayOf("bigint", urlIds));
+        ps.setArray(2, connection.createArrayOf("text", fields));
+    }
+
+    // Ordered like the rows in SQL: by url id, then by column name
+    record UrlField(long urlId, Field field) implements Comparable<UrlField> {
+
+        @Override
+        public int compareTo(UrlField other) {
+            int byUrl = Long.compare(urlId, other.urlId);
+            return byUrl != 0 ? byUrl : field.column.compareTo(other.field.column);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.urlshortener.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * The principal of a request authenticated by {@link JwtAuthFilter}, built
+ * from the claims of its token. Inject it with {@code @AuthenticationPrincipal}
+ * instead of looking the user up by email.
+ */
+public record AuthenticatedUser(Long id, String email) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -1,19 +1,37 @@
 package com.urlshortener.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Authenticates requests carrying a bearer token. The principal is an
+ * {@link AuthenticatedUser} built from the token's claims, so no request
+ * touches the users table; only tokens issued before they carried the user
+ * id are resolved by email, once. A token is verified on its first request
+ * and its principal is then cached until the token's {@code exp}, so later
+ * requests with the same token skip the HMAC check too. A token therefore
+ * stays valid until it expires, even if its user is deleted meanwhile.
+ */
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
@@ -23,26 +41,38 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.jwt.principal-cache-size:10000}")
+    private long principalCacheSize;
+
+    private Cache<String, CachedPrincipal> principals;
+
+    @PostConstruct
+    public void init() {
+        principals = Caffeine.newBuilder()
+                .maximumSize(principalCacheSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "jwt.principal");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
         try {
             String authHeader = request.getHeader("Authorization");
-            String token = null;
-            String username = null;
 
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring(7);
-                username = jwtUtil.extractUsername(token);
-            }
+            if (authHeader != null && authHeader.startsWith("Bearer ")
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                AuthenticatedUser user = principal(authHeader.substring(7));
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                if (jwtUtil.validateToken(token, userDetails.getUsername())) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails,
-                            null, userDetails.getAuthorities());
+                if (user != null) {
+                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(user,
+                            null, List.of());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
@@ -53,4 +83,57 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * The principal of a valid token, or {@code null}. Shares the principal
+     * cache, so the filter's own check of the same token is then a hit.
+     */
+    public AuthenticatedUser authenticate(String token) {
+        try {
+            return principal(token);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private AuthenticatedUser principal(String token) {
+        CachedPrincipal cached = principals.getIfPresent(token);
+        if (cached != null) {
+            return cached.user();
+        }
+        // Throws for a bad or expired token, which is then never cached
+        Claims claims = jwtUtil.parseClaims(token);
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            return null;
+        }
+        Long userId = claims.get(JwtUtil.USER_ID_CLAIM, Long.class);
+        AuthenticatedUser user = userId != null
+                ? new AuthenticatedUser(userId, claims.getSubject())
+                : userDetailsService.loadAuthenticatedUser(claims.getSubject());
+        principals.put(token, new CachedPrincipal(user, claims.getExpiration().getTime()));
+        return user;
+    }
+
+    private record CachedPrincipal(AuthenticatedUser user, long expiresAtMillis) {
+    }
+
+    // Each entry lives exactly as long as its token is valid
+    private static final class UntilTokenExpiry implements Expiry<String, CachedPrincipal> {
+
+        @Override
+        public long expireAfterCreate(String token, CachedPrincipal principal, long currentTime) {
+            long remainingMillis = principal.expiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, CachedPrincipal principal, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, principal, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, CachedPrincipal principal, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
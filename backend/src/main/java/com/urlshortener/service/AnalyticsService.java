@@ -1,13 +1,26 @@
 package com.urlshortener.service;
 
+import com.urlshortener.dto.AgentBreakdownResponse;
 import com.urlshortener.dto.AnalyticsResponse;
-import com.urlshortener.entity.ClickAnalytics;
+import com.urlshortener.dto.TimeSeriesResponse;
+import com.urlshortener.dto.TopValueResponse;
+import com.urlshortener.entity.DeviceType;
 import com.urlshortener.entity.Url;
-import com.urlshortener.repository.ClickAnalyticsRepository;
+import com.urlshortener.ingest.ClickEvent;
+import com.urlshortener.ingest.ClickIngestionQueue;
+import com.urlshortener.repository.ClickAgentRollupRepository;
+import com.urlshortener.repository.ClickRollupRepository;
+import com.urlshortener.repository.ClickTopValuesRepository;
+import com.urlshortener.util.HyperLogLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,116 +31,203 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class AnalyticsService {
 
+    private static final long ONE_DAY_SECONDS = Duration.ofDays(1).toSeconds();
+
+    static final int DEFAULT_MAX_POINTS = 500;
+    static final int MAX_POINTS = 5000;
+
+    @Autowired
+    private ClickRollupRepository clickRollupRepository;
+
+    @Autowired
+    private ClickTopValuesRepository clickTopValuesRepository;
+
     @Autowired
-    private ClickAnalyticsRepository clickAnalyticsRepository;
+    private ClickAgentRollupRepository clickAgentRollupRepository;
 
     @Autowired
     private UrlService urlService;
 
-    @Transactional
+    @Autowired
+    private ClickIngestionQueue clickIngestionQueue;
+
+    @Autowired
+    private CachedClickEstimator cachedClickEstimator;
+
+    /**
+     * Counts the click in memory and queues the raw event for the background
+     * writer. The count is kept even if the overflow policy rejects the event.
+     */
     public void trackClick(Long urlId, String ipAddress, String userAgent, String referrer) {
-        ClickAnalytics analytics = new ClickAnalytics();
-        analytics.setUrlId(urlId);
-        analytics.setIpAddress(ipAddress);
-        analytics.setUserAgent(userAgent);
-        analytics.setReferrer(referrer);
-        clickAnalyticsRepository.save(analytics);
-
-        // Increment click count
         urlService.incrementClickCount(urlId);
+        clickIngestionQueue.submit(new ClickEvent(urlId, LocalDateTime.now(), ipAddress, userAgent, referrer));
     }
 
+    /**
+     * Analytics of one link from {@code from} to {@code to}, both inclusive:
+     * clicks as a dense series of at most {@code maxPoints} points, plus
+     * unique visitors. A null {@code from} starts when the link was created,
+     * a null {@code to} ends now.
+     */
     @Transactional(readOnly = true)
-    public AnalyticsResponse getUrlAnalytics(Long urlId) {
-        // Verify URL exists
-        Url url = urlService.getUrlByShortCode(urlService.getUrlByShortCode(null).getShortCode()); // This line was
-                                                                                                   // problematic,
-                                                                                                   // simpler to just
-                                                                                                   // use ID if method
-                                                                                                   // exists or fetch by
-                                                                                                   // ID
-        // Actually, better to fetch by ID directly since we have it.
-        // But UrlService doesn't expose getUrlById directly in the snippet seen.
-        // Let's assume we can fetch it or just proceed with ID since repository methods
-        // use ID.
-        // The problematic line: Url url =
-        // urlService.getUrlByShortCode(urlService.getUrlByShortCode(null).getShortCode());
-        // caused a NullPointerException logic.
-        // We will remove the url fetching if not strictly needed for the response
-        // (which uses urlId),
-        // or properly fetch it if needed.
-        // Looking at the response, we return urlId, totalClicks, clicksByDate.
-        // We don't strictly need the Url object for getUrlAnalytics(Long urlId) unless
-        // we want to validate existence.
-        // Let's validate existence using repository count or similar.
-
-        // However, a cleaner fix for the specific line 39:
-        // urlService.getUrlByShortCode(null) will likely fail.
-        // We should probably rely on urlService to get URL by ID if possible, or just
-        // skip if we only need ID for repo calls.
-
-        // Let's check UrlService again. It has incrementClickCount which finds by ID.
-        // It doesn't seem to have a public getUrlById.
-        // But we can use the repository directly if we had access, but we inject
-        // UrlService.
-        // The repository is private in UrlService.
-
-        // Let's look at getUrlAnalyticsByShortCode - it works fine.
-        // For getUrlAnalytics(Long urlId), the existing code on line 39 is definitely
-        // broken.
-        // We can just proceed with operations on urlId.
-
-        // Removing the broken line.
-
-        // Get total clicks
-        long totalClicks = clickAnalyticsRepository.countByUrlId(urlId);
-
-        // Get date-wise clicks
-        List<Object[]> clicksByDate = clickAnalyticsRepository.findClicksByDateForUrl(urlId);
-        Map<LocalDate, Long> dateWiseClicks = clicksByDate.stream()
-                .collect(Collectors.toMap(
-                        row -> ((java.sql.Date) row[0]).toLocalDate(),
-                        row -> ((Number) row[1]).longValue(),
-                        (existing, replacement) -> existing,
-                        LinkedHashMap::new));
+    public AnalyticsResponse getUrlAnalytics(Url url, LocalDateTime from, LocalDateTime to,
+            ClickRollupRepository.Granularity granularity, int maxPoints) {
+        ClickRollupRepository.SeriesWindow window = seriesWindow(from != null ? from : url.getCreatedAt(), to,
+                granularity, maxPoints);
+        TimeSeriesResponse series = toSeries(granularity, window,
+                clickRollupRepository.findSeriesForUrl(url.getId(), granularity, window));
 
         AnalyticsResponse response = new AnalyticsResponse();
-        response.setUrlId(urlId);
-        response.setTotalClicks(totalClicks);
-        response.setClicksByDate(dateWiseClicks);
-
+        response.setUrlId(url.getId());
+        response.setShortCode(url.getShortCode());
+        response.setTotalClicks(series.getTotalClicks());
+        response.setEstimatedCachedClicks(cachedClickEstimator.estimate(series.getTotalClicks(), url.getCacheMaxAge()));
+        response.setGranularity(series.getGranularity());
+        response.setStart(series.getStart());
+        response.setStepSeconds(series.getStepSeconds());
+        response.setClicks(series.getClicks());
+        addUniqueVisitors(response, url.getId(), window);
         return response;
     }
 
+    /**
+     * Unique visitors over the days the window covers, and per point when
+     * points are whole days: sketches are kept per day, so a minute or hour
+     * point has no count of its own.
+     */
+    private void addUniqueVisitors(AnalyticsResponse response, Long urlId, ClickRollupRepository.SeriesWindow window) {
+        LocalDate firstDay = window.start().toLocalDate();
+        LocalDate lastDay = window.end().minusNanos(1).toLocalDate();
+        Map<LocalDate, HyperLogLog> sketches = clickRollupRepository.findVisitorSketchesForUrl(urlId, firstDay, lastDay);
+
+        boolean daily = window.stepSeconds() % ONE_DAY_SECONDS == 0 && window.start().toLocalTime().equals(LocalTime.MIDNIGHT);
+        HyperLogLog[] points = daily ? new HyperLogLog[window.points()] : null;
+        HyperLogLog range = new HyperLogLog();
+        sketches.forEach((day, sketch) -> {
+            range.merge(sketch);
+            if (daily) {
+                int point = (int) (Duration.between(window.start(), day.atStartOfDay()).toSeconds() / window.stepSeconds());
+                if (points[point] == null) {
+                    points[point] = new HyperLogLog();
+                }
+                points[point].merge(sketch);
+            }
+        });
+
+        response.setUniqueVisitors(range.estimate());
+        response.setUniqueVisitorsRelativeError(HyperLogLog.RELATIVE_STANDARD_ERROR);
+        if (daily) {
+            long[] estimates = new long[points.length];
+            for (int i = 0; i < points.length; i++) {
+                estimates[i] = points[i] == null ? 0 : points[i].estimate();
+            }
+            response.setUniqueVisitorsByPoint(estimates);
+        }
+    }
+
+    /**
+     * Clicks of one link per {@code granularity} bucket from {@code from} to
+     * {@code to}, both inclusive, as a dense series of at most
+     * {@code maxPoints} points. Null bounds default to a recent window
+     * ending now.
+     */
+    @Transactional(readOnly = true)
+    public TimeSeriesResponse getUrlSeries(Long urlId, LocalDateTime from, LocalDateTime to,
+            ClickRollupRepository.Granularity granularity, int maxPoints) {
+        ClickRollupRepository.SeriesWindow window = seriesWindow(from, to, granularity, maxPoints);
+        return toSeries(granularity, window, clickRollupRepository.findSeriesForUrl(urlId, granularity, window));
+    }
+
+    /** Like {@link #getUrlSeries}, over all of a user's links. */
     @Transactional(readOnly = true)
-    public AnalyticsResponse getUrlAnalyticsByShortCode(String shortCode) {
-        Url url = urlService.getUrlByShortCode(shortCode);
+    public TimeSeriesResponse getUserSeries(Long userId, LocalDateTime from, LocalDateTime to,
+            ClickRollupRepository.Granularity granularity, int maxPoints) {
+        ClickRollupRepository.SeriesWindow window = seriesWindow(from, to, granularity, maxPoints);
+        return toSeries(granularity, window, clickRollupRepository.findSeriesForUser(userId, granularity, window));
+    }
 
-        // Get total clicks
-        long totalClicks = clickAnalyticsRepository.countByUrlId(url.getId());
+    static ClickRollupRepository.SeriesWindow seriesWindow(LocalDateTime from, LocalDateTime to,
+            ClickRollupRepository.Granularity granularity, int maxPoints) {
+        if (maxPoints < 1 || maxPoints > MAX_POINTS) {
+            throw new IllegalArgumentException("maxPoints must be between 1 and " + MAX_POINTS);
+        }
+        LocalDateTime last = to != null ? to : LocalDateTime.now();
+        LocalDateTime first = from != null ? from : last.minus(granularity.size().multipliedBy(switch (granularity) {
+            case MINUTE -> 59;
+            case HOUR -> 47;
+            case DAY -> 29;
+            case WEEK -> 25;
+        }));
+        if (first.isAfter(last)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        return ClickRollupRepository.SeriesWindow.of(first, last, granularity, maxPoints);
+    }
 
-        // Get date-wise clicks
-        List<Object[]> clicksByDate = clickAnalyticsRepository.findClicksByDateForUrl(url.getId());
-        Map<LocalDate, Long> dateWiseClicks = clicksByDate.stream()
-                .collect(Collectors.toMap(
-                        row -> ((java.sql.Date) row[0]).toLocalDate(),
-                        row -> ((Number) row[1]).longValue(),
-                        (existing, replacement) -> existing,
-                        LinkedHashMap::new));
+    private static TimeSeriesResponse toSeries(ClickRollupRepository.Granularity granularity,
+            ClickRollupRepository.SeriesWindow window, long[] clicks) {
+        long total = 0;
+        for (long count : clicks) {
+            total += count;
+        }
+        return new TimeSeriesResponse(granularity.name(), window.start(), window.stepSeconds(), total, clicks);
+    }
 
-        AnalyticsResponse response = new AnalyticsResponse();
-        response.setUrlId(url.getId());
-        response.setShortCode(url.getShortCode());
-        response.setTotalClicks(totalClicks);
-        response.setClicksByDate(dateWiseClicks);
+    /** Most frequent referrers or user agents of a link over its whole history, most frequent first. */
+    @Transactional(readOnly = true)
+    public List<TopValueResponse> getTopValues(Long urlId, ClickTopValuesRepository.Field field, int limit) {
+        if (limit < 1 || limit > 50) {
+            throw new IllegalArgumentException("limit must be between 1 and 50");
+        }
+        return clickTopValuesRepository.findTopValues(urlId, field, limit).stream()
+                .map(item -> new TopValueResponse(item.value(), item.count(), item.error()))
+                .toList();
+    }
 
-        return response;
+    /** Clicks of a link over its whole history by device type, browser family and OS family. */
+    @Transactional(readOnly = true)
+    public AgentBreakdownResponse getAgentBreakdown(Long urlId) {
+        return toBreakdown(clickAgentRollupRepository.findClicksForUrl(urlId));
     }
 
+    static AgentBreakdownResponse toBreakdown(Map<ClickAgentRollupRepository.UrlAgent, Long> counts) {
+        Map<String, Long> devices = new HashMap<>();
+        Map<String, Long> browsers = new HashMap<>();
+        Map<String, Long> systems = new HashMap<>();
+        counts.forEach((agent, clicks) -> {
+            devices.merge(agent.deviceType().name(), clicks, Long::sum);
+            browsers.merge(agent.browser().name(), clicks, Long::sum);
+            systems.merge(agent.os().name(), clicks, Long::sum);
+        });
+        long total = sum(devices.values());
+        return new AgentBreakdownResponse(total, largestFirst(devices), largestFirst(browsers), largestFirst(systems),
+                devices.getOrDefault(DeviceType.BOT.name(), 0L));
+    }
+
+    private static Map<String, Long> largestFirst(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /** Daily clicks over a user's whole history; superseded by {@link #getUserSeries}. */
+    @Deprecated
     @Transactional(readOnly = true)
     public Map<LocalDate, Long> getUserAnalytics(Long userId) {
-        List<Object[]> clicksByDate = clickAnalyticsRepository.findClicksByDateForUser(userId);
-        return clicksByDate.stream()
+        return toDailyCounts(clickRollupRepository.findClicksByDateForUser(userId));
+    }
+
+    private static long sum(Collection<Long> counts) {
+        long total = 0;
+        for (long clicks : counts) {
+            total += clicks;
+        }
+        return total;
+    }
+
+    /** (date, count) rows from the rollup queries, in query order. */
+    static Map<LocalDate, Long> toDailyCounts(List<Object[]> rows) {
+        return rows.stream()
                 .collect(Collectors.toMap(
                         row -> ((java.sql.Date) row[0]).toLocalDate(),
                         row -> ((Number) row[1]).longValue(),
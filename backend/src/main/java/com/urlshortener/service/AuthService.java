@@ -42,7 +42,7 @@ public class AuthService {
         User savedUser = userRepository.save(user);
 
         // Generate JWT token
-        String token = jwtUtil.generateToken(savedUser.getEmail());
+        String token = jwtUtil.generateToken(savedUser.getEmail(), savedUser.getId());
 
         return new AuthResponse(token, savedUser.getEmail(), savedUser.getName(), savedUser.getId());
     }
@@ -57,7 +57,7 @@ public class AuthService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
         // Generate JWT token
-        String token = jwtUtil.generateToken(user.getEmail());
+        String token = jwtUtil.generateToken(user.getEmail(), user.getId());
 
         return new AuthResponse(token, user.getEmail(), user.getName(), user.getId());
     }
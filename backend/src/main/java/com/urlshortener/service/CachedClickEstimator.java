@@ -0,0 +1,153 @@
+package com.urlshortener.service;
+
+import com.urlshortener.util.HyperLogLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Estimates how many clicks on a cacheable link never reached us because a
+ * browser answered them from its cache.
+ * <p>
+ * Uncached links see every click, so they show how often the same client
+ * (IP + User-Agent) comes back to the same link within a window. For a
+ * cacheable link each recorded click stands for one such client window; the
+ * repeats inside it are the cached clicks. Only browser caches are covered:
+ * hits served by a shared CDN cache are invisible to the origin.
+ * <p>
+ * The visits come from the daily rollups and unique-visitor sketches, never
+ * from raw clicks: a link's daily sketches give its visitors per day, and
+ * merged over the lookback its visitors per week. Max-ages shorter than a day
+ * get the daily share scaled down in proportion, which is an approximation.
+ */
+@Component
+public class CachedClickEstimator {
+
+    private static final Logger log = LoggerFactory.getLogger(CachedClickEstimator.class);
+
+    /** Revisit windows measured, in seconds: a day and a week. */
+    static final int[] WINDOWS = { 86_400, 604_800 };
+
+    private static final int LOOKBACK_DAYS = 7;
+    private static final double MAX_REPEAT_SHARE = 0.95;
+    private static final int FETCH_SIZE = 1_000;
+
+    // Ordered by link so one merged sketch is held at a time
+    private static final String VISITS_SQL = "SELECT s.url_id, s.sketch, r.clicks FROM click_daily_uniques s"
+            + " JOIN click_daily_rollup r ON r.url_id = s.url_id AND r.day = s.day"
+            + " JOIN urls u ON u.id = s.url_id"
+            + " WHERE u.cache_max_age = 0 AND s.day >= ? ORDER BY s.url_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Share of uncached clicks that repeat a (link, client) already seen in the same window
+    private volatile double[] repeatShares = new double[WINDOWS.length];
+
+    public CachedClickEstimator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelayString = "${app.redirect.estimate-refresh-ms:3600000}")
+    public void refresh() {
+        try {
+            Visits visits = new Visits();
+            // A fetch size inside a transaction makes the driver stream the sketches
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(VISITS_SQL);
+                statement.setDate(1, Date.valueOf(LocalDate.now().minusDays(LOOKBACK_DAYS - 1)));
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, visits));
+            repeatShares = visits.repeatShares();
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh cached click estimate, keeping the previous one", e);
+        }
+    }
+
+    /**
+     * Clicks likely served from browser caches for a link that recorded
+     * {@code recordedClicks} with the given Cache-Control max-age.
+     */
+    public long estimate(long recordedClicks, int cacheMaxAge) {
+        if (cacheMaxAge <= 0 || recordedClicks <= 0) {
+            return 0;
+        }
+        double share = repeatShares[windowFor(cacheMaxAge)];
+        if (cacheMaxAge < WINDOWS[0]) {
+            share = share * cacheMaxAge / WINDOWS[0];
+        }
+        return Math.round(recordedClicks * share / (1 - share));
+    }
+
+    void setRepeatShares(double[] repeatShares) {
+        this.repeatShares = repeatShares;
+    }
+
+    /** The smallest measured window that covers the max-age, or the largest one. */
+    static int windowFor(int cacheMaxAge) {
+        for (int i = 0; i < WINDOWS.length; i++) {
+            if (cacheMaxAge <= WINDOWS[i]) {
+                return i;
+            }
+        }
+        return WINDOWS.length - 1;
+    }
+
+    /** Clicks and visits per window of the uncached links, from rows ordered by link. */
+    static final class Visits implements RowCallbackHandler {
+
+        private long clicks;
+        private long dailyVisits;
+        private long weeklyVisits;
+        private long urlId = -1;
+        private HyperLogLog week;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            add(rs.getLong(1), HyperLogLog.fromBytes(rs.getBytes(2)), rs.getLong(3));
+        }
+
+        void add(long urlId, HyperLogLog day, long dayClicks) {
+            if (urlId != this.urlId) {
+                closeLink();
+                this.urlId = urlId;
+                week = new HyperLogLog();
+            }
+            clicks += dayClicks;
+            dailyVisits += day.estimate();
+            week.merge(day);
+        }
+
+        double[] repeatShares() {
+            closeLink();
+            long[] visits = { dailyVisits, weeklyVisits };
+            double[] shares = new double[WINDOWS.length];
+            for (int i = 0; i < WINDOWS.length && clicks > 0; i++) {
+                // Sketch estimates can slightly exceed the clicks they count
+                shares[i] = Math.max(0, Math.min(MAX_REPEAT_SHARE, 1 - (double) visits[i] / clicks));
+            }
+            return shares;
+        }
+
+        private void closeLink() {
+            if (week != null) {
+                weeklyVisits += week.estimate();
+                week = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.urlshortener.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.urlshortener.repository.ClickDictionaryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a URL's raw clicks from click_analytics to an output stream as CSV
+ * or newline-delimited JSON. Rows are read in id order, one page of
+ * {@link #PAGE_SIZE} per query, each page resuming after the last id of the
+ * one before. Nothing is held between pages, neither a transaction nor a
+ * pooled connection, so a slow client never pins either, and heap use does
+ * not depend on how many clicks are exported. Every row carries its id: an
+ * interrupted export resumes by passing the last id received as
+ * {@code afterId}.
+ */
+@Service
+public class ClickExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    // Rows per query; each page is written out before the next is read
+    static final int PAGE_SIZE = 1000;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    // clicked_at bounds let a partitioned table skip months outside the range
+    static final String SELECT_CLICKS = "SELECT c.id, c.clicked_at, c.ip_address, "
+            + ClickDictionaryRepository.USER_AGENT + ", " + ClickDictionaryRepository.REFERRER
+            + " FROM click_analytics c" + ClickDictionaryRepository.JOINS
+            + " WHERE c.url_id = ? AND c.id > ? AND c.clicked_at >= ? AND c.clicked_at < ?"
+            + " ORDER BY c.id LIMIT ?";
+
+    private static final RowMapper<ExportRow> ROW_MAPPER = (rs, rowNum) -> new ExportRow(rs.getLong(1),
+            rs.getTimestamp(2).toLocalDateTime(), rs.getString(3), rs.getString(4), rs.getString(5));
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    record ExportRow(long id, LocalDateTime clickedAt, String ipAddress, String userAgent, String referrer) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean databaseStore;
+
+    public ClickExportService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.analytics.raw-store:database}") String rawStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseStore = "database".equals(rawStore);
+    }
+
+    /** Rejects exports up front, before any response bytes are committed. */
+    public void checkAvailable() {
+        if (!databaseStore) {
+            throw new IllegalArgumentException("Raw click export is only available with app.analytics.raw-store=database");
+        }
+    }
+
+    /**
+     * Writes clicks of {@code urlId} with {@code from <= clicked_at < to} and
+     * {@code id > afterId}, at most {@code limit} of them. Returns the number
+     * of rows written. {@code out} is not closed.
+     */
+    public long export(long urlId, LocalDateTime from, LocalDateTime to, long afterId, long limit,
+            Format format, boolean gzip, OutputStream out) throws IOException {
+        checkAvailable();
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out,
+                StandardCharsets.UTF_8), BUFFER_BYTES);
+        RowWriter rows = new RowWriter(format, writer);
+
+        long written = 0;
+        long after = afterId;
+        while (written < limit) {
+            int pageSize = (int) Math.min(PAGE_SIZE, limit - written);
+            List<ExportRow> page = jdbcTemplate.query(SELECT_CLICKS, ROW_MAPPER, urlId, after,
+                    Timestamp.valueOf(from), Timestamp.valueOf(to), pageSize);
+            for (ExportRow row : page) {
+                rows.write(row);
+            }
+            written += page.size();
+            if (page.size() < pageSize) {
+                break;
+            }
+            after = page.get(page.size() - 1).id();
+        }
+
+        rows.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        return written;
+    }
+
+    /** Writes rows as CSV (with a header) or one JSON object per line. */
+    private static final class RowWriter {
+
+        private final Writer writer;
+        private final JsonGenerator json;
+
+        RowWriter(Format format, Writer writer) throws IOException {
+            this.writer = writer;
+            if (format == Format.CSV) {
+                writer.write("id,clicked_at,ip_address,user_agent,referrer\n");
+                json = null;
+            } else {
+                json = JSON.createGenerator(writer);
+                json.setRootValueSeparator(null);
+            }
+        }
+
+        void write(ExportRow row) throws IOException {
+            if (json == null) {
+                writer.write(Long.toString(row.id()));
+                writer.write(',');
+                writer.write(row.clickedAt().toString());
+                writer.write(',');
+                writeCsvField(writer, row.ipAddress());
+                writer.write(',');
+                writeCsvField(writer, row.userAgent());
+                writer.write(',');
+                writeCsvField(writer, row.referrer());
+                writer.write('\n');
+                return;
+            }
+            json.writeStartObject();
+            json.writeNumberField("id", row.id());
+            json.writeStringField("clickedAt", row.clickedAt().toString());
+            json.writeStringField("ipAddress", row.ipAddress());
+            json.writeStringField("userAgent", row.userAgent());
+            json.writeStringField("referrer", row.referrer());
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        void flush() throws IOException {
+            if (json != null) {
+                json.flush();
+            }
+            writer.flush();
+        }
+    }
+
+    /** RFC 4180 quoting; a null is an empty field. */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -3,30 +3,32 @@ package com.urlshortener.service;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.urlshortener.dto.QrCodeResponse;
 import com.urlshortener.entity.Payment;
 import com.urlshortener.exception.ResourceNotFoundException;
 import com.urlshortener.repository.PaymentRepository;
+import com.urlshortener.util.QrCodePngWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class PaymentService {
 
+    private static final int QR_CODE_SIZE = 300;
+    private static final Map<EncodeHintType, Object> QR_CODE_HINTS = Map.of(EncodeHintType.CHARACTER_SET, "UTF-8");
+
+    /** A pending payment's reference and its QR code as PNG bytes. */
+    public record PaymentQrCode(String paymentReferenceId, byte[] png) {
+    }
+
     @Autowired
     private PaymentRepository paymentRepository;
 
@@ -42,7 +44,18 @@ public class PaymentService {
     @Value("${app.payment.currency:INR}")
     private String currency;
 
-    public QrCodeResponse generateQrCode(Long userId) throws WriterException, IOException {
+    public QrCodeResponse generateQrCode(Long userId) throws WriterException {
+        PaymentQrCode qrCode = generateQrCodePng(userId);
+
+        return new QrCodeResponse(
+                Base64.getEncoder().encodeToString(qrCode.png()),
+                qrCode.paymentReferenceId(),
+                paymentAmount,
+                upiId,
+                merchantName);
+    }
+
+    public PaymentQrCode generateQrCodePng(Long userId) throws WriterException {
         // Generate unique payment reference ID
         String paymentReferenceId = "PAY-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
 
@@ -59,17 +72,10 @@ public class PaymentService {
         String upiString = createUpiPaymentString(paymentReferenceId);
 
         // Generate QR code
-        String qrCodeBase64 = generateQrCodeImage(upiString);
-
-        return new QrCodeResponse(
-                qrCodeBase64,
-                paymentReferenceId,
-                paymentAmount,
-                upiId,
-                merchantName);
+        return new PaymentQrCode(paymentReferenceId, renderQrCode(upiString));
     }
 
-    private String createUpiPaymentString(String paymentReferenceId) {
+    String createUpiPaymentString(String paymentReferenceId) {
         return String.format(
                 "upi://pay?pa=%s&pn=%s&am=%s&cu=%s&tn=Payment_%s",
                 upiId,
@@ -79,20 +85,11 @@ public class PaymentService {
                 paymentReferenceId);
     }
 
-    private String generateQrCodeImage(String upiString) throws WriterException, IOException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-
-        BitMatrix bitMatrix = qrCodeWriter.encode(upiString, BarcodeFormat.QR_CODE, 300, 300, hints);
-        BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-
-        // Convert to Base64
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(qrImage, "PNG", baos);
-        byte[] imageBytes = baos.toByteArray();
-
-        return Base64.getEncoder().encodeToString(imageBytes);
+    // Every code carries a new payment reference, so there is nothing to cache but the buffers
+    byte[] renderQrCode(String upiString) throws WriterException {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(upiString, BarcodeFormat.QR_CODE, QR_CODE_SIZE, QR_CODE_SIZE,
+                QR_CODE_HINTS);
+        return QrCodePngWriter.write(bitMatrix);
     }
 
     public void confirmPayment(String paymentReferenceId, Long userId) {
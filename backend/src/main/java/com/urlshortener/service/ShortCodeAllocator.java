@@ -0,0 +1,164 @@
+package com.urlshortener.service;
+
+import com.urlshortener.util.Base62;
+import com.urlshortener.util.FeistelPermutation;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Issues unique short codes without probing the urls table. Numeric IDs are
+ * leased in blocks from the short_code_seq sequence, so nodes never hand out
+ * the same ID, and each ID is passed through a keyed Feistel permutation of
+ * the base62 keyspace so consecutive codes look unrelated.
+ * <p>
+ * The permutation key must never change once codes have been issued; a new
+ * key maps the same IDs to different codes and can collide with old ones.
+ * <p>
+ * Because the permutation is keyed but invertible, a code decodes back to its
+ * ID, which lets {@link #mayHaveIssued(String)} rule out codes no node can
+ * have issued yet.
+ * <p>
+ * With {@code app.url.short-code-strategy=random} codes are drawn at random
+ * instead, and neither the key nor the sequence is needed or checked.
+ */
+@Component
+public class ShortCodeAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeAllocator.class);
+
+    static final String SEQUENCE = "short_code_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int shortCodeLength;
+    private final FeistelPermutation permutation;
+    private long blockSize;
+    private final long headroomBlocks;
+
+    // Not synchronized: a block lease is a database round trip, which would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long limit;
+
+    // IDs below this had been leased by some node as of the last read of the sequence
+    private final AtomicLong leasedBound = new AtomicLong();
+
+    public ShortCodeAllocator(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.url.short-code-strategy:sequence}") String strategy,
+            @Value("${app.url.short-code-length}") int shortCodeLength,
+            @Value("${app.url.allocator.key}") String key,
+            @Value("${app.url.allocator.block-size:1000}") long blockSize,
+            @Value("${app.url.allocator.bound-headroom-blocks:1000}") long headroomBlocks) {
+        this.enabled = !"random".equalsIgnoreCase(strategy);
+        if (enabled && (key == null || key.isBlank())) {
+            // A shared default key would make every deployment's codes predictable
+            throw new IllegalStateException("app.url.allocator.key is not set; "
+                    + "set SHORT_CODE_KEY to a long random secret");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.shortCodeLength = shortCodeLength;
+        this.permutation = enabled ? new FeistelPermutation(Base62.keyspace(shortCodeLength), key) : null;
+        this.blockSize = blockSize;
+        this.headroomBlocks = headroomBlocks;
+    }
+
+    /** short_code_seq is created by database/schema.sql; its increment is the block size. */
+    @PostConstruct
+    public void checkSequence() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> increments = jdbcTemplate.queryForList(
+                "SELECT increment_by FROM pg_sequences WHERE sequencename = ?", Long.class, SEQUENCE);
+        if (increments.isEmpty()) {
+            throw new IllegalStateException(SEQUENCE + " does not exist; apply database/schema.sql");
+        }
+        long increment = increments.get(0);
+        if (increment != blockSize) {
+            // The sequence increment is what other nodes lease with; it wins over local config
+            log.warn("{} increments by {}, ignoring configured block size {}", SEQUENCE, increment, blockSize);
+            blockSize = increment;
+        }
+        refreshLeasedBound();
+    }
+
+    /** Re-reads how far other nodes have leased, so {@link #mayHaveIssued} never waits on the database. */
+    @Scheduled(fixedDelayString = "${app.url.allocator.bound-refresh-ms:1000}")
+    public void refreshLeasedBound() {
+        if (enabled) {
+            leasedBound.accumulateAndGet(readLeasedBound(), Math::max);
+        }
+    }
+
+    public String nextCode() {
+        if (!enabled) {
+            throw new IllegalStateException("Short codes are random; the sequence allocator is disabled");
+        }
+        long id;
+        lock.lock();
+        try {
+            if (next == limit) {
+                long start = leaseBlock();
+                next = start;
+                limit = start + blockSize;
+                leasedBound.accumulateAndGet(limit, Math::max);
+            }
+            id = next++;
+        } finally {
+            lock.unlock();
+        }
+        if (id >= permutation.domain()) {
+            throw new IllegalStateException("Short code keyspace of length " + shortCodeLength
+                    + " is exhausted; increase app.url.short-code-length");
+        }
+        return Base62.encode(permutation.permute(id), shortCodeLength);
+    }
+
+    /**
+     * Returns {@code false} only if no node can have issued {@code shortCode}
+     * yet: it is not a code of the configured length, or it decodes to an ID
+     * far above every block leased so far. Used for codes the membership
+     * filter has not seen, which may have been created on another node since
+     * its last sync.
+     * <p>
+     * The leased bound is refreshed in the background, so this is a decode
+     * and one compare. IDs within {@code bound-headroom-blocks} blocks above
+     * the bound still count as possible: other nodes may have leased them
+     * since the last refresh. Random probes decode to IDs spread over the
+     * whole keyspace and land far above that.
+     */
+    public boolean mayHaveIssued(String shortCode) {
+        long value = Base62.decode(shortCode, shortCodeLength);
+        if (value < 0) {
+            return false;
+        }
+        long id = permutation.unpermute(value);
+        return id - leasedBound.get() < headroomBlocks * blockSize;
+    }
+
+    /** Exclusive upper bound of the IDs leased so far by all nodes. */
+    long readLeasedBound() {
+        Long bound = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value + ? ELSE 0 END FROM " + SEQUENCE, Long.class, blockSize);
+        return bound == null ? 0 : bound;
+    }
+
+    /** Returns the first ID of a freshly leased block of {@code blockSize} IDs. */
+    long leaseBlock() {
+        Long start = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+        if (start == null) {
+            throw new IllegalStateException("Could not lease a short code block from " + SEQUENCE);
+        }
+        return start;
+    }
+}
@@ -1,11 +1,19 @@
 package com.urlshortener.service;
 
+import com.urlshortener.cache.ResolvedUrl;
+import com.urlshortener.cache.ShortCodeBloomFilter;
+import com.urlshortener.cache.ShortCodeIndexService;
+import com.urlshortener.cache.UrlResolutionCache;
 import com.urlshortener.dto.UrlResponse;
+import com.urlshortener.entity.RedirectPolicy;
 import com.urlshortener.entity.Url;
 import com.urlshortener.exception.ResourceNotFoundException;
+import com.urlshortener.ingest.ClickCounter;
 import com.urlshortener.repository.UrlRepository;
+import com.urlshortener.util.Base62;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,32 +30,82 @@ public class UrlService {
     @Value("${app.url.short-code-length}")
     private Integer shortCodeLength;
 
+    @Value("${app.url.short-code-strategy:sequence}")
+    private String shortCodeStrategy;
+
     @Autowired
     private UrlRepository urlRepository;
 
-    private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    @Autowired
+    private UrlResolutionCache urlResolutionCache;
+
+    @Autowired
+    private ShortCodeIndexService shortCodeIndexService;
+
+    @Autowired
+    private ShortCodeBloomFilter shortCodeBloomFilter;
+
+    @Autowired
+    private ClickCounter clickCounter;
+
+    @Autowired
+    private ShortCodeAllocator shortCodeAllocator;
+
+    @Autowired
+    private CachedClickEstimator cachedClickEstimator;
+
+    static final String CHARACTERS = Base62.ALPHABET;
     private static final SecureRandom RANDOM = new SecureRandom();
 
-    @Transactional
+    // Allocated codes can only clash with codes issued by the old random generator
+    private static final int MAX_CREATE_ATTEMPTS = 5;
+
+    private static final ResourceNotFoundException SHORT_URL_NOT_FOUND =
+            ResourceNotFoundException.withoutStackTrace("Short URL not found");
+
     public UrlResponse createShortUrl(String originalUrl, Long userId) {
-        // Generate unique short code
-        String shortCode = generateUniqueShortCode();
+        return createShortUrl(originalUrl, userId, null, null);
+    }
+
+    /** Creates a link; a {@code null} policy or max-age falls back to an uncached 302. */
+    public UrlResponse createShortUrl(String originalUrl, Long userId, RedirectPolicy redirectPolicy,
+            Integer cacheMaxAge) {
+        for (int attempt = 1;; attempt++) {
+            // Generate unique short code
+            String shortCode = nextShortCode();
 
-        // Save URL
-        Url url = new Url();
-        url.setOriginalUrl(originalUrl);
-        url.setShortCode(shortCode);
-        url.setUserId(userId);
-        url.setTotalClicks(0);
-        url.setActive(true);
+            // Save URL
+            Url url = new Url();
+            url.setOriginalUrl(originalUrl);
+            url.setShortCode(shortCode);
+            url.setUserId(userId);
+            url.setTotalClicks(0);
+            url.setActive(true);
+            url.setRedirectPolicy(redirectPolicy == null ? RedirectPolicy.TEMPORARY : redirectPolicy);
+            url.setCacheMaxAge(cacheMaxAge == null ? 0 : cacheMaxAge);
 
-        Url savedUrl = urlRepository.save(url);
+            try {
+                Url savedUrl = urlRepository.save(url);
+                shortCodeBloomFilter.add(shortCode);
 
-        // Return response
-        return mapToResponse(savedUrl);
+                // Return response
+                return mapToResponse(savedUrl);
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_CREATE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private String nextShortCode() {
+        if ("random".equalsIgnoreCase(shortCodeStrategy)) {
+            return generateUniqueShortCode();
+        }
+        return shortCodeAllocator.nextCode();
     }
 
-    private String generateUniqueShortCode() {
+    String generateUniqueShortCode() {
         String shortCode;
         do {
             shortCode = generateRandomCode();
@@ -55,7 +113,7 @@ public class UrlService {
         return shortCode;
     }
 
-    private String generateRandomCode() {
+    String generateRandomCode() {
         StringBuilder code = new StringBuilder(shortCodeLength);
         for (int i = 0; i < shortCodeLength; i++) {
             code.append(CHARACTERS.charAt(RANDOM.nextInt(CHARACTERS.length())));
@@ -65,14 +123,64 @@ public class UrlService {
 
     @Transactional(readOnly = true)
     public String getOriginalUrl(String shortCode) {
-        Url url = urlRepository.findByShortCode(shortCode)
-                .orElseThrow(() -> new ResourceNotFoundException("Short URL not found"));
+        ResolvedUrl url = lookupShortCode(shortCode);
 
-        if (!url.isActive()) {
+        if (!url.active()) {
             throw new ResourceNotFoundException("This URL has been deactivated");
         }
 
-        return url.getOriginalUrl();
+        return url.originalUrl();
+    }
+
+    /**
+     * Resolves a short code through the resolution cache, loading from the
+     * resident index or, failing that, the database on a miss. Codes the
+     * membership filter has never seen are rejected before any lookup;
+     * other unknown codes are remembered as negative entries.
+     */
+    @Transactional(readOnly = true)
+    public ResolvedUrl lookupShortCode(String shortCode) {
+        ResolvedUrl url = resolve(shortCode);
+
+        if (!url.exists()) {
+            throw SHORT_URL_NOT_FOUND;
+        }
+
+        return url;
+    }
+
+    /**
+     * Same lookup as {@link #lookupShortCode(String)}, but reports an unknown
+     * code as {@link ResolvedUrl#NOT_FOUND} instead of throwing. Used by the
+     * redirect fast path, which writes its own 404.
+     */
+    public ResolvedUrl resolve(String shortCode) {
+        if (!shortCodeBloomFilter.mightExist(shortCode) && !mayBeNewerThanFilter(shortCode)) {
+            shortCodeBloomFilter.recordRejection();
+            return ResolvedUrl.NOT_FOUND;
+        }
+        return urlResolutionCache.get(shortCode, this::loadResolution);
+    }
+
+    /**
+     * A code the filter has not seen may still have been created on another
+     * node since the filter's last sync. An allocated code decodes to its ID,
+     * and only IDs near those leased so far can exist. Random codes cannot be
+     * told apart from probes, so the filter's answer stands: a random code
+     * created on another node may 404 here until the next filter sync.
+     */
+    private boolean mayBeNewerThanFilter(String shortCode) {
+        return !"random".equalsIgnoreCase(shortCodeStrategy) && shortCodeAllocator.mayHaveIssued(shortCode);
+    }
+
+    private ResolvedUrl loadResolution(String shortCode) {
+        ResolvedUrl indexed = shortCodeIndexService.lookup(shortCode);
+        if (indexed != null) {
+            return indexed;
+        }
+        return urlRepository.findByShortCode(shortCode)
+                .map(ResolvedUrl::of)
+                .orElse(ResolvedUrl.NOT_FOUND);
     }
 
     @Transactional(readOnly = true)
@@ -83,31 +191,29 @@ public class UrlService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional
+    /**
+     * Adds one click to the URL's in-memory delta; {@link ClickCounter} flushes
+     * it to total_clicks periodically.
+     */
     public void incrementClickCount(Long urlId) {
-        Url url = urlRepository.findById(urlId)
-                .orElseThrow(() -> new ResourceNotFoundException("URL not found"));
-        url.setTotalClicks(url.getTotalClicks() + 1);
-        urlRepository.save(url);
+        clickCounter.increment(urlId);
     }
 
-    @Transactional
-    public String getOriginalUrlAndTrack(String shortCode, String ipAddress, String userAgent, String referrer,
+    public ResolvedUrl resolveAndTrack(String shortCode, String ipAddress, String userAgent, String referrer,
             AnalyticsService analyticsService) {
-        Url url = urlRepository.findByShortCode(shortCode)
-                .orElseThrow(() -> new ResourceNotFoundException("Short URL not found"));
+        ResolvedUrl url = lookupShortCode(shortCode);
 
-        if (!url.isActive()) {
+        if (!url.active()) {
             throw new ResourceNotFoundException("This URL has been deactivated");
         }
 
-        // Track analytics (this will participate in the current transaction)
-        analyticsService.trackClick(url.getId(), ipAddress, userAgent, referrer);
+        // Queue the click; it is written asynchronously after the redirect is sent
+        analyticsService.trackClick(url.urlId(), ipAddress, userAgent, referrer);
 
-        return url.getOriginalUrl();
+        return url;
     }
 
-    private UrlResponse mapToResponse(Url url) {
+    UrlResponse mapToResponse(Url url) {
         UrlResponse response = new UrlResponse();
         response.setId(url.getId());
         response.setOriginalUrl(url.getOriginalUrl());
@@ -115,12 +221,38 @@ public class UrlService {
         response.setShortUrl(baseUrl + "/" + url.getShortCode());
         response.setTotalClicks(url.getTotalClicks());
         response.setCreatedAt(url.getCreatedAt());
+        response.setRedirectPolicy(url.getRedirectPolicy());
+        response.setCacheMaxAge(url.getCacheMaxAge());
+        response.setEstimatedCachedClicks(
+                cachedClickEstimator.estimate(url.getTotalClicks(), url.getCacheMaxAge()));
         return response;
     }
 
+    /**
+     * Changes how an existing link redirects. Clients that already cached the
+     * old redirect keep using it until their copy's max-age runs out.
+     */
+    @Transactional
+    public UrlResponse updateRedirectSettings(Url url, RedirectPolicy redirectPolicy, Integer cacheMaxAge) {
+        url.setRedirectPolicy(redirectPolicy);
+        url.setCacheMaxAge(cacheMaxAge);
+        return mapToResponse(urlRepository.save(url));
+    }
+
     @Transactional(readOnly = true)
     public Url getUrlByShortCode(String shortCode) {
-        return urlRepository.findByShortCode(shortCode)
-                .orElseThrow(() -> new ResourceNotFoundException("Short URL not found"));
+        ResolvedUrl cached = urlResolutionCache.getIfPresent(shortCode);
+        if (cached != null && !cached.exists()) {
+            throw new ResourceNotFoundException("Short URL not found");
+        }
+
+        Url url = urlRepository.findByShortCode(shortCode).orElse(null);
+        if (url == null) {
+            urlResolutionCache.put(shortCode, ResolvedUrl.NOT_FOUND);
+            throw new ResourceNotFoundException("Short URL not found");
+        }
+
+        urlResolutionCache.put(shortCode, ResolvedUrl.of(url));
+        return url;
     }
 }
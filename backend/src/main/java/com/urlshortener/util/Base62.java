@@ -0,0 +1,106 @@
+package com.urlshortener.util;
+
+/**
+ * Fixed-width base62 over the short code alphabet. Digit values follow the
+ * alphabet order, so "a" is 0 and "9" is 61.
+ */
+public final class Base62 {
+
+    public static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    public static final int RADIX = 62;
+
+    /** Longest code whose full keyspace (62^n) still fits in a signed long. */
+    public static final int MAX_LENGTH = 10;
+
+    private static final long[] POWERS = new long[MAX_LENGTH + 1];
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i <= MAX_LENGTH; i++) {
+            POWERS[i] = POWERS[i - 1] * RADIX;
+        }
+        java.util.Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < RADIX; i++) {
+            DIGITS[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    /** Number of distinct codes of the given length, i.e. 62^length. */
+    public static long keyspace(int length) {
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Short code length must be between 1 and " + MAX_LENGTH);
+        }
+        return POWERS[length];
+    }
+
+    /** Encodes {@code value} as exactly {@code length} digits, left-padded with "a". */
+    public static String encode(long value, int length) {
+        if (value < 0 || value >= keyspace(length)) {
+            throw new IllegalArgumentException("Value " + value + " does not fit in " + length + " base62 digits");
+        }
+        char[] code = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            code[i] = ALPHABET.charAt((int) (value % RADIX));
+            value /= RADIX;
+        }
+        return new String(code);
+    }
+
+    /** Inverse of {@link #encode(long, int)}; returns -1 if {@code code} is not {@code length} base62 digits. */
+    public static long decode(String code, int length) {
+        if (code.length() != length || length > MAX_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = digit(code.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * RADIX + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Packs a code of up to {@link #MAX_LENGTH} characters into a positive
+     * long using bijective numeration (digits 1..62), so codes of different
+     * lengths never share a key. Returns 0 if the code cannot be packed.
+     */
+    public static long pack(String code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return 0;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = digit(code.charAt(i));
+            if (digit < 0) {
+                return 0;
+            }
+            key = key * RADIX + digit + 1;
+        }
+        return key;
+    }
+
+    /** Inverse of {@link #pack(String)}. */
+    public static String unpack(long key) {
+        char[] code = new char[MAX_LENGTH];
+        int start = MAX_LENGTH;
+        while (key > 0) {
+            long digit = (key - 1) % RADIX;
+            code[--start] = ALPHABET.charAt((int) digit);
+            key = (key - 1) / RADIX;
+        }
+        return new String(code, start, MAX_LENGTH - start);
+    }
+
+    /** Returns the digit value of {@code c}, or -1 if it is not in the alphabet. */
+    public static int digit(char c) {
+        return c < 128 ? DIGITS[c] : -1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.urlshortener.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Client address of a request: the socket address, never a header the client
+ * could set. Behind a reverse proxy, Tomcat's {@code RemoteIpValve}
+ * ({@code server.forward-headers-strategy: native}) replaces it with the
+ * {@code X-Forwarded-For} address, but only for requests that come from a
+ * trusted proxy ({@code server.tomcat.remoteip.internal-proxies}).
+ */
+public final class ClientIpResolver {
+
+    private ClientIpResolver() {
+    }
+
+    public static String resolve(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,103 @@
+package com.urlshortener.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keyed bijection on [0, domain). A balanced Feistel network permutes the
+ * smallest even-width bit space covering the domain, and cycle-walking maps
+ * results that land outside the domain back into it.
+ * <p>
+ * This only makes allocation order unguessable at a glance; it is not meant
+ * to resist an attacker who collects many codes.
+ */
+public final class FeistelPermutation {
+
+    private static final int ROUNDS = 6;
+
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public FeistelPermutation(long domain, String key) {
+        if (domain < 2 || domain > (1L << 62)) {
+            throw new IllegalArgumentException("Domain must be between 2 and 2^62");
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+        this.domain = domain;
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+
+        ByteBuffer digest = ByteBuffer.wrap(sha512(key));
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = digest.getLong();
+        }
+    }
+
+    public long domain() {
+        return domain;
+    }
+
+    public long permute(long value) {
+        if (value < 0 || value >= domain) {
+            throw new IllegalArgumentException("Value " + value + " is outside [0, " + domain + ")");
+        }
+        long result = encrypt(value);
+        while (result >= domain) {
+            result = encrypt(result);
+        }
+        return result;
+    }
+
+    /** Inverse of {@link #permute(long)}. */
+    public long unpermute(long value) {
+        if (value < 0 || value >= domain) {
+            throw new IllegalArgumentException("Value " + value + " is outside [0, " + domain + ")");
+        }
+        long result = decrypt(value);
+        while (result >= domain) {
+            result = decrypt(result);
+        }
+        return result;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            long previous = right ^ (mix(left ^ roundKeys[i]) & halfMask);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static byte[] sha512(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-512").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-512 not available", e);
+        }
+    }
+}
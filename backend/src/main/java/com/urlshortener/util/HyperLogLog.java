@@ -0,0 +1,136 @@
+package com.urlshortener.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog distinct-count sketch with 2^12 one-byte registers. Sketches
+ * of the same precision merge by taking the register-wise maximum, so a
+ * range of days, or the sketches written by several nodes, combine into one
+ * estimate without seeing the original values.
+ * <p>
+ * The relative standard error is 1.04 / sqrt(4096), about 1.6%: two out of
+ * three estimates are within 1.6% of the true count and nineteen out of
+ * twenty within 3.3%. Below about 10,000 distinct values the estimate comes
+ * from linear counting on the empty registers and is tighter than that.
+ * <p>
+ * Serialized sketches are sparse (index, value pairs) while few registers
+ * are set and a plain register array once that is smaller. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final double RELATIVE_STANDARD_ERROR = 1.04 / Math.sqrt(1 << PRECISION);
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final byte SPARSE = 1;
+    private static final byte DENSE = 2;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /** Adds a value by its 64-bit hash; see {@link #hash(String, String)}. */
+    public void add(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Position of the first set bit in the remaining bits; the sentinel caps it at 64 - p + 1
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double raw = ALPHA * REGISTERS * REGISTERS / sum;
+        if (raw <= 2.5 * REGISTERS && zeros > 0) {
+            return Math.round(REGISTERS * Math.log((double) REGISTERS / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    public byte[] toBytes() {
+        int set = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                set++;
+            }
+        }
+        if (set * 3 >= REGISTERS) {
+            ByteBuffer dense = ByteBuffer.allocate(2 + REGISTERS);
+            dense.put(DENSE).put((byte) PRECISION).put(registers);
+            return dense.array();
+        }
+        ByteBuffer sparse = ByteBuffer.allocate(2 + set * 3);
+        sparse.put(SPARSE).put((byte) PRECISION);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                sparse.putShort((short) i).put(registers[i]);
+            }
+        }
+        return sparse.array();
+    }
+
+    /** Reads a sketch written by {@link #toBytes()}; an empty array is an empty sketch. */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte encoding = buffer.get();
+        if (buffer.get() != PRECISION) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog precision");
+        }
+        if (encoding == DENSE) {
+            buffer.get(sketch.registers);
+        } else if (encoding == SPARSE) {
+            while (buffer.hasRemaining()) {
+                int index = Short.toUnsignedInt(buffer.getShort());
+                sketch.registers[index] = buffer.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown HyperLogLog encoding " + encoding);
+        }
+        return sketch;
+    }
+
+    /**
+     * Hash of a visitor, identified by IP address and user agent. Persisted
+     * sketches depend on it, so it must never change: FNV-1a over both
+     * strings' UTF-16 units with a separator, then a SplitMix64 finalizer.
+     */
+    public static long hash(String ipAddress, String userAgent) {
+        long h = 0xcbf29ce484222325L;
+        h = fnv(h, ipAddress);
+        h = (h ^ 0xFFFF) * 0x100000001b3L;
+        h = fnv(h, userAgent);
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    private static long fnv(long h, String value) {
+        if (value == null) {
+            return h;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,141 @@
+package com.urlshortener.util;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZXing {@link BitMatrix} as a 1-bit grayscale PNG with nothing but
+ * {@code java.util.zip}: no {@code BufferedImage}, no ImageIO, no AWT. A QR
+ * code scaled to a few hundred pixels repeats each row of modules many times,
+ * so a row equal to the one above is stored with the PNG "Up" filter as
+ * zeros and is neither packed again nor costly to compress. Deflaters and
+ * scanline buffers are pooled across calls.
+ */
+public final class QrCodePngWriter {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte FILTER_NONE = 0;
+    private static final byte FILTER_UP = 2;
+
+    // A Deflater holds native zlib state; a few are kept rather than one made per image
+    private static final BlockingQueue<Buffers> POOL = new ArrayBlockingQueue<>(8);
+
+    private QrCodePngWriter() {
+    }
+
+    /** Dark modules (set bits) become black pixels, the rest white. */
+    public static byte[] write(BitMatrix matrix) {
+        Buffers buffers = POOL.poll();
+        if (buffers == null) {
+            buffers = new Buffers();
+        }
+        try {
+            return write(matrix, buffers);
+        } finally {
+            if (!POOL.offer(buffers)) {
+                buffers.deflater.end();
+            }
+        }
+    }
+
+    private static byte[] write(BitMatrix matrix, Buffers buffers) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int stride = 1 + (width + 7) / 8;
+        byte[] raw = buffers.raw(stride * height);
+
+        BitArray row = new BitArray(width);
+        BitArray previous = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            int offset = y * stride;
+            if (y > 0 && row.equals(previous)) {
+                raw[offset] = FILTER_UP;
+                Arrays.fill(raw, offset + 1, offset + stride, (byte) 0);
+            } else {
+                raw[offset] = FILTER_NONE;
+                pack(row, width, raw, offset + 1);
+                BitArray swap = previous;
+                previous = row;
+                row = swap;
+            }
+        }
+
+        Deflater deflater = buffers.deflater;
+        deflater.reset();
+        deflater.setInput(raw, 0, stride * height);
+        deflater.finish();
+        byte[] compressed = buffers.compressed;
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = buffers.compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        ByteBuffer png = ByteBuffer.allocate(SIGNATURE.length + 12 + 13 + 12 + length + 12);
+        png.put(SIGNATURE);
+        ByteBuffer header = ByteBuffer.allocate(13)
+                .putInt(width)
+                .putInt(height)
+                .put((byte) 1)   // bit depth
+                .put((byte) 0)   // grayscale
+                .put((byte) 0)   // deflate
+                .put((byte) 0)   // adaptive filtering
+                .put((byte) 0);  // no interlace
+        chunk(png, IHDR, header.array(), 13);
+        chunk(png, IDAT, compressed, length);
+        chunk(png, IEND, compressed, 0);
+        return png.array();
+    }
+
+    // Grayscale 1-bit: 0 is black, so dark modules are cleared bits, most significant first
+    private static void pack(BitArray row, int width, byte[] out, int offset) {
+        int bits = 0;
+        for (int x = 0; x < width; x++) {
+            bits = (bits << 1) | (row.get(x) ? 0 : 1);
+            if ((x & 7) == 7) {
+                out[offset++] = (byte) bits;
+                bits = 0;
+            }
+        }
+        int rest = width & 7;
+        if (rest != 0) {
+            out[offset] = (byte) ((bits << (8 - rest)) | (0xff >>> rest));
+        }
+    }
+
+    private static void chunk(ByteBuffer png, byte[] type, byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data, 0, length);
+        png.putInt(length).put(type).put(data, 0, length).putInt((int) crc.getValue());
+    }
+
+    private static final class Buffers {
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] raw = new byte[0];
+        byte[] compressed = new byte[4096];
+
+        byte[] raw(int size) {
+            if (raw.length < size) {
+                raw = new byte[size];
+            }
+            return raw;
+        }
+    }
+}
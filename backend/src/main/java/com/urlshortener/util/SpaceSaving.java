@@ -0,0 +1,150 @@
+package com.urlshortener.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Space-Saving heavy-hitter summary: at most {@code capacity} counters, so
+ * its size does not grow with the number of values offered. Any value seen
+ * more than total / capacity times is guaranteed to be in it. Each counter
+ * overestimates its value's true count by at most its {@code error}.
+ * <p>
+ * Summaries merge by adding counters and treating a value missing from a
+ * full summary as having that summary's minimum count (Agarwal et al.,
+ * "Mergeable Summaries"), then keeping the largest {@code capacity}. Values
+ * are cut to {@link #MAX_VALUE_LENGTH} characters so a serialized summary
+ * stays bounded too. Not thread-safe.
+ */
+public final class SpaceSaving {
+
+    public static final int MAX_VALUE_LENGTH = 256;
+
+    /** A tracked value; the true count lies in [count - error, count]. */
+    public record Item(String value, long count, long error) {
+    }
+
+    private static final class Counter {
+        long count;
+        long error;
+
+        Counter(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Space-Saving needs at least one counter");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String value) {
+        offer(value, 1);
+    }
+
+    public void offer(String value, long weight) {
+        String key = value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+        } else if (counters.size() < capacity) {
+            counters.put(key, new Counter(weight, 0));
+        } else {
+            // Replace the smallest counter; the newcomer inherits its count as possible overestimate
+            Map.Entry<String, Counter> min = minEntry();
+            counters.remove(min.getKey());
+            counters.put(key, new Counter(min.getValue().count + weight, min.getValue().count));
+        }
+    }
+
+    public void merge(SpaceSaving other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+        Set<String> keys = new HashSet<>(counters.keySet());
+        keys.addAll(other.counters.keySet());
+        List<Map.Entry<String, Counter>> merged = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Counter mine = counters.get(key);
+            Counter theirs = other.counters.get(key);
+            long count = (mine != null ? mine.count : thisMin) + (theirs != null ? theirs.count : otherMin);
+            long error = (mine != null ? mine.error : thisMin) + (theirs != null ? theirs.error : otherMin);
+            merged.add(Map.entry(key, new Counter(count, error)));
+        }
+        merged.sort(Comparator.comparingLong((Map.Entry<String, Counter> e) -> e.getValue().count).reversed());
+        counters.clear();
+        for (Map.Entry<String, Counter> entry : merged.subList(0, Math.min(capacity, merged.size()))) {
+            counters.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** The {@code limit} largest counters, largest first. */
+    public List<Item> top(int limit) {
+        return counters.entrySet().stream()
+                .map(e -> new Item(e.getKey(), e.getValue().count, e.getValue().error))
+                .sorted(Comparator.comparingLong(Item::count).reversed().thenComparing(Item::value))
+                .limit(limit)
+                .toList();
+    }
+
+    public byte[] toBytes() {
+        List<byte[]> values = new ArrayList<>(counters.size());
+        int size = 8;
+        for (String value : counters.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            values.add(bytes);
+            size += 4 + bytes.length + 16;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).putInt(capacity).putInt(counters.size());
+        int i = 0;
+        for (Counter counter : counters.values()) {
+            byte[] bytes = values.get(i++);
+            buffer.putInt(bytes.length).put(bytes).putLong(counter.count).putLong(counter.error);
+        }
+        return buffer.array();
+    }
+
+    /** Reads a summary written by {@link #toBytes()}; an empty array is an empty summary of {@code capacity}. */
+    public static SpaceSaving fromBytes(byte[] bytes, int capacity) {
+        if (bytes == null || bytes.length == 0) {
+            return new SpaceSaving(capacity);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        SpaceSaving summary = new SpaceSaving(buffer.getInt());
+        int entries = buffer.getInt();
+        for (int i = 0; i < entries; i++) {
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            summary.counters.put(new String(value, StandardCharsets.UTF_8),
+                    new Counter(buffer.getLong(), buffer.getLong()));
+        }
+        return summary;
+    }
+
+    /** The count a value missing from this summary may have had: the smallest counter once full, else 0. */
+    private long minCount() {
+        return counters.size() < capacity ? 0 : minEntry().getValue().count;
+    }
+
+    private Map.Entry<String, Counter> minEntry() {
+        Map.Entry<String, Counter> min = null;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (min == null || entry.getValue().count < min.getValue().count) {
+                min = entry;
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,330 @@
+package com.urlshortener.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.urlshortener.ingest.ClickCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes per-link click count deltas to logged-in users over Server-Sent
+ * Events. It is fed by {@link ClickCounter}: every committed flush is handed
+ * to the broker's own routing thread, which looks up the links' owners
+ * (possibly in the database, so never on the flushing thread) and adds the
+ * deltas to their subscriptions. There they accumulate per link until the
+ * next tick sends them as one {@code clicks} event. A user therefore gets at
+ * most one update per interval, however busy their links are.
+ * <p>
+ * An idle subscription is an async request plus a small map; no thread is
+ * held. Sends run on virtual threads, one at a time per subscription, so a
+ * slow client only delays itself. A subscription is evicted when a send is
+ * stuck for longer than {@code slow-consumer-timeout} or when its pending
+ * deltas cover more than {@code max-pending-links} links; the client then
+ * reconnects and reloads its totals.
+ * <p>
+ * Deltas come only from the clicks this node redirected; streams on other
+ * nodes do not see them.
+ */
+@Component
+public class LiveClickBroker {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveClickBroker.class);
+
+    private static final String FIND_OWNERS = "SELECT id, user_id FROM urls WHERE id = ANY(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long heartbeatNanos;
+    private final long slowConsumerNanos;
+    private final long emitterTimeoutMillis;
+    private final int maxPendingLinks;
+    private final int maxSubscribers;
+
+    private final Map<Long, Set<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    // A link never changes owner; links of users without subscribers are looked up once and kept
+    private final Cache<Long, Long> ownerByUrl;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    // One thread, so flushes are routed in order and owner lookups never run concurrently
+    private final ExecutorService router = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-click-router");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter evictedCounter;
+
+    public LiveClickBroker(
+            JdbcTemplate jdbcTemplate,
+            ClickCounter clickCounter,
+            MeterRegistry meterRegistry,
+            @Value("${app.analytics.live.heartbeat:20s}") Duration heartbeat,
+            @Value("${app.analytics.live.slow-consumer-timeout:10s}") Duration slowConsumerTimeout,
+            @Value("${app.analytics.live.timeout:30m}") Duration emitterTimeout,
+            @Value("${app.analytics.live.max-pending-links:1000}") int maxPendingLinks,
+            @Value("${app.analytics.live.max-subscribers:10000}") int maxSubscribers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.slowConsumerNanos = slowConsumerTimeout.toNanos();
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        this.maxPendingLinks = maxPendingLinks;
+        this.maxSubscribers = maxSubscribers;
+        this.ownerByUrl = Caffeine.newBuilder().maximumSize(100_000).build();
+        this.evictedCounter = meterRegistry.counter("clicks.live.evicted");
+        Gauge.builder("clicks.live.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open live click streams on this node")
+                .register(meterRegistry);
+        clickCounter.addFlushListener(this::publish);
+    }
+
+    /**
+     * Opens a stream of the given user's click deltas, or returns
+     * {@code null} when this node already holds {@code max-subscribers}.
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = newEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, emitter, System.nanoTime());
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribersByUser.compute(userId, (id, subscribers) -> {
+            Set<Subscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        // Commits the response headers so the client knows it is connected
+        senders.execute(() -> send(subscriber, null));
+        return emitter;
+    }
+
+    /** Flush listener: queues a committed flush for routing and returns at once. */
+    void publish(Map<Long, Long> deltas) {
+        if (subscribersByUser.isEmpty()) {
+            return;
+        }
+        router.execute(() -> {
+            try {
+                route(deltas);
+            } catch (RuntimeException e) {
+                log.warn("Could not route {} click deltas to live streams", deltas.size(), e);
+            }
+        });
+    }
+
+    /** Adds a committed flush to the subscriptions of the links' owners. */
+    void route(Map<Long, Long> deltas) {
+        if (subscribersByUser.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> owners = owners(deltas.keySet());
+        deltas.forEach((urlId, delta) -> {
+            Long userId = owners.get(urlId);
+            Set<Subscriber> subscribers = userId == null ? null : subscribersByUser.get(userId);
+            if (subscribers == null) {
+                return;
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.offer(urlId, delta, maxPendingLinks)) {
+                    evict(subscriber, "more than " + maxPendingLinks + " links pending");
+                }
+            }
+        });
+    }
+
+    /** Sends every subscription its pending deltas, or a heartbeat when it has been quiet. */
+    @Scheduled(fixedDelayString = "${app.analytics.live.interval-ms:1000}")
+    public void tick() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> subscribers : subscribersByUser.values()) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.stuckSince(now, slowConsumerNanos)) {
+                    evict(subscriber, "send blocked for more than " + slowConsumerNanos / 1_000_000 + " ms");
+                    continue;
+                }
+                Map<Long, Long> frame = subscriber.takeFrame(now, heartbeatNanos);
+                if (frame != null) {
+                    senders.execute(() -> send(subscriber, frame));
+                }
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        router.shutdownNow();
+        for (Set<Subscriber> subscribers : subscribersByUser.values()) {
+            for (Subscriber subscriber : subscribers) {
+                remove(subscriber);
+                senders.execute(subscriber.emitter::complete);
+            }
+        }
+        senders.shutdown();
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void send(Subscriber subscriber, Map<Long, Long> frame) {
+        try {
+            if (frame == null) {
+                subscriber.emitter.send(SseEmitter.event().comment("connected"));
+            } else if (frame.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else {
+                subscriber.emitter.send(SseEmitter.event().name("clicks").data(frame, MediaType.APPLICATION_JSON));
+            }
+            subscriber.finishSend(System.nanoTime());
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter completed meanwhile
+            remove(subscriber);
+        }
+    }
+
+    private void evict(Subscriber subscriber, String reason) {
+        if (remove(subscriber)) {
+            evictedCounter.increment();
+            log.debug("Evicted live click stream of user {}: {}", subscriber.userId, reason);
+            // complete() waits for a blocked send to release the emitter, so not on this thread
+            senders.execute(subscriber.emitter::complete);
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        boolean[] removed = new boolean[1];
+        // Atomic per user, so a concurrent subscribe never adds to a set that is being dropped
+        subscribersByUser.computeIfPresent(subscriber.userId, (userId, subscribers) -> {
+            removed[0] = subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    private Map<Long, Long> owners(Set<Long> urlIds) {
+        Map<Long, Long> owners = new HashMap<>(ownerByUrl.getAllPresent(urlIds));
+        if (owners.size() < urlIds.size()) {
+            List<Long> missing = new ArrayList<>(urlIds.size() - owners.size());
+            for (Long urlId : urlIds) {
+                if (!owners.containsKey(urlId)) {
+                    missing.add(urlId);
+                }
+            }
+            jdbcTemplate.query(FIND_OWNERS, ps -> ps.setArray(1,
+                    ps.getConnection().createArrayOf("bigint", missing.toArray())), rs -> {
+                        owners.put(rs.getLong(1), rs.getLong(2));
+                    });
+            for (Long urlId : missing) {
+                Long userId = owners.get(urlId);
+                if (userId != null) {
+                    ownerByUrl.put(urlId, userId);
+                }
+            }
+        }
+        return owners;
+    }
+
+    /** One open stream: the deltas not sent yet and whether a send is in flight. */
+    static final class Subscriber {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private Map<Long, Long> pending = new HashMap<>();
+        private long sendStartedAt;
+        private long lastSentAt;
+        private boolean sending;
+
+        // Starts out sending the initial comment
+        Subscriber(Long userId, SseEmitter emitter, long now) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.sending = true;
+            this.sendStartedAt = now;
+        }
+
+        /** Adds a delta; {@code false} if that would exceed {@code maxLinks} pending links. */
+        boolean offer(Long urlId, long delta, int maxLinks) {
+            lock.lock();
+            try {
+                if (pending.size() >= maxLinks && !pending.containsKey(urlId)) {
+                    return false;
+                }
+                pending.merge(urlId, delta, Long::sum);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * The deltas to send now, an empty map for a heartbeat, or
+         * {@code null} if a send is still in flight or there is nothing to send.
+         */
+        Map<Long, Long> takeFrame(long now, long heartbeatNanos) {
+            lock.lock();
+            try {
+                if (sending || (pending.isEmpty() && now - lastSentAt < heartbeatNanos)) {
+                    return null;
+                }
+                Map<Long, Long> frame = pending;
+                pending = new HashMap<>();
+                sending = true;
+                sendStartedAt = now;
+                return frame;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void finishSend(long now) {
+            lock.lock();
+            try {
+                sending = false;
+                lastSentAt = now;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean stuckSince(long now, long timeoutNanos) {
+            lock.lock();
+            try {
+                return sending && now - sendStartedAt > timeoutNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.urlshortener.web;
+
+import com.urlshortener.security.AuthenticatedUser;
+import com.urlshortener.security.JwtAuthFilter;
+import com.urlshortener.util.ClientIpResolver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits the routes an abusive client can use to load the database:
+ * redirects and sign-in per client IP, link creation per user. It runs ahead
+ * of the redirect fast path and Spring Security, so a rejected request costs
+ * a bucket lookup and a 429 with {@code Retry-After}. Other requests pass
+ * untouched.
+ * <p>
+ * Buckets are per node; with several nodes behind a balancer a client gets up
+ * to the configured rate on each.
+ */
+public class RateLimitFilter implements Filter {
+
+    public enum Route {
+        /** {@code GET /{shortCode}}, per IP. */
+        REDIRECT,
+        /** {@code POST /api/auth/login} and {@code /api/auth/signup}, per IP. */
+        AUTH,
+        /** {@code POST /api/url/shorten}, per user, or per IP without a valid token. */
+        SHORTEN
+    }
+
+    private final RateLimiter limiter;
+    private final Map<Route, RateLimiter.Limit> limits;
+    private final JwtAuthFilter jwtAuthFilter;
+    private final Map<Route, Counter> rejectedCounters = new EnumMap<>(Route.class);
+
+    /** Routes missing from {@code limits} are not limited. */
+    public RateLimitFilter(RateLimiter limiter, Map<Route, RateLimiter.Limit> limits, JwtAuthFilter jwtAuthFilter,
+            MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.limits = new EnumMap<>(limits);
+        this.jwtAuthFilter = jwtAuthFilter;
+        for (Route route : Route.values()) {
+            rejectedCounters.put(route, meterRegistry.counter("http.rate-limit.rejected",
+                    "route", route.name().toLowerCase()));
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        Route route = routeOf(request);
+        RateLimiter.Limit limit = route == null ? null : limits.get(route);
+        if (limit == null) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        long waitNanos = limiter.tryAcquire(keyOf(route, request), limit);
+        if (waitNanos > 0) {
+            rejectedCounters.get(route).increment();
+            tooManyRequests((HttpServletResponse) res, waitNanos);
+            return;
+        }
+        chain.doFilter(req, res);
+    }
+
+    static Route routeOf(HttpServletRequest request) {
+        if (RedirectFastPathFilter.shortCodeOf(request) != null) {
+            return Route.REDIRECT;
+        }
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return switch (path) {
+            case "/api/auth/login", "/api/auth/signup" -> Route.AUTH;
+            case "/api/url/shorten" -> Route.SHORTEN;
+            default -> null;
+        };
+    }
+
+    private String keyOf(Route route, HttpServletRequest request) {
+        if (route == Route.SHORTEN) {
+            String authHeader = request.getHeader("Authorization");
+            AuthenticatedUser user = authHeader != null && authHeader.startsWith("Bearer ")
+                    ? jwtAuthFilter.authenticate(authHeader.substring(7))
+                    : null;
+            if (user != null) {
+                return route.ordinal() + ":user:" + user.id();
+            }
+        }
+        return route.ordinal() + ":" + ClientIpResolver.resolve(request);
+    }
+
+    // Same body as GlobalExceptionHandler produces for TooManyRequestsException
+    private static void tooManyRequests(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":429,\"error\":\"Too Many Requests\",\"message\":\"Rate limit exceeded, retry in "
+                + retryAfterSeconds + " s\"}");
+    }
+}
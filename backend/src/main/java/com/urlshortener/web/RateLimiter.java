@@ -0,0 +1,87 @@
+package com.urlshortener.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by client. A bucket is a single {@link AtomicLong}
+ * holding the time at which it will be full again (the generic cell rate
+ * algorithm), so taking a token is one compare-and-set, without a lock or an
+ * allocation. Buckets live in a bounded Caffeine map, which is striped
+ * internally. A bucket left alone for its whole period is full again, so
+ * dropping it after {@code idleTimeout} loses nothing.
+ */
+public class RateLimiter {
+
+    /** {@code capacity} requests per {@code period}, refilled evenly, with bursts up to {@code capacity}. */
+    public record Limit(int capacity, Duration period) {
+
+        public Limit {
+            if (capacity < 1 || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("A rate limit needs a positive capacity and period");
+            }
+        }
+    }
+
+    private final Cache<String, TokenBucket> buckets;
+    private final LongSupplier clock;
+
+    /** {@code idleTimeout} must be at least the longest period of any limit used. */
+    public RateLimiter(long maxBuckets, Duration idleTimeout, LongSupplier clock) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                // Maintenance is a few pointer updates; a handoff to another thread costs more
+                .executor(Runnable::run)
+                .build();
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}, created with {@code limit}
+     * on first use. Returns 0 if the request may proceed, otherwise the
+     * nanoseconds until a token will be available.
+     */
+    public long tryAcquire(String key, Limit limit) {
+        TokenBucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            bucket = buckets.get(key, k -> new TokenBucket(limit));
+        }
+        return bucket.tryAcquire(clock.getAsLong());
+    }
+
+    public long size() {
+        return buckets.estimatedSize();
+    }
+
+    static final class TokenBucket {
+
+        private final long intervalNanos;
+        private final long periodNanos;
+        // When the bucket is full again; anything in the past means full
+        private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(Limit limit) {
+            this.periodNanos = limit.period().toNanos();
+            this.intervalNanos = Math.max(1, periodNanos / limit.capacity());
+        }
+
+        long tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long excess = next - now - periodNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.urlshortener.web;
+
+import com.urlshortener.cache.ResolvedUrl;
+import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.UrlService;
+import com.urlshortener.util.Base62;
+import com.urlshortener.util.ClientIpResolver;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Serves {@code GET /{shortCode}} before Spring Security and the
+ * DispatcherServlet see the request. The redirect is public and stateless,
+ * so none of the security filters, CORS processing or handler mapping has
+ * anything to contribute; this filter resolves the code, queues the click
+ * and writes the redirect itself.
+ * <p>
+ * Anything that is not a single base62 path segment falls through to the
+ * normal chain, where {@code UrlController.redirectUrl} still handles
+ * redirects when the fast path is switched off.
+ */
+public class RedirectFastPathFilter implements Filter {
+
+    // Single-segment paths that belong to the application rather than to short codes
+    private static final Set<String> RESERVED_PATHS = Set.of("error", "actuator");
+
+    private final UrlService urlService;
+    private final AnalyticsService analyticsService;
+
+    public RedirectFastPathFilter(UrlService urlService, AnalyticsService analyticsService) {
+        this.urlService = urlService;
+        this.analyticsService = analyticsService;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        String shortCode = shortCodeOf(request);
+        if (shortCode == null) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        HttpServletResponse response = (HttpServletResponse) res;
+        ResolvedUrl url = urlService.resolve(shortCode);
+        if (!url.exists()) {
+            notFound(response, "Short URL not found");
+            return;
+        }
+        if (!url.active()) {
+            notFound(response, "This URL has been deactivated");
+            return;
+        }
+
+        analyticsService.trackClick(url.urlId(), ClientIpResolver.resolve(request),
+                request.getHeader("User-Agent"), request.getHeader("Referer"));
+
+        Redirects.send(response, url);
+    }
+
+    /** Returns the short code addressed by the request, or {@code null} if it is not a redirect. */
+    static String shortCodeOf(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+
+        String uri = request.getRequestURI();
+        int start = request.getContextPath().length() + 1;
+        int length = uri.length() - start;
+        if (length < 1 || length > Base62.MAX_LENGTH || uri.charAt(start - 1) != '/') {
+            return null;
+        }
+        for (int i = start; i < uri.length(); i++) {
+            if (Base62.digit(uri.charAt(i)) < 0) {
+                return null;
+            }
+        }
+
+        String shortCode = uri.substring(start);
+        return RESERVED_PATHS.contains(shortCode) ? null : shortCode;
+    }
+
+    // Same body as GlobalExceptionHandler produces for ResourceNotFoundException
+    private static void notFound(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":404,\"error\":\"Not Found\",\"message\":\"" + message + "\"}");
+    }
+}
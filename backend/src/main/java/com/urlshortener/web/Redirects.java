@@ -0,0 +1,63 @@
+package com.urlshortener.web;
+
+import com.urlshortener.cache.ResolvedUrl;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a link's redirect according to its {@code RedirectPolicy} and
+ * cache max-age. Shared by the fast-path filter and {@code UrlController}.
+ */
+public final class Redirects {
+
+    private static final String NO_STORE = "no-store";
+
+    private Redirects() {
+    }
+
+    public static void send(HttpServletResponse response, ResolvedUrl url) {
+        response.setStatus(url.redirectPolicy().status());
+        response.setHeader(HttpHeaders.LOCATION, location(url.originalUrl()));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(url.cacheMaxAge()));
+    }
+
+    /**
+     * The URL with every byte outside printable ASCII percent-encoded as
+     * UTF-8; header values are sent as ISO-8859-1, so a raw non-ASCII URL
+     * would be mangled. Existing escapes and ASCII characters are kept.
+     */
+    static String location(String url) {
+        int i = 0;
+        while (i < url.length() && isPrintableAscii(url.charAt(i))) {
+            i++;
+        }
+        if (i == url.length()) {
+            return url;
+        }
+        StringBuilder encoded = new StringBuilder(url.length() + 16).append(url, 0, i);
+        for (byte b : url.substring(i).getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if (isPrintableAscii((char) c)) {
+                encoded.append((char) c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static boolean isPrintableAscii(char c) {
+        return c > 0x20 && c < 0x7F;
+    }
+
+    /**
+     * Links that are not cacheable get an explicit no-store: browsers cache a
+     * bare 301 indefinitely, and every click has to reach us to be counted.
+     */
+    static String cacheControl(int maxAge) {
+        return maxAge > 0 ? "public, max-age=" + maxAge : NO_STORE;
+    }
+}
@@ -0,0 +1,52 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.util.Base62;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldNeverMissAnAddedCode() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01, 1 << 20);
+        for (long id = 0; id < 10_000; id++) {
+            filter.add(Base62.encode(id * 7919, 7));
+        }
+        for (long id = 0; id < 10_000; id++) {
+            assertTrue(filter.mightContain(Base62.encode(id * 7919, 7)));
+        }
+    }
+
+    @Test
+    void mightContain_ShouldStayNearConfiguredFalsePositiveRate() {
+        BloomFilter filter = BloomFilter.create(50_000, 0.01, 1 << 20);
+        SplittableRandom random = new SplittableRandom(7);
+        long keyspace = Base62.keyspace(7);
+        for (int i = 0; i < 50_000; i++) {
+            // Even values are added, odd ones are probed, so probes are never members
+            filter.add(Base62.encode(random.nextLong(keyspace / 2) * 2, 7));
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(Base62.encode(random.nextLong(keyspace / 2) * 2 + 1, 7))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < probes * 0.015, "False positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(50_000), 0.002);
+    }
+
+    @Test
+    void create_ShouldRespectMemoryCap() {
+        BloomFilter filter = BloomFilter.create(10_000_000, 0.001, 1024);
+
+        assertEquals(1024 * Byte.SIZE, filter.bitCount());
+        assertTrue(filter.expectedFalsePositiveRate(10_000_000) > 0.99);
+    }
+}
@@ -0,0 +1,110 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.entity.RedirectPolicy;
+import com.urlshortener.util.Base62;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShortCodeIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void putAndRemove_ShouldSurviveResizesAndBackwardShifts() {
+        ShortCodeIndex index = new ShortCodeIndex();
+        for (long id = 1; id <= 5_000; id++) {
+            assertTrue(index.put(code(id), entry(id, "https://example.com/" + id)));
+        }
+        for (long id = 1; id <= 5_000; id += 2) {
+            index.remove(code(id));
+        }
+
+        assertEquals(2_500, index.size());
+        for (long id = 1; id <= 5_000; id++) {
+            ResolvedUrl resolved = index.get(code(id));
+            if (id % 2 == 1) {
+                assertNull(resolved);
+            } else {
+                assertEquals(id, resolved.urlId());
+                assertEquals("https://example.com/" + id, resolved.originalUrl());
+            }
+        }
+    }
+
+    @Test
+    void putAndRemove_ShouldCompactReplacedRecords() {
+        ShortCodeIndex index = new ShortCodeIndex();
+        String url = "https://example.com/" + "x".repeat(1_000);
+        for (long id = 1; id <= 100; id++) {
+            index.put(code(id), entry(id, url));
+        }
+        // Redirect policy changes and deactivations, each leaving the old record behind
+        for (int round = 0; round < 500; round++) {
+            for (long id = 1; id <= 100; id++) {
+                index.put(code(id), new ResolvedUrl(id, url, true, RedirectPolicy.PERMANENT, round));
+            }
+            index.remove(code(100));
+        }
+
+        // 50,000 updates of about 1 KB each, but the store stays near one segment
+        assertTrue(index.storeBytes() <= 2L * OffHeapUrlStore.SEGMENT_SIZE, "store bytes " + index.storeBytes());
+        assertEquals(99, index.size());
+        assertEquals(499, index.get(code(7)).cacheMaxAge());
+        assertEquals(RedirectPolicy.PERMANENT, index.get(code(7)).redirectPolicy());
+        assertEquals(url, index.get(code(99)).originalUrl());
+        assertNull(index.get(code(100)));
+    }
+
+    @Test
+    void put_ShouldSkipCodesAndUrlsThatCannotBeStored() {
+        ShortCodeIndex index = new ShortCodeIndex();
+
+        assertFalse(index.put("bad-code", entry(1L, "https://example.com")));
+        assertFalse(index.put("abc", entry(2L, "https://example.com/" + "x".repeat(OffHeapUrlStore.MAX_URL_BYTES))));
+
+        assertNull(index.get("bad-code"));
+        assertNull(index.get("abc"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void snapshot_ShouldRoundTripAndAcceptNewEntries() throws Exception {
+        ShortCodeIndex index = new ShortCodeIndex();
+        for (long id = 1; id <= 3_000; id++) {
+            index.put(code(id), entry(id, "https://example.com/é/" + id));
+        }
+        index.advanceCursor(Instant.parse("2024-02-10T10:30:00.123456Z"));
+        index.remove(code(42));
+        Path snapshot = tempDir.resolve("index.snapshot");
+
+        index.writeSnapshot(snapshot);
+        ShortCodeIndex loaded = ShortCodeIndex.load(snapshot);
+
+        assertEquals(2_999, loaded.size());
+        assertEquals(Instant.parse("2024-02-10T10:30:00.123456Z"), loaded.cursor());
+        assertNull(loaded.get(code(42)));
+        assertEquals("https://example.com/é/2999", loaded.get(code(2_999)).originalUrl());
+
+        loaded.put(code(3_001), entry(3_001, "https://example.com/new"));
+        loaded.put(code(7), new ResolvedUrl(7L, "https://example.com/changed", true, RedirectPolicy.PERMANENT, 86_400));
+        assertEquals("https://example.com/new", loaded.get(code(3_001)).originalUrl());
+        assertEquals("https://example.com/changed", loaded.get(code(7)).originalUrl());
+        assertEquals(RedirectPolicy.PERMANENT, loaded.get(code(7)).redirectPolicy());
+        assertEquals(86_400, loaded.get(code(7)).cacheMaxAge());
+        assertEquals(3_000, loaded.size());
+    }
+
+    private static ResolvedUrl entry(long id, String url) {
+        return new ResolvedUrl(id, url, true);
+    }
+
+    private static String code(long id) {
+        return Base62.encode(id, 7);
+    }
+}
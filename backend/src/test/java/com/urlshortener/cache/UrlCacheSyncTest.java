@@ -0,0 +1,52 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.entity.RedirectPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class UrlCacheSyncTest {
+
+    private static final Instant STARTED = Instant.parse("2024-02-10T10:00:00Z");
+    private static final Instant FIRST_SYNC = Instant.parse("2024-02-10T10:00:02Z");
+
+    private final UrlChangeFeed changeFeed = mock(UrlChangeFeed.class);
+    private final UrlResolutionCache cache = new UrlResolutionCache(100, Duration.ofMinutes(10),
+            Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+    @Test
+    void syncFromDatabase_ShouldDropEntriesOfLinksChangedOnOtherNodes() {
+        when(changeFeed.cursorNow()).thenReturn(STARTED);
+        when(changeFeed.readCodes(eq(STARTED), any())).thenAnswer(invocation -> {
+            Consumer<String> changed = invocation.getArgument(1);
+            changed.accept("perm01");
+            return FIRST_SYNC;
+        });
+        UrlCacheSync sync = new UrlCacheSync(changeFeed, cache, false);
+        sync.syncFromDatabase();
+
+        cache.put("perm01", new ResolvedUrl(1L, "https://example.com/a", true, RedirectPolicy.PERMANENT, 86_400));
+        cache.put("other1", new ResolvedUrl(2L, "https://example.com/b", true));
+        sync.syncFromDatabase();
+
+        assertNull(cache.getIfPresent("perm01"));
+        assertNotNull(cache.getIfPresent("other1"));
+        sync.syncFromDatabase();
+        verify(changeFeed).readCodes(eq(FIRST_SYNC), any());
+    }
+
+    @Test
+    void syncFromDatabase_ShouldLeaveInvalidationToTheIndexWhenEnabled() {
+        new UrlCacheSync(changeFeed, cache, true).syncFromDatabase();
+
+        verifyNoInteractions(changeFeed);
+    }
+}
@@ -0,0 +1,73 @@
+package com.urlshortener.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlResolutionCacheTest {
+
+    private static final ResolvedUrl LINK = new ResolvedUrl(1L, "https://example.com/a", true);
+
+    private final AtomicLong now = new AtomicLong();
+    private final UrlResolutionCache cache = new UrlResolutionCache(100, Duration.ofMinutes(10),
+            Duration.ofSeconds(30), new SimpleMeterRegistry(), now::get);
+
+    @Test
+    void get_ShouldCacheUnknownCodesAsNegativeEntries() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertSame(ResolvedUrl.NOT_FOUND, cache.get("nope01", code -> {
+            loads.incrementAndGet();
+            return ResolvedUrl.NOT_FOUND;
+        }));
+        assertSame(ResolvedUrl.NOT_FOUND, cache.get("nope01", code -> {
+            loads.incrementAndGet();
+            return LINK;
+        }));
+
+        assertEquals(1, loads.get());
+        assertFalse(cache.getIfPresent("nope01").exists());
+    }
+
+    @Test
+    void negativeEntries_ShouldExpireBeforePositiveOnes() {
+        cache.put("nope01", ResolvedUrl.NOT_FOUND);
+        cache.put("link01", LINK);
+
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertNull(cache.getIfPresent("nope01"));
+        assertEquals(LINK, cache.getIfPresent("link01"));
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertNull(cache.getIfPresent("link01"));
+    }
+
+    @Test
+    void invalidate_ShouldDropOneEntryAndInvalidateAllEveryEntry() {
+        cache.put("link01", LINK);
+        cache.put("link02", LINK);
+        cache.put("nope01", ResolvedUrl.NOT_FOUND);
+
+        cache.invalidate("nope01");
+        assertNull(cache.getIfPresent("nope01"));
+        assertEquals(LINK, cache.getIfPresent("link01"));
+
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("link01"));
+        assertNull(cache.getIfPresent("link02"));
+    }
+
+    @Test
+    void get_ShouldRetryAFailedLoad() {
+        assertThrows(IllegalStateException.class, () -> cache.get("link01", code -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        assertEquals(LINK, cache.get("link01", code -> LINK));
+    }
+}
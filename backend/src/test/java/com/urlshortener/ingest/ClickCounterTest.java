@@ -0,0 +1,171 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.cache.ShortCodeBloomFilter;
+import com.urlshortener.cache.ShortCodeIndexService;
+import com.urlshortener.cache.UrlResolutionCache;
+import com.urlshortener.entity.Url;
+import com.urlshortener.repository.UrlRepository;
+import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.UrlService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ClickCounterTest {
+
+    private static final long URL_ID = 42L;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UrlRepository urlRepository;
+
+    @Mock
+    private ShortCodeIndexService shortCodeIndexService;
+
+    private ClickCounter clickCounter;
+    private UrlService urlService;
+    private AnalyticsService analyticsService;
+    private final AtomicLong persistedClicks = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            for (Object[] row : args) {
+                assertEquals(URL_ID, row[1]);
+                persistedClicks.addAndGet((Long) row[0]);
+            }
+            return new int[args.size()];
+        });
+
+        clickCounter = new ClickCounter(jdbcTemplate, transactionManager, new SimpleMeterRegistry(), 1000);
+
+        Url url = new Url();
+        url.setId(URL_ID);
+        url.setShortCode("viral42");
+        url.setOriginalUrl("https://example.com/viral");
+        url.setActive(true);
+        when(urlRepository.findByShortCode("viral42")).thenReturn(Optional.of(url));
+
+        urlService = new UrlService();
+        analyticsService = new AnalyticsService();
+        UrlResolutionCache cache = new UrlResolutionCache(1000, Duration.ofMinutes(10), Duration.ofSeconds(30),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(urlService, "urlRepository", urlRepository);
+        ReflectionTestUtils.setField(urlService, "urlResolutionCache", cache);
+        ReflectionTestUtils.setField(urlService, "shortCodeIndexService", shortCodeIndexService);
+        // Never started, so it lets every code through
+        ReflectionTestUtils.setField(urlService, "shortCodeBloomFilter", new ShortCodeBloomFilter(jdbcTemplate,
+                null, new SimpleMeterRegistry(), false, 1000, 0.01, DataSize.ofKilobytes(1)));
+        ReflectionTestUtils.setField(urlService, "clickCounter", clickCounter);
+        ReflectionTestUtils.setField(analyticsService, "urlService", urlService);
+        // Never started: raw events simply overflow, total_clicks must still be exact
+        ClickIngestionQueue clickIngestionQueue = new ClickIngestionQueue(null, new SimpleMeterRegistry(), 16, 16,
+                Duration.ofMillis(200), OverflowPolicy.DROP, Duration.ZERO, 1.0, 1, Duration.ZERO, false);
+        ReflectionTestUtils.setField(analyticsService, "clickIngestionQueue", clickIngestionQueue);
+    }
+
+    @Test
+    void parallelRedirects_OnSameCode_ShouldNotLoseIncrements() throws Exception {
+        int threads = 64;
+        int redirects = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean redirecting = new AtomicBoolean(true);
+
+        // Flush continuously while redirects are in flight to exercise drain/retire races
+        Thread flusher = new Thread(() -> {
+            while (redirecting.get()) {
+                clickCounter.flush();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+            }
+        });
+        flusher.start();
+
+        for (int i = 0; i < redirects; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                urlService.resolveAndTrack("viral42", "10.0.0.1", "JUnit", null, analyticsService);
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+
+        redirecting.set(false);
+        flusher.join();
+        clickCounter.flush();
+
+        assertEquals(redirects, persistedClicks.get());
+    }
+
+    @Test
+    void flush_WhenUpdateFails_ShouldKeepDeltasForNextRun() {
+        for (int i = 0; i < 5; i++) {
+            clickCounter.increment(URL_ID);
+        }
+        doThrow(new org.springframework.dao.DataAccessResourceFailureException("down"))
+                .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        clickCounter.flush();
+        assertEquals(0, persistedClicks.get());
+
+        doAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            args.forEach(row -> persistedClicks.addAndGet((Long) row[0]));
+            return new int[args.size()];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        clickCounter.flush();
+
+        assertEquals(5, persistedClicks.get());
+    }
+
+    @Test
+    void drain_ShouldRemoveIdleUrls() {
+        clickCounter.increment(URL_ID);
+
+        assertEquals(1L, clickCounter.drain().get(URL_ID));
+        assertTrue(clickCounter.drain().isEmpty());
+
+        clickCounter.increment(URL_ID);
+        assertEquals(1L, clickCounter.drain().get(URL_ID));
+    }
+}
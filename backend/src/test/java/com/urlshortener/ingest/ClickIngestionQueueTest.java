@@ -0,0 +1,162 @@
+package com.urlshortener.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ClickIngestionQueueTest {
+
+    private final ClickEventWriter writer = mock(ClickEventWriter.class);
+    // The queue reuses its batch list, so what the writer saw is copied
+    private final List<List<ClickEvent>> writes = new CopyOnWriteArrayList<>();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ClickIngestionQueue started;
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        if (started != null) {
+            started.stop();
+        }
+    }
+
+    @Test
+    void maxBatchSize_ShouldFitTheBindParameterLimitOfOneInsert() {
+        int columns = (int) JdbcRawClickStore.ROW_PLACEHOLDER.chars().filter(c -> c == '?').count();
+        assertEquals(JdbcRawClickStore.COLUMNS, columns);
+
+        assertTrue(ClickIngestionQueue.MAX_BATCH_SIZE * columns <= 65535);
+        assertTrue((ClickIngestionQueue.MAX_BATCH_SIZE + 1) * columns > 65535);
+    }
+
+    @Test
+    void constructor_ShouldAcceptBatchSizesUpToTheMaximumOnly() {
+        assertDoesNotThrow(() -> queue(10_000, ClickIngestionQueue.MAX_BATCH_SIZE, Duration.ofMillis(200),
+                OverflowPolicy.DROP, 0.1));
+        assertThrows(IllegalArgumentException.class, () -> queue(10_000, ClickIngestionQueue.MAX_BATCH_SIZE + 1,
+                Duration.ofMillis(200), OverflowPolicy.DROP, 0.1));
+    }
+
+    @Test
+    void writer_ShouldFlushAsSoonAsABatchIsFull() throws InterruptedException {
+        recordWrites();
+        started = queue(100, 3, Duration.ofSeconds(3), OverflowPolicy.DROP, 0.1);
+        started.start();
+
+        for (int i = 0; i < 3; i++) {
+            started.submit(event(i));
+        }
+
+        // Well before the max delay
+        assertTrue(await(() -> writes.size() == 1, Duration.ofSeconds(1)));
+        assertEquals(3, writes.get(0).size());
+    }
+
+    @Test
+    void writer_ShouldFlushAPartialBatchAfterTheMaxDelay() throws InterruptedException {
+        recordWrites();
+        started = queue(100, 100, Duration.ofMillis(50), OverflowPolicy.DROP, 0.1);
+        started.start();
+
+        started.submit(event(1));
+
+        assertTrue(await(() -> writes.size() == 1, Duration.ofSeconds(2)));
+        assertEquals(List.of(event(1)), writes.get(0));
+    }
+
+    @Test
+    void writer_ShouldRetryAFailedBatchInsteadOfDroppingIt() throws InterruptedException {
+        doAnswer(invocation -> {
+            writes.add(List.copyOf(invocation.getArgument(0)));
+            if (writes.size() == 1) {
+                throw new IllegalStateException("connection reset");
+            }
+            return null;
+        }).when(writer).write(anyList());
+        started = queue(100, 1, Duration.ofMillis(50), OverflowPolicy.DROP, 0.1);
+        started.start();
+
+        started.submit(event(1));
+
+        assertTrue(await(() -> meterRegistry.counter("clicks.ingest.written").count() == 1.0, Duration.ofSeconds(2)));
+        assertEquals(List.of(List.of(event(1)), List.of(event(1))), writes);
+        assertEquals(1.0, meterRegistry.counter("clicks.ingest.retries").count());
+        assertEquals(0.0, rejected("write-failure"));
+    }
+
+    @Test
+    void drop_ShouldDiscardEventsOnceTheQueueIsFull() {
+        ClickIngestionQueue queue = queue(2, 10, Duration.ofMillis(200), OverflowPolicy.DROP, 0.1);
+
+        for (int i = 0; i < 3; i++) {
+            queue.submit(event(i));
+        }
+
+        assertEquals(2, queue.depth());
+        assertEquals(1.0, rejected("overflow"));
+    }
+
+    @Test
+    void block_ShouldWaitForTheTimeoutBeforeDiscarding() {
+        ClickIngestionQueue queue = queue(1, 10, Duration.ofMillis(200), OverflowPolicy.BLOCK, 0.1);
+        queue.submit(event(1));
+
+        long start = System.nanoTime();
+        queue.submit(event(2));
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(20).toNanos());
+        assertEquals(1, queue.depth());
+        assertEquals(1.0, rejected("overflow"));
+    }
+
+    @Test
+    void sample_ShouldThinOutEventsAboveTheHighWaterMark() {
+        ClickIngestionQueue queue = queue(100, 10, Duration.ofMillis(200), OverflowPolicy.SAMPLE, 0.0);
+
+        for (int i = 0; i < 100; i++) {
+            queue.submit(event(i));
+        }
+
+        assertEquals(75, queue.depth());
+        assertEquals(25.0, rejected("sampled"));
+    }
+
+    private ClickIngestionQueue queue(int capacity, int batchSize, Duration maxDelay, OverflowPolicy policy,
+            double sampleRate) {
+        return new ClickIngestionQueue(writer, meterRegistry, capacity, batchSize, maxDelay, policy,
+                Duration.ofMillis(20), sampleRate, 3, Duration.ofMillis(1), false);
+    }
+
+    private void recordWrites() {
+        doAnswer(invocation -> writes.add(List.copyOf(invocation.getArgument(0)))).when(writer).write(anyList());
+    }
+
+    private static boolean await(BooleanSupplier condition, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        return true;
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.counter("clicks.ingest.rejected", "reason", reason).count();
+    }
+
+    private static ClickEvent event(long urlId) {
+        return new ClickEvent(urlId, LocalDateTime.of(2024, 2, 10, 12, 0), "203.0.113.9", "curl/8.0", null);
+    }
+}
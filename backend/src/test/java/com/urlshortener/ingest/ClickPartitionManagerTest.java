@@ -0,0 +1,36 @@
+package com.urlshortener.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickPartitionManagerTest {
+
+    @Test
+    void partitionName_ShouldSortChronologically() {
+        assertEquals("click_analytics_2024_03", ClickPartitionManager.partitionName(YearMonth.of(2024, 3)));
+        assertTrue(ClickPartitionManager.partitionName(YearMonth.of(2024, 12))
+                .compareTo(ClickPartitionManager.partitionName(YearMonth.of(2025, 1))) < 0);
+    }
+
+    @Test
+    void upperBound_ShouldReadRangeBoundsAndSkipTheDefaultPartition() {
+        assertEquals(LocalDateTime.of(2024, 3, 1, 0, 0), ClickPartitionManager.upperBound(
+                "FOR VALUES FROM ('2024-02-01 00:00:00') TO ('2024-03-01 00:00:00')"));
+        assertEquals(LocalDateTime.of(2024, 5, 1, 0, 0), ClickPartitionManager.upperBound(
+                "FOR VALUES FROM (MINVALUE) TO ('2024-05-01 00:00:00')"));
+        assertNull(ClickPartitionManager.upperBound("DEFAULT"));
+    }
+
+    @Test
+    void csv_ShouldQuoteOnlyWhenNeeded() {
+        assertEquals("", ClickPartitionManager.csv(null));
+        assertEquals("curl/8.0", ClickPartitionManager.csv("curl/8.0"));
+        assertEquals("\"Mozilla/5.0 (X11; Linux x86_64, rv:120.0)\"",
+                ClickPartitionManager.csv("Mozilla/5.0 (X11; Linux x86_64, rv:120.0)"));
+        assertEquals("\"say \"\"hi\"\"\"", ClickPartitionManager.csv("say \"hi\""));
+    }
+}
@@ -0,0 +1,27 @@
+package com.urlshortener.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickRollupBackfillTest {
+
+    @Test
+    void chunks_ShouldBeAlignedSoReRunsSeeTheSameBoundaries() {
+        long size = ClickRollupBackfill.CHUNK_IDS;
+
+        List<long[]> chunks = ClickRollupBackfill.chunks(size + 17, 3 * size + 5);
+
+        assertEquals(3, chunks.size());
+        assertArrayEquals(new long[] { size, 2 * size }, chunks.get(0));
+        assertArrayEquals(new long[] { 2 * size, 3 * size }, chunks.get(1));
+        assertArrayEquals(new long[] { 3 * size, 3 * size + 5 }, chunks.get(2));
+    }
+
+    @Test
+    void chunks_ShouldBeEmptyWhenNothingPredatesTheRollups() {
+        assertTrue(ClickRollupBackfill.chunks(500, 500).isEmpty());
+    }
+}
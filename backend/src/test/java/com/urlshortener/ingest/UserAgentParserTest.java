@@ -0,0 +1,64 @@
+package com.urlshortener.ingest;
+
+import com.urlshortener.entity.BrowserFamily;
+import com.urlshortener.entity.DeviceType;
+import com.urlshortener.entity.OsFamily;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserAgentParserTest {
+
+    private final UserAgentParser parser = new UserAgentParser(100, new SimpleMeterRegistry());
+
+    @Test
+    void parse_ShouldClassifyCommonBrowsers() {
+        assertAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)"
+                + " Chrome/124.0.0.0 Safari/537.36", DeviceType.DESKTOP, BrowserFamily.CHROME, OsFamily.WINDOWS);
+        assertAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)"
+                + " Chrome/124.0.0.0 Safari/537.36 Edg/124.0.2478.51", DeviceType.DESKTOP, BrowserFamily.EDGE, OsFamily.WINDOWS);
+        assertAgent("Mozilla/5.0 (Macintosh; Intel Mac OS X 14_4) AppleWebKit/605.1.15 (KHTML, like Gecko)"
+                + " Version/17.4 Safari/605.1.15", DeviceType.DESKTOP, BrowserFamily.SAFARI, OsFamily.MACOS);
+        assertAgent("Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0",
+                DeviceType.DESKTOP, BrowserFamily.FIREFOX, OsFamily.LINUX);
+        assertAgent("Mozilla/5.0 (iPhone; CPU iPhone OS 17_4 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko)"
+                + " Version/17.4 Mobile/15E148 Safari/604.1", DeviceType.MOBILE, BrowserFamily.SAFARI, OsFamily.IOS);
+        assertAgent("Mozilla/5.0 (iPad; CPU OS 17_4 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko)"
+                + " CriOS/124.0.6367.88 Mobile/15E148 Safari/604.1", DeviceType.TABLET, BrowserFamily.CHROME, OsFamily.IOS);
+        assertAgent("Mozilla/5.0 (Linux; Android 14; SM-S918B) AppleWebKit/537.36 (KHTML, like Gecko)"
+                + " SamsungBrowser/24.0 Chrome/117.0.0.0 Mobile Safari/537.36",
+                DeviceType.MOBILE, BrowserFamily.SAMSUNG_INTERNET, OsFamily.ANDROID);
+        assertAgent("Mozilla/5.0 (Linux; Android 13; SM-X700) AppleWebKit/537.36 (KHTML, like Gecko)"
+                + " Chrome/124.0.0.0 Safari/537.36", DeviceType.TABLET, BrowserFamily.CHROME, OsFamily.ANDROID);
+        assertAgent("Mozilla/5.0 (Windows NT 6.1; WOW64; Trident/7.0; rv:11.0) like Gecko",
+                DeviceType.DESKTOP, BrowserFamily.INTERNET_EXPLORER, OsFamily.WINDOWS);
+    }
+
+    @Test
+    void parse_ShouldFlagCrawlersAndHttpLibraries() {
+        for (String header : new String[] {
+                "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+                "facebookexternalhit/1.1 (+http://www.facebook.com/externalhit_uatext.php)",
+                "Slackbot-LinkExpanding 1.0 (+https://api.slack.com/robots)",
+                "curl/8.4.0",
+                "python-requests/2.31.0",
+                "Go-http-client/2.0" }) {
+            UserAgentParser.UserAgent agent = parser.parse(header);
+            assertTrue(agent.bot(), header);
+            assertEquals(DeviceType.BOT, agent.deviceType(), header);
+        }
+    }
+
+    @Test
+    void parse_ShouldTreatMissingHeadersAsUnknownAndMemoize() {
+        assertSame(UserAgentParser.UserAgent.UNKNOWN, parser.parse(null));
+        assertSame(UserAgentParser.UserAgent.UNKNOWN, parser.parse(" "));
+        String header = "Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0";
+        assertSame(parser.parse(header), parser.parse(new String(header)));
+    }
+
+    private void assertAgent(String header, DeviceType device, BrowserFamily browser, OsFamily os) {
+        assertEquals(new UserAgentParser.UserAgent(device, browser, os, false), parser.parse(header), header);
+    }
+}
@@ -0,0 +1,97 @@
+package com.urlshortener.ingest.segment;
+
+import com.urlshortener.ingest.ClickEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickSegmentStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 2, 10, 23, 30, 0, 123_000_000);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void scans_ShouldAggregateOneUrlAcrossBlocksAndSegments() throws Exception {
+        ClickSegmentStore store = new ClickSegmentStore(tempDir, DataSize.ofKilobytes(4));
+        store.open();
+        for (int batch = 0; batch < 20; batch++) {
+            List<ClickEvent> events = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                long urlId = 1 + (batch * 50 + i) % 3;
+                String referrer = i % 5 == 0 ? null : "https://ref" + (i % 2) + ".example";
+                events.add(new ClickEvent(urlId, START.plusMinutes(batch * 3L + i), "10.0.0." + i,
+                        "agent-" + (i % 4), referrer));
+            }
+            store.append(events);
+        }
+        store.close();
+
+        Map<LocalDate, Long> byDay = store.clicksByDay(2);
+        Map<String, Long> byReferrer = store.clicksByReferrer(2);
+        List<ClickEvent> scanned = new ArrayList<>();
+        store.scan(2, (clickedAt, ip, userAgent, referrer) ->
+                scanned.add(new ClickEvent(2L, clickedAt, ip, userAgent, referrer)));
+
+        assertTrue(segmentFiles() > 1);
+        assertEquals(333L, byDay.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(List.of(START.toLocalDate(), START.toLocalDate().plusDays(1)), List.copyOf(byDay.keySet()));
+        assertEquals(333L, byReferrer.values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(byReferrer.containsKey(""));
+        assertEquals(333, scanned.size());
+        assertTrue(scanned.stream().anyMatch(click -> click.clickedAt().equals(START.plusMinutes(1))
+                && "10.0.0.1".equals(click.ipAddress()) && "agent-1".equals(click.userAgent())
+                && "https://ref1.example".equals(click.referrer())));
+        assertTrue(store.clicksByDay(99).isEmpty());
+    }
+
+    @Test
+    void open_ShouldDropATornTailAndKeepAppending() throws Exception {
+        ClickSegmentStore store = new ClickSegmentStore(tempDir, DataSize.ofMegabytes(1));
+        store.open();
+        store.append(List.of(click(7L, START), click(7L, START.plusMinutes(10))));
+        store.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Start of a block whose payload never made it to disk
+        appendPartialBlock(segment);
+
+        ClickSegmentStore reopened = new ClickSegmentStore(tempDir, DataSize.ofMegabytes(1));
+        reopened.open();
+        reopened.append(List.of(click(7L, START.plusDays(1))));
+
+        assertEquals(Map.of(START.toLocalDate(), 2L, START.toLocalDate().plusDays(1), 1L), reopened.clicksByDay(7));
+        reopened.close();
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    private static ClickEvent click(Long urlId, LocalDateTime clickedAt) {
+        return new ClickEvent(urlId, clickedAt, "203.0.113.9", "curl/8.0", null);
+    }
+
+    private static void appendPartialBlock(Path segment) throws Exception {
+        byte[] block = ClickBlock.encode(List.of(click(8L, START))).array();
+        Files.write(segment, Arrays.copyOf(block, block.length - 3), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,180 @@
+package com.urlshortener.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ClickDictionaryRepositoryTest {
+
+    @Test
+    void ids_ShouldInternNewValuesOnceAndServeRepeatsFromTheCache() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        Map<String, Integer> stored = new HashMap<>();
+        List<List<Object>> lookups = new ArrayList<>();
+        doAnswer(invocation -> {
+            Object[] values = boundArray(invocation.getArgument(1));
+            lookups.add(Arrays.asList(values));
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Object value : values) {
+                stored.putIfAbsent((String) value, stored.size() + 1);
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt(1)).thenReturn(stored.get(value));
+                when(rs.getString(2)).thenReturn((String) value);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        ClickDictionaryRepository dictionary = new ClickDictionaryRepository(jdbcTemplate, transactionManager,
+                DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+
+        Map<String, Integer> first = dictionary.ids(ClickDictionaryRepository.Kind.USER_AGENT,
+                Arrays.asList("curl/8.0", null, "Mozilla/5.0", "curl/8.0"));
+        Map<String, Integer> second = dictionary.ids(ClickDictionaryRepository.Kind.USER_AGENT,
+                List.of("Mozilla/5.0", "curl/8.0", "Wget/1.21"));
+
+        assertEquals(Map.of("curl/8.0", 1, "Mozilla/5.0", 2), first);
+        assertEquals(Map.of("curl/8.0", 1, "Mozilla/5.0", 2, "Wget/1.21", 3), second);
+        // Only the value not seen before went to the database the second time
+        assertEquals(List.of(List.of("curl/8.0", "Mozilla/5.0"), List.of("Wget/1.21")), lookups);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    /**
+     * Modelled storage for a synthetic dataset: one million clicks over 2,000
+     * user agents and 400 referrers with Zipf-like popularity, 30% of them
+     * without a referrer. Sizes follow PostgreSQL's heap layout (tuple header,
+     * null bitmap, alignment, 1-byte varlena headers below 127 bytes, 4-byte
+     * line pointers, 8 KiB pages) rather than a live database.
+     */
+    @Test
+    void storageModel_InterningShouldShrinkClickRowsByMoreThanHalf() {
+        SplittableRandom random = new SplittableRandom(17);
+        String[] userAgents = new String[2_000];
+        for (int i = 0; i < userAgents.length; i++) {
+            userAgents[i] = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/"
+                    + (90 + i % 40) + ".0." + i + ".0 Safari/537.36" + " Edg/1".repeat(i % 3);
+        }
+        String[] referrers = new String[400];
+        for (int i = 0; i < referrers.length; i++) {
+            referrers[i] = "https://www.site" + i + ".example/articles/" + "post-".repeat(1 + i % 6) + i;
+        }
+
+        int clicks = 1_000_000;
+        Pages legacyTable = new Pages();
+        Pages internedTable = new Pages();
+        for (int i = 0; i < clicks; i++) {
+            String ip = random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+            String userAgent = userAgents[zipf(random, userAgents.length)];
+            String referrer = random.nextInt(10) < 3 ? null : referrers[zipf(random, referrers.length)];
+
+            // id, url_id, clicked_at, ip_address, user_agent, referrer
+            legacyTable.add(tuple(6, referrer == null, -8, -8, -8, varlena(ip), varlena(userAgent),
+                    referrer == null ? 0 : varlena(referrer)));
+            // ... the legacy columns stay NULL, then user_agent_id, referrer_id
+            internedTable.add(tuple(8, true, -8, -8, -8, varlena(ip), 0, 0, -4, referrer == null ? 0 : -4));
+        }
+        // Dictionary rows (id, value) plus their primary key and md5 index entries
+        long dictionaryBytes = 0;
+        for (String value : concat(userAgents, referrers)) {
+            dictionaryBytes += tuple(2, false, -4, varlena(value)) + 4 + 16 + 4 + 48 + 4;
+        }
+
+        long legacyBytes = legacyTable.pages * 8192;
+        long internedBytes = internedTable.pages * 8192 + dictionaryBytes;
+        double saved = 1 - (double) internedBytes / legacyBytes;
+
+        assertTrue(saved > 0.5, "Saved " + saved);
+    }
+
+    private static Object[] boundArray(PreparedStatementSetter setter) throws Exception {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        Object[][] bound = new Object[1][];
+        when(ps.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(eq("text"), any())).thenAnswer(invocation -> {
+            bound[0] = invocation.getArgument(1);
+            return mock(Array.class);
+        });
+        setter.setValues(ps);
+        verify(ps).setArray(anyInt(), any());
+        return bound[0];
+    }
+
+    /** Index in [0, n) with Zipf-like (1/rank) popularity. */
+    private static int zipf(SplittableRandom random, int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(n + 1)) - 1));
+    }
+
+    /**
+     * Heap tuple bytes plus line pointer. Positive column sizes are varlena
+     * (no alignment for 1-byte headers, 4-byte alignment otherwise),
+     * negative ones fixed-width with that size and alignment, 0 is NULL.
+     */
+    private static int tuple(int columns, boolean hasNulls, int... sizes) {
+        int offset = align(23 + (hasNulls ? (columns + 7) / 8 : 0), 8);
+        for (int size : sizes) {
+            if (size < 0) {
+                offset = align(offset, -size) - size;
+            } else if (size > 127) {
+                offset = align(offset, 4) + size;
+            } else {
+                offset += size;
+            }
+        }
+        return align(offset, 8) + 4;
+    }
+
+    private static int varlena(String value) {
+        int bytes = value.length();
+        return bytes + (bytes + 1 <= 127 ? 1 : 4);
+    }
+
+    /** Fills 8 KiB pages (24-byte page header) with tuples in order. */
+    private static final class Pages {
+        long pages;
+        long used;
+
+        void add(int tuple) {
+            if (pages == 0 || used + tuple > 8192 - 24) {
+                pages++;
+                used = 0;
+            }
+            used += tuple;
+        }
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        String[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+}
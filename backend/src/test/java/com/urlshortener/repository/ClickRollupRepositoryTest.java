@@ -0,0 +1,85 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.ingest.ClickEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickRollupRepositoryTest {
+
+    @Test
+    void countByUrlAndDay_ShouldAggregateABatchInUpsertOrder() {
+        LocalDateTime morning = LocalDateTime.of(2024, 2, 10, 9, 0);
+        List<ClickEvent> events = List.of(
+                click(7L, morning),
+                click(3L, morning.plusHours(20)),
+                click(7L, morning.plusHours(1)),
+                click(3L, morning),
+                click(7L, morning.plusDays(1)));
+
+        Map<ClickRollupRepository.UrlDay, Long> counts = ClickRollupRepository.countByUrlAndDay(events);
+
+        LocalDate day = morning.toLocalDate();
+        assertEquals(List.of(
+                new ClickRollupRepository.UrlDay(3L, day),
+                new ClickRollupRepository.UrlDay(3L, day.plusDays(1)),
+                new ClickRollupRepository.UrlDay(7L, day),
+                new ClickRollupRepository.UrlDay(7L, day.plusDays(1))), List.copyOf(counts.keySet()));
+        assertEquals(2L, counts.get(new ClickRollupRepository.UrlDay(7L, day)));
+        assertEquals(1L, counts.get(new ClickRollupRepository.UrlDay(3L, day.plusDays(1))));
+    }
+
+    @Test
+    void countByUrlAndBucket_ShouldTruncateClicksToTheGranularity() {
+        LocalDateTime morning = LocalDateTime.of(2024, 2, 10, 9, 0);
+        List<ClickEvent> events = List.of(
+                click(7L, morning.plusSeconds(5)),
+                click(7L, morning.plusSeconds(59)),
+                click(7L, morning.plusMinutes(1)),
+                click(7L, morning.plusMinutes(61)));
+
+        assertEquals(Map.of(
+                new ClickRollupRepository.UrlBucket(7L, morning), 2L,
+                new ClickRollupRepository.UrlBucket(7L, morning.plusMinutes(1)), 1L,
+                new ClickRollupRepository.UrlBucket(7L, morning.plusMinutes(61)), 1L),
+                ClickRollupRepository.countByUrlAndBucket(events, ClickRollupRepository.Granularity.MINUTE));
+        assertEquals(Map.of(
+                new ClickRollupRepository.UrlBucket(7L, morning), 3L,
+                new ClickRollupRepository.UrlBucket(7L, morning.plusHours(1)), 1L),
+                ClickRollupRepository.countByUrlAndBucket(events, ClickRollupRepository.Granularity.HOUR));
+    }
+
+    @Test
+    void seriesWindow_ShouldCoverWholeBucketsAndDownsampleToMaxPoints() {
+        LocalDateTime from = LocalDateTime.of(2024, 2, 10, 9, 30, 15);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 10, 11, 29, 59);
+
+        // 120 minutes fit
+        ClickRollupRepository.SeriesWindow minutes = ClickRollupRepository.SeriesWindow.of(from, to,
+                ClickRollupRepository.Granularity.MINUTE, 500);
+        assertEquals(new ClickRollupRepository.SeriesWindow(LocalDateTime.of(2024, 2, 10, 9, 30),
+                LocalDateTime.of(2024, 2, 10, 11, 30), 60, 120), minutes);
+
+        // 120 minutes into at most 50 points: 3 minutes each
+        ClickRollupRepository.SeriesWindow downsampled = ClickRollupRepository.SeriesWindow.of(from, to,
+                ClickRollupRepository.Granularity.MINUTE, 50);
+        assertEquals(180, downsampled.stepSeconds());
+        assertEquals(40, downsampled.points());
+
+        // Weeks start on Monday; 2024-02-10 is a Saturday
+        ClickRollupRepository.SeriesWindow weeks = ClickRollupRepository.SeriesWindow.of(from,
+                LocalDateTime.of(2024, 3, 4, 0, 0), ClickRollupRepository.Granularity.WEEK, 500);
+        assertEquals(LocalDateTime.of(2024, 2, 5, 0, 0), weeks.start());
+        assertEquals(LocalDateTime.of(2024, 3, 11, 0, 0), weeks.end());
+        assertEquals(5, weeks.points());
+    }
+
+    private static ClickEvent click(Long urlId, LocalDateTime clickedAt) {
+        return new ClickEvent(urlId, clickedAt, "203.0.113.9", "curl/8.0", null);
+    }
+}
@@ -0,0 +1,88 @@
+package com.urlshortener.security;
+
+import com.urlshortener.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedPasswordEncoderTest {
+
+    @Test
+    void encode_ShouldRejectWhenThreadsAndQueueAreFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BlockingEncoder(started, release), 1, 1,
+                meterRegistry);
+        try {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (meterRegistry.get("auth.password.queue.depth").gauge().value() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(TooManyRequestsException.class, () -> encoder.encode("third"));
+            assertEquals(1, meterRegistry.get("auth.password.rejected").counter().count());
+
+            release.countDown();
+            assertEquals("hash:first", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hash:second", queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            encoder.stop();
+        }
+    }
+
+    @Test
+    void upgradeEncoding_ShouldFlagLegacyAndWeakerHashes() {
+        BCryptPasswordEncoder legacy = new BCryptPasswordEncoder(4);
+        BCryptPasswordEncoder current = new BCryptPasswordEncoder(5);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", current));
+        delegating.setDefaultPasswordEncoderForMatches(current);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(delegating, 1, 4, new SimpleMeterRegistry());
+        try {
+            String unprefixed = legacy.encode("secret");
+            assertTrue(encoder.matches("secret", unprefixed));
+            assertTrue(encoder.upgradeEncoding(unprefixed));
+            assertTrue(encoder.upgradeEncoding("{bcrypt}" + unprefixed));
+
+            String rehashed = encoder.encode("secret");
+            assertTrue(rehashed.startsWith("{bcrypt}$2a$05$"));
+            assertTrue(encoder.matches("secret", rehashed));
+            assertFalse(encoder.upgradeEncoding(rehashed));
+        } finally {
+            encoder.stop();
+        }
+    }
+
+    /** Hashes instantly but holds each call until released. */
+    private record BlockingEncoder(CountDownLatch started, CountDownLatch release) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(encode(rawPassword));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.urlshortener.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthFilterTest {
+
+    private static final String USERNAME = "user@example.com";
+    private static final String SECRET = "test-secret-key-that-is-at-least-256-bits-long!!";
+
+    private UserDetailsServiceImpl userDetailsService;
+    private JwtAuthFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        when(userDetailsService.loadAuthenticatedUser(USERNAME)).thenReturn(new AuthenticatedUser(7L, USERNAME));
+        filter = new JwtAuthFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil(TimeUnit.HOURS.toMillis(1)));
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "principalCacheSize", 100L);
+        filter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_ShouldTakeThePrincipalFromTheClaims() throws Exception {
+        String token = jwtUtil(TimeUnit.HOURS.toMillis(1)).generateToken(USERNAME, 42L);
+
+        assertEquals(new AuthenticatedUser(42L, USERNAME), authenticate(token).getPrincipal());
+        assertEquals(USERNAME, authenticate(token).getName());
+
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void doFilter_ShouldLoadTheUserOnceForATokenWithoutAUserId() throws Exception {
+        String token = Jwts.builder()
+                .subject(USERNAME)
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), Jwts.SIG.HS256)
+                .compact();
+
+        assertEquals(new AuthenticatedUser(7L, USERNAME), authenticate(token).getPrincipal());
+        assertEquals(new AuthenticatedUser(7L, USERNAME), authenticate(token).getPrincipal());
+
+        verify(userDetailsService, times(1)).loadAuthenticatedUser(USERNAME);
+    }
+
+    @Test
+    void doFilter_ShouldRejectExpiredAndTamperedTokens() throws Exception {
+        String expired = jwtUtil(-1000).generateToken(USERNAME, 42L);
+        String valid = jwtUtil(TimeUnit.HOURS.toMillis(1)).generateToken(USERNAME, 42L);
+        String tampered = valid.substring(0, valid.length() - 2) + (valid.endsWith("AA") ? "BB" : "AA");
+
+        assertNull(authenticate(expired));
+        assertNull(authenticate(tampered));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/urls");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static JwtUtil jwtUtil(long expirationMillis) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expirationMillis);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+}
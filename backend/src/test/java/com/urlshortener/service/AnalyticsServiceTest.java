@@ -0,0 +1,93 @@
+package com.urlshortener.service;
+
+import com.urlshortener.dto.AnalyticsResponse;
+import com.urlshortener.entity.Url;
+import com.urlshortener.repository.ClickRollupRepository;
+import com.urlshortener.util.HyperLogLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AnalyticsServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 2, 9);
+
+    @Mock
+    private ClickRollupRepository clickRollupRepository;
+
+    @Mock
+    private CachedClickEstimator cachedClickEstimator;
+
+    @InjectMocks
+    private AnalyticsService analyticsService;
+
+    @Test
+    void getUrlAnalytics_ShouldStartAtCreationAndAlignDailyVisitorsWithTheClicks() {
+        Url url = url(DAY.atTime(15, 30));
+        when(clickRollupRepository.findSeriesForUrl(eq(7L), eq(ClickRollupRepository.Granularity.DAY), any()))
+                .thenReturn(new long[] { 4, 0, 6 });
+        when(clickRollupRepository.findVisitorSketchesForUrl(7L, DAY, DAY.plusDays(2)))
+                .thenReturn(Map.of(DAY, visitors(0, 3), DAY.plusDays(2), visitors(2, 5)));
+        when(cachedClickEstimator.estimate(anyLong(), anyInt())).thenReturn(0L);
+
+        AnalyticsResponse response = analyticsService.getUrlAnalytics(url, null, DAY.plusDays(2).atTime(12, 0),
+                ClickRollupRepository.Granularity.DAY, 500);
+
+        assertEquals(DAY.atStartOfDay(), response.getStart());
+        assertEquals(86_400L, response.getStepSeconds());
+        assertArrayEquals(new long[] { 4, 0, 6 }, response.getClicks());
+        assertEquals(10L, response.getTotalClicks());
+        assertArrayEquals(new long[] { 3, 0, 3 }, response.getUniqueVisitorsByPoint());
+        // Visitor 2 came on both days
+        assertEquals(5L, response.getUniqueVisitors());
+    }
+
+    @Test
+    void getUrlAnalytics_ShouldOnlyCountVisitorsOverTheRangeForPointsShorterThanADay() {
+        Url url = url(DAY.atStartOfDay());
+        when(clickRollupRepository.findSeriesForUrl(eq(7L), eq(ClickRollupRepository.Granularity.HOUR), any()))
+                .thenReturn(new long[] { 1, 2 });
+        when(clickRollupRepository.findVisitorSketchesForUrl(7L, DAY, DAY))
+                .thenReturn(Map.of(DAY, visitors(0, 4)));
+        when(cachedClickEstimator.estimate(anyLong(), anyInt())).thenReturn(0L);
+
+        AnalyticsResponse response = analyticsService.getUrlAnalytics(url, DAY.atTime(10, 0), DAY.atTime(11, 59),
+                ClickRollupRepository.Granularity.HOUR, 500);
+
+        assertArrayEquals(new long[] { 1, 2 }, response.getClicks());
+        assertEquals(4L, response.getUniqueVisitors());
+        assertNull(response.getUniqueVisitorsByPoint());
+    }
+
+    private static Url url(LocalDateTime createdAt) {
+        Url url = new Url();
+        url.setId(7L);
+        url.setShortCode("aBcD123");
+        url.setCacheMaxAge(0);
+        url.setCreatedAt(createdAt);
+        return url;
+    }
+
+    /** Visitors {@code from} (inclusive) to {@code to} (exclusive). */
+    private static HyperLogLog visitors(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(HyperLogLog.hash("203.0.113." + i, "curl/8.0"));
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,59 @@
+package com.urlshortener.service;
+
+import com.urlshortener.util.HyperLogLog;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedClickEstimatorTest {
+
+    @Test
+    void estimate_ShouldScaleRecordedClicksByTheRepeatShareOfTheCoveringWindow() {
+        CachedClickEstimator estimator = new CachedClickEstimator(null, null);
+        estimator.setRepeatShares(new double[] { 0.5, 0.75 });
+
+        assertEquals(100, estimator.estimate(100, 86_400));
+        assertEquals(300, estimator.estimate(100, 604_800));
+        assertEquals(300, estimator.estimate(100, 31_536_000));
+        // Half a day: half the daily share
+        assertEquals(33, estimator.estimate(100, 43_200));
+    }
+
+    @Test
+    void estimate_ShouldBeZeroForUncachedLinks() {
+        CachedClickEstimator estimator = new CachedClickEstimator(null, null);
+        estimator.setRepeatShares(new double[] { 0.5, 0.75 });
+
+        assertEquals(0, estimator.estimate(100, 0));
+        assertEquals(0, estimator.estimate(0, 3_600));
+    }
+
+    @Test
+    void visits_ShouldCountRepeatsWithinADayAndWithinTheWeek() {
+        CachedClickEstimator.Visits visits = new CachedClickEstimator.Visits();
+        // Link 1: the same 10 clients on two days, twice a day each
+        visits.add(1, clients(0, 10), 20);
+        visits.add(1, clients(0, 10), 20);
+        // Link 2: 20 different clients once each
+        visits.add(2, clients(100, 20), 20);
+
+        double[] shares = visits.repeatShares();
+
+        // Daily: 40 visits over 60 clicks; weekly: 30 visits over 60 clicks
+        assertEquals(1 - 40.0 / 60, shares[0], 0.01);
+        assertEquals(1 - 30.0 / 60, shares[1], 0.01);
+    }
+
+    @Test
+    void visits_ShouldBeZeroWithoutClicks() {
+        assertArrayEquals(new double[] { 0, 0 }, new CachedClickEstimator.Visits().repeatShares());
+    }
+
+    private static HyperLogLog clients(int first, int count) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = first; i < first + count; i++) {
+            sketch.add(HyperLogLog.hash("203.0.113." + i, "curl/8.0"));
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,157 @@
+package com.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickExportServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 2, 10, 9, 0);
+    private static final LocalDateTime FROM = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Test
+    void export_ShouldQuoteCsvFieldsAndEscapeJson() throws Exception {
+        String[][] rows = { { "203.0.113.9", "Mozilla/5.0 (X11, Linux)", null }, { null, "say \"hi\"", "https://a.example/?q=1\n" } };
+        ClickExportService service = new ClickExportService(new PagedClicks(2, rows, null), "database");
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        assertEquals(2, service.export(1L, FROM, TO, 0, Long.MAX_VALUE, ClickExportService.Format.CSV, false, csv));
+        assertEquals(2, service.export(1L, FROM, TO, 0, Long.MAX_VALUE, ClickExportService.Format.NDJSON, false, ndjson));
+
+        assertEquals("id,clicked_at,ip_address,user_agent,referrer\n"
+                + "1,2024-02-10T09:00:01,203.0.113.9,\"Mozilla/5.0 (X11, Linux)\",\n"
+                + "2,2024-02-10T09:00:02,,\"say \"\"hi\"\"\",\"https://a.example/?q=1\n\"\n",
+                csv.toString(StandardCharsets.UTF_8));
+        assertEquals("{\"id\":1,\"clickedAt\":\"2024-02-10T09:00:01\",\"ipAddress\":\"203.0.113.9\","
+                + "\"userAgent\":\"Mozilla/5.0 (X11, Linux)\",\"referrer\":null}\n"
+                + "{\"id\":2,\"clickedAt\":\"2024-02-10T09:00:02\",\"ipAddress\":null,"
+                + "\"userAgent\":\"say \\\"hi\\\"\",\"referrer\":\"https://a.example/?q=1\\n\"}\n",
+                ndjson.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_ShouldReadOnePagePerQueryResumingAfterTheLastId() throws Exception {
+        String[][] rows = { { "203.0.113.9", "curl/8.0", null } };
+        int page = ClickExportService.PAGE_SIZE;
+        PagedClicks clicks = new PagedClicks(3 * page, rows, null);
+        ClickExportService service = new ClickExportService(clicks, "database");
+
+        long written = service.export(1L, FROM, TO, 100, 2 * page + 200, ClickExportService.Format.CSV, false,
+                new CountingOutputStream());
+
+        assertEquals(2 * page + 200, written);
+        // The last page asks only for what the limit leaves
+        assertEquals(List.of(List.of(100L, (long) page), List.of(100L + page, (long) page),
+                List.of(100L + 2 * page, 200L)), clicks.queries);
+
+        clicks.queries.clear();
+        assertEquals(page / 2, service.export(1L, FROM, TO, 2 * page + page / 2, Long.MAX_VALUE,
+                ClickExportService.Format.NDJSON, false, new CountingOutputStream()));
+        // A short page is the last one
+        assertEquals(1, clicks.queries.size());
+    }
+
+    @Test
+    void export_ShouldKeepHeapFlatAcrossMillionsOfRows() throws Exception {
+        int total = 3_000_000;
+        String[][] rows = { { "198.51.100.23", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) Chrome/121.0", "https://news.example/story" } };
+        List<Long> retained = new ArrayList<>();
+        // Live heap after a GC, sampled as the export passes these rows
+        Runnable sample = () -> {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            retained.add(runtime.totalMemory() - runtime.freeMemory());
+        };
+        PagedClicks clicks = new PagedClicks(total, rows, sample);
+        CountingOutputStream out = new CountingOutputStream();
+
+        long written = new ClickExportService(clicks, "database")
+                .export(1L, FROM, TO, 0, Long.MAX_VALUE, ClickExportService.Format.CSV, false, out);
+
+        assertEquals(total, written);
+        assertEquals(total / ClickExportService.PAGE_SIZE + 1, clicks.queries.size());
+        assertTrue(out.bytes > 300L * 1024 * 1024, "Exported " + out.bytes + " bytes");
+        long first = retained.get(0);
+        for (long heap : retained) {
+            assertTrue(heap - first < 16L * 1024 * 1024, "Heap grew from " + first + " to " + heap + ": " + retained);
+        }
+    }
+
+    /**
+     * Serves {@code total} clicks to the export's keyset query without holding
+     * them: click i has id i and cycles through {@code values}. Records each
+     * query's (after id, limit) and runs {@code sample} at every page that
+     * starts on a multiple of 500,000.
+     */
+    private static final class PagedClicks extends JdbcTemplate {
+
+        final List<List<Long>> queries = new ArrayList<>();
+        private final int total;
+        private final String[][] values;
+        private final Runnable sample;
+        private final long[] current = { 0 };
+        private final ResultSet row;
+
+        PagedClicks(int total, String[][] values, Runnable sample) {
+            this.total = total;
+            this.values = values;
+            this.sample = sample;
+            this.row = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, (proxy, method, args) -> switch (method.getName()) {
+                        case "getLong" -> current[0];
+                        case "getTimestamp" -> Timestamp.valueOf(START.plusSeconds(current[0]));
+                        case "getString" -> values[(int) ((current[0] - 1) % values.length)][(int) args[0] - 3];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            assertEquals(ClickExportService.SELECT_CLICKS, sql);
+            long after = (Long) args[1];
+            int limit = (Integer) args[4];
+            queries.add(List.of(after, (long) limit));
+            if (sample != null && after % 500_000 == 0) {
+                sample.run();
+            }
+            List<T> page = new ArrayList<>(limit);
+            try {
+                for (current[0] = after + 1; current[0] <= Math.min(after + limit, total); current[0]++) {
+                    page.add(rowMapper.mapRow(row, page.size()));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return page;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShortCodeAllocatorTest {
+
+    private static final int BLOCK_SIZE = 100;
+    private static final int HEADROOM_BLOCKS = 2;
+
+    // Stands in for short_code_seq, shared by every node
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger boundReads = new AtomicInteger();
+
+    @Test
+    void mayHaveIssued_ShouldSeeCodesIssuedByAnotherNodeAndRejectProbes() {
+        ShortCodeAllocator thisNode = allocator();
+        ShortCodeAllocator otherNode = allocator();
+        thisNode.nextCode();
+
+        // Issued elsewhere after this node last read the sequence, within the headroom
+        String created = otherNode.nextCode();
+        assertTrue(thisNode.mayHaveIssued(created));
+
+        assertFalse(thisNode.mayHaveIssued("zzzzzzz"));
+        assertFalse(thisNode.mayHaveIssued("short"));
+        assertFalse(thisNode.mayHaveIssued("abc-123"));
+        assertEquals(0, boundReads.get());
+    }
+
+    @Test
+    void mayHaveIssued_ShouldSeeCodesBeyondTheHeadroomAfterARefresh() {
+        ShortCodeAllocator thisNode = allocator();
+        ShortCodeAllocator otherNode = allocator();
+        String created = null;
+        for (int i = 0; i <= HEADROOM_BLOCKS * BLOCK_SIZE; i++) {
+            created = otherNode.nextCode();
+        }
+        assertFalse(thisNode.mayHaveIssued(created));
+
+        thisNode.refreshLeasedBound();
+
+        assertTrue(thisNode.mayHaveIssued(created));
+        assertEquals(1, boundReads.get());
+    }
+
+    @Test
+    void mayHaveIssued_ShouldNeverReadTheSequenceWhileProbed() {
+        ShortCodeAllocator allocator = allocator();
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(allocator.mayHaveIssued(String.format("zz%05d", i)));
+        }
+        assertEquals(0, boundReads.get());
+    }
+
+    @Test
+    void constructor_ShouldRequireTheKeyOnlyForSequenceCodes() {
+        assertThrows(IllegalStateException.class, () -> new ShortCodeAllocator(null, "sequence", 7, "", BLOCK_SIZE, HEADROOM_BLOCKS));
+
+        // Random codes use neither the key nor short_code_seq
+        ShortCodeAllocator random = new ShortCodeAllocator(null, "random", 7, "", BLOCK_SIZE, HEADROOM_BLOCKS);
+        assertDoesNotThrow(random::checkSequence);
+    }
+
+    private ShortCodeAllocator allocator() {
+        return new ShortCodeAllocator(null, "sequence", 7, "test-key", BLOCK_SIZE, HEADROOM_BLOCKS) {
+            @Override
+            long leaseBlock() {
+                return sequence.getAndAdd(BLOCK_SIZE);
+            }
+
+            @Override
+            long readLeasedBound() {
+                boundReads.incrementAndGet();
+                return sequence.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package com.urlshortener.service;
+
+import com.urlshortener.cache.ShortCodeBloomFilter;
+import com.urlshortener.cache.ShortCodeIndexService;
+import com.urlshortener.cache.UrlResolutionCache;
+import com.urlshortener.entity.Url;
+import com.urlshortener.ingest.ClickCounter;
+import com.urlshortener.repository.UrlRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the blocking service paths on virtual threads with simulated database
+ * round trips and fails if any of them parks while pinned to its carrier
+ * (JFR event jdk.VirtualThreadPinned), e.g. a JDBC call made while holding a
+ * monitor. Mockito is avoided for the blocking calls because its stubbing
+ * internals take monitors of their own.
+ */
+public class VirtualThreadPinningTest {
+
+    private static final long ROUND_TRIP_MILLIS = 20;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void detector_ShouldReportBlockingInsideSynchronized() throws Exception {
+        Object monitor = new Object();
+
+        List<RecordedEvent> pinned = pinnedEvents(() -> {
+            synchronized (monitor) {
+                roundTrip();
+            }
+        });
+
+        assertFalse(pinned.isEmpty(), "Control case should pin; is JFR available?");
+    }
+
+    @Test
+    void clickCounterFlush_ShouldNotPin() throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                roundTrip();
+                return new int[batchArgs.size()];
+            }
+        };
+        ClickCounter clickCounter = new ClickCounter(jdbcTemplate, new NoOpTransactionManager(),
+                new SimpleMeterRegistry(), 1000);
+
+        List<RecordedEvent> pinned = pinnedEvents(() -> {
+            clickCounter.increment(1L);
+            clickCounter.flush();
+        });
+
+        assertTrue(pinned.isEmpty(), describe(pinned));
+    }
+
+    @Test
+    void createShortUrl_ShouldNotPinWhileLeasingBlocks() throws Exception {
+        ShortCodeAllocator allocator = new ShortCodeAllocator(null, "sequence", 7, "test-key", 1, 1000) {
+            private long next;
+
+            @Override
+            long leaseBlock() {
+                roundTrip();
+                return next++;
+            }
+        };
+        UrlService urlService = urlService(repository(null));
+        ReflectionTestUtils.setField(urlService, "shortCodeAllocator", allocator);
+
+        List<RecordedEvent> pinned = pinnedEvents(() -> urlService.createShortUrl("https://example.com", 1L));
+
+        assertTrue(pinned.isEmpty(), describe(pinned));
+    }
+
+    @Test
+    void lookupShortCode_ShouldNotPinWhileLoadingACacheMiss() throws Exception {
+        Url url = new Url();
+        url.setId(5L);
+        url.setShortCode("abc1234");
+        url.setOriginalUrl("https://example.com");
+        url.setActive(true);
+        UrlService urlService = urlService(repository(url));
+
+        // Every task misses on the same code, so all but one wait for the in-flight load
+        List<RecordedEvent> pinned = pinnedEvents(() -> urlService.lookupShortCode("abc1234"));
+
+        assertTrue(pinned.isEmpty(), describe(pinned));
+    }
+
+    private UrlService urlService(UrlRepository repository) {
+        UrlService urlService = new UrlService();
+        ReflectionTestUtils.setField(urlService, "shortCodeLength", 7);
+        ReflectionTestUtils.setField(urlService, "baseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(urlService, "urlRepository", repository);
+        ReflectionTestUtils.setField(urlService, "urlResolutionCache", new UrlResolutionCache(1000,
+                Duration.ofMinutes(10), Duration.ofSeconds(30), new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(urlService, "shortCodeIndexService", new ShortCodeIndexService(null, null,
+                new SimpleMeterRegistry(), false, tempDir.resolve("index")));
+        ReflectionTestUtils.setField(urlService, "shortCodeBloomFilter", new ShortCodeBloomFilter(null, null,
+                new SimpleMeterRegistry(), false, 1000, 0.01, DataSize.ofKilobytes(1)));
+        ReflectionTestUtils.setField(urlService, "cachedClickEstimator", new CachedClickEstimator(null, null));
+        return urlService;
+    }
+
+    /** UrlRepository whose save and findByShortCode each cost one simulated round trip. */
+    private static UrlRepository repository(Url existing) {
+        return (UrlRepository) Proxy.newProxyInstance(UrlRepository.class.getClassLoader(),
+                new Class<?>[] { UrlRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        roundTrip();
+                        yield args[0];
+                    }
+                    case "findByShortCode" -> {
+                        roundTrip();
+                        yield Optional.ofNullable(existing);
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private List<RecordedEvent> pinnedEvents(Runnable task) throws Exception {
+        Path dump = tempDir.resolve("pinning-" + System.nanoTime() + ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            List<Future<?>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 8; i++) {
+                    futures.add(executor.submit(task));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            recording.stop();
+            recording.dump(dump);
+        }
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .toList();
+    }
+
+    private static String describe(List<RecordedEvent> pinned) {
+        return pinned.isEmpty() ? "" : "Pinned while blocking:\n" + pinned.get(0).getStackTrace();
+    }
+
+    private static void roundTrip() {
+        try {
+            Thread.sleep(ROUND_TRIP_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeistelPermutationTest {
+
+    @Test
+    void permute_ShouldBeBijectiveOnKeyspace() {
+        long domain = Base62.keyspace(3);
+        FeistelPermutation permutation = new FeistelPermutation(domain, "test-key");
+        BitSet seen = new BitSet((int) domain);
+
+        for (long id = 0; id < domain; id++) {
+            long code = permutation.permute(id);
+            assertTrue(code >= 0 && code < domain);
+            assertFalse(seen.get((int) code), "Duplicate output for id " + id);
+            seen.set((int) code);
+        }
+
+        assertEquals(domain, seen.cardinality());
+    }
+
+    @Test
+    void unpermute_ShouldInvertPermute() {
+        FeistelPermutation permutation = new FeistelPermutation(Base62.keyspace(7), "test-key");
+        for (long id = 0; id < 10_000; id++) {
+            assertEquals(id, permutation.unpermute(permutation.permute(id)));
+        }
+        long last = Base62.keyspace(7) - 1;
+        assertEquals(last, permutation.unpermute(permutation.permute(last)));
+    }
+
+    @Test
+    void permute_ShouldNotPreserveOrderOfConsecutiveIds() {
+        FeistelPermutation permutation = new FeistelPermutation(Base62.keyspace(7), "test-key");
+        int ascending = 0;
+        for (long id = 0; id < 1000; id++) {
+            if (permutation.permute(id + 1) > permutation.permute(id)) {
+                ascending++;
+            }
+        }
+        assertTrue(ascending > 400 && ascending < 600);
+    }
+
+    @Test
+    void permute_ShouldDependOnKey() {
+        long domain = Base62.keyspace(7);
+        FeistelPermutation first = new FeistelPermutation(domain, "key-one");
+        FeistelPermutation second = new FeistelPermutation(domain, "key-two");
+        assertNotEquals(first.permute(12345), second.permute(12345));
+        assertEquals(first.permute(12345), new FeistelPermutation(domain, "key-one").permute(12345));
+    }
+}
@@ -0,0 +1,57 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    void estimate_ShouldStayWithinThreeStandardErrors() {
+        for (int distinct : new int[] { 100, 5_000, 20_000, 300_000 }) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < distinct; i++) {
+                String ip = "10." + (i >>> 16) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF);
+                sketch.add(HyperLogLog.hash(ip, "agent"));
+                // Repeat visits must not count again
+                sketch.add(HyperLogLog.hash(ip, "agent"));
+            }
+
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            assertTrue(error < 3 * HyperLogLog.RELATIVE_STANDARD_ERROR,
+                    distinct + " distinct estimated as " + sketch.estimate());
+        }
+    }
+
+    @Test
+    void merge_ShouldCountVisitorsSeenOnSeveralDaysOnce() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for (int i = 0; i < 2_000; i++) {
+            monday.add(HyperLogLog.hash("203.0.113." + (i % 250), "agent-" + i / 250));
+            tuesday.add(HyperLogLog.hash("203.0.113." + (i % 250), "agent-" + (i / 250 + 4)));
+        }
+
+        HyperLogLog week = HyperLogLog.fromBytes(monday.toBytes());
+        week.merge(HyperLogLog.fromBytes(tuesday.toBytes()));
+
+        assertEquals(3_000, week.estimate(), 3_000 * 3 * HyperLogLog.RELATIVE_STANDARD_ERROR);
+    }
+
+    @Test
+    void toBytes_ShouldStaySparseForSmallSketchesAndRoundTrip() {
+        HyperLogLog small = new HyperLogLog();
+        small.add(HyperLogLog.hash("198.51.100.7", "curl/8.0"));
+        small.add(HyperLogLog.hash("198.51.100.7", null));
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            large.add(HyperLogLog.hash("visitor-" + i, null));
+        }
+
+        assertEquals(2 + 2 * 3, small.toBytes().length);
+        assertEquals(2, HyperLogLog.fromBytes(small.toBytes()).estimate());
+        assertEquals(2 + (1 << HyperLogLog.PRECISION), large.toBytes().length);
+        assertEquals(large.estimate(), HyperLogLog.fromBytes(large.toBytes()).estimate());
+        assertEquals(0, HyperLogLog.fromBytes(new byte[0]).estimate());
+    }
+}
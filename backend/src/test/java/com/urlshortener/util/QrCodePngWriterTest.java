@@ -0,0 +1,62 @@
+package com.urlshortener.util;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QrCodePngWriterTest {
+
+    private static final String UPI = "upi://pay?pa=test@upi&pn=Test_Merchant&am=1.00&cu=INR&tn=Payment_PAY-12AB34CD";
+
+    @Test
+    void write_ShouldProduceAOneBitPngThatDecodesToTheContent() throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode(UPI, BarcodeFormat.QR_CODE, 300, 300,
+                Map.of(EncodeHintType.CHARACTER_SET, "UTF-8"));
+
+        byte[] png = QrCodePngWriter.write(matrix);
+
+        assertEquals(1, png[24], "bit depth");
+        assertEquals(0, png[25], "grayscale");
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(300, image.getWidth());
+        assertEquals(300, image.getHeight());
+        for (int y = 0; y < 300; y += 7) {
+            for (int x = 0; x < 300; x += 3) {
+                assertEquals(matrix.get(x, y), (image.getRGB(x, y) & 0xffffff) == 0, x + "," + y);
+            }
+        }
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        assertEquals(UPI, new QRCodeReader().decode(bitmap).getText());
+    }
+
+    @Test
+    void write_ShouldHandleWidthsThatAreNotAMultipleOfEight() throws Exception {
+        BitMatrix matrix = new BitMatrix(13, 5);
+        matrix.setRegion(0, 0, 1, 5);
+        matrix.setRegion(12, 0, 1, 5);
+        matrix.setRegion(3, 2, 7, 1);
+
+        // Twice, so the second call runs on pooled buffers holding the first image
+        QrCodePngWriter.write(new BitMatrix(40, 40));
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(QrCodePngWriter.write(matrix)));
+
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 13; x++) {
+                assertEquals(matrix.get(x, y), (image.getRGB(x, y) & 0xffffff) == 0, x + "," + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpaceSavingTest {
+
+    @Test
+    void top_ShouldFindHeavyHittersInALongTail() {
+        SpaceSaving summary = new SpaceSaving(20);
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 100_000; i++) {
+            int roll = random.nextInt(100);
+            // 30% google, 15% twitter, the rest spread over 5,000 rare referrers
+            summary.offer(roll < 30 ? "https://google.com" : roll < 45 ? "https://t.co" : "https://site" + random.nextInt(5_000));
+        }
+
+        List<SpaceSaving.Item> top = summary.top(2);
+
+        assertEquals("https://google.com", top.get(0).value());
+        assertEquals("https://t.co", top.get(1).value());
+        for (SpaceSaving.Item item : top) {
+            long expected = item.value().equals("https://google.com") ? 30_000 : 15_000;
+            // The true count lies within [count - error, count]
+            assertTrue(item.count() >= expected * 0.97 && item.count() - item.error() <= expected * 1.03, item.toString());
+        }
+    }
+
+    @Test
+    void merge_ShouldCombineSummariesFromSeparateBatches() {
+        SpaceSaving first = new SpaceSaving(3);
+        SpaceSaving second = new SpaceSaving(3);
+        for (int i = 0; i < 50; i++) {
+            first.offer("chrome");
+            second.offer(i % 2 == 0 ? "firefox" : "chrome");
+        }
+        first.offer("curl");
+        second.offer("safari");
+        second.offer("wget");
+
+        SpaceSaving merged = SpaceSaving.fromBytes(first.toBytes(), 3);
+        merged.merge(SpaceSaving.fromBytes(second.toBytes(), 3));
+        List<SpaceSaving.Item> top = merged.top(10);
+
+        assertEquals(3, top.size());
+        assertEquals(new SpaceSaving.Item("chrome", 75, 0), top.get(0));
+        assertEquals("firefox", top.get(1).value());
+        assertTrue(top.get(1).count() >= 25);
+    }
+
+    @Test
+    void offer_ShouldTruncateLongValues() {
+        SpaceSaving summary = new SpaceSaving(4);
+        summary.offer("x".repeat(1_000));
+        summary.offer("x".repeat(SpaceSaving.MAX_VALUE_LENGTH + 1));
+
+        assertEquals(new SpaceSaving.Item("x".repeat(SpaceSaving.MAX_VALUE_LENGTH), 2, 0), summary.top(1).get(0));
+        assertTrue(SpaceSaving.fromBytes(new byte[0], 4).top(5).isEmpty());
+    }
+}
@@ -0,0 +1,199 @@
+package com.urlshortener.web;
+
+import com.urlshortener.ingest.ClickCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class LiveClickBrokerTest {
+
+    // url id -> owner
+    private static final Map<Long, Long> OWNERS = Map.of(10L, 1L, 11L, 1L, 12L, 1L, 20L, 2L);
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Map.Entry<Long, Long> owner : OWNERS.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(owner.getKey());
+                when(rs.getLong(2)).thenReturn(owner.getValue());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void tick_ShouldCoalesceFlushesIntoOneEventPerSubscriber() throws Exception {
+        LiveClickBroker broker = broker(Duration.ofSeconds(10), 1000, null);
+        broker.subscribe(1L);
+        broker.subscribe(2L);
+        awaitConnected();
+
+        broker.route(Map.of(10L, 2L, 11L, 1L, 20L, 7L, 99L, 4L));
+        broker.route(Map.of(10L, 3L));
+        broker.tick();
+
+        assertEquals(List.of(Map.of(10L, 5L, 11L, 1L)), emitters.get(0).awaitFrames(1));
+        assertEquals(List.of(Map.of(20L, 7L)), emitters.get(1).awaitFrames(1));
+        // Known owners are not looked up again
+        verify(jdbcTemplate, times(1)).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void tick_ShouldEvictASubscriberWhoseSendIsStuck() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LiveClickBroker broker = broker(Duration.ofMillis(50), 1000, release);
+        broker.subscribe(1L);
+        broker.subscribe(2L);
+        awaitConnected();
+
+        broker.route(Map.of(10L, 1L, 20L, 1L));
+        broker.tick();
+        emitters.get(0).sendStarted.await(5, TimeUnit.SECONDS);
+        emitters.get(1).awaitFrames(1);
+        Thread.sleep(100);
+        broker.tick();
+
+        assertEquals(1, broker.subscriberCount());
+        assertTrue(emitters.get(0).completed.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        // The healthy subscriber keeps receiving
+        broker.route(Map.of(20L, 3L));
+        broker.tick();
+        assertEquals(List.of(Map.of(20L, 1L), Map.of(20L, 3L)), emitters.get(1).awaitFrames(2));
+    }
+
+    @Test
+    void route_ShouldEvictASubscriberWithTooManyPendingLinks() throws Exception {
+        LiveClickBroker broker = broker(Duration.ofSeconds(10), 2, null);
+        broker.subscribe(1L);
+        awaitConnected();
+
+        broker.route(Map.of(10L, 1L, 11L, 1L, 12L, 1L));
+
+        assertEquals(0, broker.subscriberCount());
+        assertTrue(emitters.get(0).completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void publish_ShouldLookUpOwnersOffTheFlushingThread() throws Exception {
+        List<Thread> lookups = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            lookups.add(Thread.currentThread());
+            RowCallbackHandler handler = invocation.getArgument(2);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(10L);
+            when(rs.getLong(2)).thenReturn(1L);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        LiveClickBroker broker = broker(Duration.ofSeconds(10), 1000, null);
+        broker.subscribe(1L);
+        awaitConnected();
+
+        broker.publish(Map.of(10L, 4L));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitters.get(0).frames.isEmpty() && System.nanoTime() < deadline) {
+            broker.tick();
+            Thread.sleep(5);
+        }
+        assertEquals(List.of(Map.of(10L, 4L)), emitters.get(0).frames);
+        assertEquals(1, lookups.size());
+        assertNotSame(Thread.currentThread(), lookups.get(0));
+        broker.shutdown();
+    }
+
+    private LiveClickBroker broker(Duration slowConsumerTimeout, int maxPendingLinks, CountDownLatch blockFirst) {
+        return new LiveClickBroker(jdbcTemplate, mock(ClickCounter.class), new SimpleMeterRegistry(),
+                Duration.ofMinutes(1), slowConsumerTimeout, Duration.ofMinutes(30), maxPendingLinks, 100) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                RecordingEmitter emitter = new RecordingEmitter(emitters.isEmpty() ? blockFirst : null);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        for (RecordingEmitter emitter : emitters) {
+            assertTrue(emitter.connected.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /** Records the data of {@code clicks} events; optionally blocks on them until released. */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        final List<Object> frames = new CopyOnWriteArrayList<>();
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch sendStarted = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch block;
+
+        RecordingEmitter(CountDownLatch block) {
+            this.block = block;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            Object frame = null;
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof Map<?, ?>) {
+                    frame = data.getData();
+                }
+            }
+            if (frame == null) {
+                connected.countDown();
+                return;
+            }
+            sendStarted.countDown();
+            if (block != null) {
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            frames.add(frame);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        List<Object> awaitFrames(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (frames.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            return List.copyOf(frames);
+        }
+    }
+}
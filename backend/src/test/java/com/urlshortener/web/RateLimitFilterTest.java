@@ -0,0 +1,108 @@
+package com.urlshortener.web;
+
+import com.urlshortener.security.AuthenticatedUser;
+import com.urlshortener.security.JwtAuthFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private JwtAuthFilter jwtAuthFilter;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtAuthFilter = mock(JwtAuthFilter.class);
+        RateLimiter limiter = new RateLimiter(1000, Duration.ofMinutes(1), clock::get);
+        filter = new RateLimitFilter(limiter, Map.of(
+                RateLimitFilter.Route.REDIRECT, new RateLimiter.Limit(3, Duration.ofSeconds(3)),
+                RateLimitFilter.Route.SHORTEN, new RateLimiter.Limit(1, Duration.ofMinutes(1))),
+                jwtAuthFilter, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void doFilter_ShouldAllowABurstThenRejectWithRetryAfterUntilRefilled() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, redirect("203.0.113.9").getStatus());
+        }
+        MockHttpServletResponse rejected = redirect("203.0.113.9");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        // Other clients have their own bucket
+        assertEquals(200, redirect("198.51.100.7").getStatus());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(200, redirect("203.0.113.9").getStatus());
+        assertEquals(429, redirect("203.0.113.9").getStatus());
+    }
+
+    @Test
+    void doFilter_ShouldKeyOnTheSocketAddressNotForwardedHeaders() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/aBc123");
+            request.setRemoteAddr("203.0.113.9");
+            request.addHeader("X-Forwarded-For", "198.51.100." + i);
+            request.addHeader("X-Real-IP", "192.0.2." + i);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertEquals(i < 3 ? 200 : 429, response.getStatus());
+        }
+    }
+
+    @Test
+    void doFilter_ShouldLimitShorteningPerUserAndLeaveOtherRoutesAlone() throws Exception {
+        when(jwtAuthFilter.authenticate("token-a")).thenReturn(new AuthenticatedUser(1L, "a@example.com"));
+        when(jwtAuthFilter.authenticate("token-b")).thenReturn(new AuthenticatedUser(2L, "b@example.com"));
+
+        assertEquals(200, shorten("token-a").getStatus());
+        MockHttpServletResponse rejected = shorten("token-a");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("60", rejected.getHeader("Retry-After"));
+        assertEquals(200, shorten("token-b").getStatus());
+
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest login = new MockHttpServletRequest("POST", "/api/auth/login");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(login, response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    @Test
+    void routeOf_ShouldMatchOnlyTheLimitedRoutes() {
+        assertEquals(RateLimitFilter.Route.REDIRECT, RateLimitFilter.routeOf(new MockHttpServletRequest("GET", "/aBc123")));
+        assertEquals(RateLimitFilter.Route.AUTH, RateLimitFilter.routeOf(new MockHttpServletRequest("POST", "/api/auth/signup")));
+        assertEquals(RateLimitFilter.Route.SHORTEN, RateLimitFilter.routeOf(new MockHttpServletRequest("POST", "/api/url/shorten")));
+        assertNull(RateLimitFilter.routeOf(new MockHttpServletRequest("GET", "/api/url/user")));
+        assertNull(RateLimitFilter.routeOf(new MockHttpServletRequest("OPTIONS", "/api/auth/login")));
+    }
+
+    private MockHttpServletResponse redirect(String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/aBc123");
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletResponse shorten(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/url/shorten");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,125 @@
+package com.urlshortener.web;
+
+import com.urlshortener.cache.ResolvedUrl;
+import com.urlshortener.entity.RedirectPolicy;
+import com.urlshortener.service.AnalyticsService;
+import com.urlshortener.service.UrlService;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RedirectFastPathFilterTest {
+
+    @Mock
+    private UrlService urlService;
+
+    @Mock
+    private AnalyticsService analyticsService;
+
+    @Mock
+    private FilterChain chain;
+
+    private RedirectFastPathFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RedirectFastPathFilter(urlService, analyticsService);
+    }
+
+    @Test
+    void doFilter_ShouldRedirectAndTrackKnownCode() throws Exception {
+        when(urlService.resolve("aBc123")).thenReturn(new ResolvedUrl(7L, "https://example.com/page", true));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/aBc123");
+        request.setRemoteAddr("203.0.113.9");
+        request.addHeader("User-Agent", "curl/8.0");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(302, response.getStatus());
+        assertEquals("https://example.com/page", response.getHeader("Location"));
+        assertEquals("no-store", response.getHeader("Cache-Control"));
+        verify(analyticsService).trackClick(7L, "203.0.113.9", "curl/8.0", null);
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_ShouldApplyTheLinksRedirectPolicy() throws Exception {
+        when(urlService.resolve("perm01")).thenReturn(
+                new ResolvedUrl(9L, "https://example.com/new-home", true, RedirectPolicy.PERMANENT, 86_400));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/perm01"), response, chain);
+
+        assertEquals(301, response.getStatus());
+        assertEquals("https://example.com/new-home", response.getHeader("Location"));
+        assertEquals("public, max-age=86400", response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    void doFilter_ShouldPercentEncodeNonAsciiTargets() throws Exception {
+        when(urlService.resolve("intl01")).thenReturn(
+                new ResolvedUrl(5L, "https://example.com/café menu?q=%20ok", true));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/intl01"), response, chain);
+
+        assertEquals("https://example.com/caf%C3%A9%20menu?q=%20ok", response.getHeader("Location"));
+    }
+
+    @Test
+    void doFilter_ShouldAnswerUnknownAndInactiveCodesWith404() throws Exception {
+        when(urlService.resolve("unknown1")).thenReturn(ResolvedUrl.NOT_FOUND);
+        when(urlService.resolve("inactive")).thenReturn(new ResolvedUrl(8L, "https://example.com", false));
+
+        MockHttpServletResponse unknown = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/unknown1"), unknown, chain);
+        MockHttpServletResponse inactive = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/inactive"), inactive, chain);
+
+        assertEquals(404, unknown.getStatus());
+        assertTrue(unknown.getContentAsString().contains("\"message\":\"Short URL not found\""));
+        assertEquals(404, inactive.getStatus());
+        assertTrue(inactive.getContentAsString().contains("\"message\":\"This URL has been deactivated\""));
+        verify(analyticsService, never()).trackClick(anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void shortCodeOf_ShouldOnlyMatchSingleBase62Segments() {
+        assertEquals("aBc123", RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/aBc123")));
+        assertEquals("aBc123", RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("HEAD", "/aBc123")));
+
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("POST", "/aBc123")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/api/url/user")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/swagger-ui.html")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/api-docs")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/error")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/actuator")));
+        assertNull(RedirectFastPathFilter.shortCodeOf(new MockHttpServletRequest("GET", "/abcdefghijk")));
+    }
+
+    @Test
+    void doFilter_ShouldPassOtherRequestsThrough() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/url/user");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verify(urlService, never()).resolve(any());
+    }
+}
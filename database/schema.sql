@@ -18,21 +18,147 @@ CREATE TABLE urls (
     short_code VARCHAR(20) UNIQUE NOT NULL,
     total_clicks INT NOT NULL DEFAULT 0,
     is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    redirect_policy VARCHAR(20) NOT NULL DEFAULT 'TEMPORARY',
+    cache_max_age INTEGER NOT NULL DEFAULT 0,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- Start of the last writing transaction (database clock); other nodes sync changed links in this order
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- Short code ID blocks; each nextval leases INCREMENT BY consecutive IDs
+CREATE SEQUENCE short_code_seq MINVALUE 0 START WITH 0 INCREMENT BY 1000;
+
 -- Click Analytics Table
 CREATE TABLE click_analytics (
     id BIGSERIAL PRIMARY KEY,
     url_id BIGINT NOT NULL,
     clicked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     ip_address VARCHAR(45),
+    -- Ids in click_user_agents / click_referrers
+    user_agent_id INTEGER,
+    referrer_id INTEGER,
+    -- Legacy strings: only rows written before interning (until migrated) or values that could not be interned
     user_agent TEXT,
     referrer TEXT,
+    -- User agent classification: DeviceType / BrowserFamily / OsFamily ordinals
+    device_type SMALLINT,
+    browser_family SMALLINT,
+    os_family SMALLINT,
+    bot BOOLEAN,
     FOREIGN KEY (url_id) REFERENCES urls(id) ON DELETE CASCADE
 );
 
+-- Interned user agents and referrers, unique by md5 so values of any length can be indexed
+CREATE TABLE click_user_agents (
+    id SERIAL PRIMARY KEY,
+    value TEXT NOT NULL
+);
+CREATE UNIQUE INDEX click_user_agents_md5 ON click_user_agents ((md5(value)));
+
+CREATE TABLE click_referrers (
+    id SERIAL PRIMARY KEY,
+    value TEXT NOT NULL
+);
+CREATE UNIQUE INDEX click_referrers_md5 ON click_referrers ((md5(value)));
+
+-- With app.analytics.partitioning.enabled, ClickPartitionManager converts
+-- click_analytics into a table range-partitioned by month on clicked_at
+-- (click_analytics_YYYY_MM, plus click_analytics_legacy for the rows that
+-- existed before and click_analytics_default as a catch-all). The partitioned
+-- table's primary key is (id, clicked_at) and it keeps idx_click_analytics_url_id_id.
+
+-- Daily click rollups, maintained by the ingest writer alongside click_analytics
+CREATE TABLE click_daily_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, day)
+);
+
+CREATE TABLE user_click_daily_rollup (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_id, day)
+);
+
+-- Minute and hour rollups for time series; minute rows are deleted after app.analytics.rollup.minute-retention
+CREATE TABLE click_minute_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, bucket)
+);
+CREATE INDEX click_minute_rollup_bucket ON click_minute_rollup (bucket);
+
+CREATE TABLE user_click_minute_rollup (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_id, bucket)
+);
+CREATE INDEX user_click_minute_rollup_bucket ON user_click_minute_rollup (bucket);
+
+CREATE TABLE click_hourly_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, bucket)
+);
+
+CREATE TABLE user_click_hourly_rollup (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_id, bucket)
+);
+
+-- Per-day HyperLogLog sketch of unique visitors (IP address, user agent)
+CREATE TABLE click_daily_uniques (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (url_id, day)
+);
+
+-- Space-Saving summary of the most frequent referrers / user agents per URL
+CREATE TABLE click_top_values (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    field VARCHAR(16) NOT NULL,
+    summary BYTEA NOT NULL,
+    PRIMARY KEY (url_id, field)
+);
+
+-- Clicks per URL by user agent classification
+CREATE TABLE click_agent_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    device_type SMALLINT NOT NULL,
+    browser_family SMALLINT NOT NULL,
+    os_family SMALLINT NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, device_type, browser_family, os_family)
+);
+
+-- Raw clicks with id below backfill_before_id predate the rollups
+CREATE TABLE click_rollup_state (
+    id INT PRIMARY KEY CHECK (id = 1),
+    backfill_before_id BIGINT NOT NULL
+);
+
+-- Backfill chunks already rolled up
+CREATE TABLE click_rollup_backfill (
+    chunk_start BIGINT PRIMARY KEY,
+    completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Lease serializing ClickPartitionManager runs across nodes
+CREATE TABLE click_partition_lease (
+    id INT PRIMARY KEY CHECK (id = 1),
+    holder TEXT NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
 -- Payments Table
 CREATE TABLE payments (
     id BIGSERIAL PRIMARY KEY,
@@ -48,7 +174,10 @@ CREATE TABLE payments (
 -- Create indexes for better query performance
 CREATE INDEX idx_urls_user_id ON urls(user_id);
 CREATE INDEX idx_urls_short_code ON urls(short_code);
+CREATE INDEX idx_urls_updated_at ON urls(updated_at);
 CREATE INDEX idx_click_analytics_url_id ON click_analytics(url_id);
 CREATE INDEX idx_click_analytics_clicked_at ON click_analytics(clicked_at);
+-- Keyset order for the raw click export
+CREATE INDEX idx_click_analytics_url_id_id ON click_analytics(url_id, id);
 CREATE INDEX idx_payments_user_id ON payments(user_id);
 CREATE INDEX idx_payments_reference_id ON payments(payment_reference_id);
@@ -0,0 +1,127 @@
+-- URL Shortener SaaS: upgrade an existing database to the current schema
+-- PostgreSQL Database
+--
+-- Safe to run more than once. New installs use schema.sql instead.
+-- Run it with plain psql (no --single-transaction): the index on
+-- click_analytics is built CONCURRENTLY so clicks keep being written.
+--
+--   psql -U YOUR_USERNAME -d urlshortener -f database/upgrade.sql
+
+-- URLs: redirect settings and the change cursor other nodes sync from
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS redirect_policy VARCHAR(20) NOT NULL DEFAULT 'TEMPORARY';
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS cache_max_age INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE urls ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_urls_updated_at ON urls(updated_at);
+
+-- Short code ID blocks; each nextval leases INCREMENT BY consecutive IDs
+CREATE SEQUENCE IF NOT EXISTS short_code_seq MINVALUE 0 START WITH 0 INCREMENT BY 1000;
+
+-- Click Analytics: interned strings and user agent classification (nullable, so only the catalog changes)
+ALTER TABLE click_analytics ADD COLUMN IF NOT EXISTS user_agent_id INTEGER;
+ALTER TABLE click_analytics ADD COLUMN IF NOT EXISTS referrer_id INTEGER;
+ALTER TABLE click_analytics ADD COLUMN IF NOT EXISTS device_type SMALLINT;
+ALTER TABLE click_analytics ADD COLUMN IF NOT EXISTS browser_family SMALLINT;
+ALTER TABLE click_analytics ADD COLUMN IF NOT EXISTS os_family SMALLINT;
+ALTER TABLE click_analytics ADD COLUMN IF NOT EXISTS bot BOOLEAN;
+-- Keyset order for the raw click export
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_click_analytics_url_id_id ON click_analytics(url_id, id);
+
+-- Interned user agents and referrers
+CREATE TABLE IF NOT EXISTS click_user_agents (
+    id SERIAL PRIMARY KEY,
+    value TEXT NOT NULL
+);
+CREATE UNIQUE INDEX IF NOT EXISTS click_user_agents_md5 ON click_user_agents ((md5(value)));
+
+CREATE TABLE IF NOT EXISTS click_referrers (
+    id SERIAL PRIMARY KEY,
+    value TEXT NOT NULL
+);
+CREATE UNIQUE INDEX IF NOT EXISTS click_referrers_md5 ON click_referrers ((md5(value)));
+
+-- Daily, minute and hour click rollups
+CREATE TABLE IF NOT EXISTS click_daily_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, day)
+);
+
+CREATE TABLE IF NOT EXISTS user_click_daily_rollup (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_id, day)
+);
+
+CREATE TABLE IF NOT EXISTS click_minute_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, bucket)
+);
+CREATE INDEX IF NOT EXISTS click_minute_rollup_bucket ON click_minute_rollup (bucket);
+
+CREATE TABLE IF NOT EXISTS user_click_minute_rollup (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_id, bucket)
+);
+CREATE INDEX IF NOT EXISTS user_click_minute_rollup_bucket ON user_click_minute_rollup (bucket);
+
+CREATE TABLE IF NOT EXISTS click_hourly_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS user_click_hourly_rollup (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_id, bucket)
+);
+
+-- Unique visitor sketches, top values and user agent breakdowns
+CREATE TABLE IF NOT EXISTS click_daily_uniques (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (url_id, day)
+);
+
+CREATE TABLE IF NOT EXISTS click_top_values (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    field VARCHAR(16) NOT NULL,
+    summary BYTEA NOT NULL,
+    PRIMARY KEY (url_id, field)
+);
+
+CREATE TABLE IF NOT EXISTS click_agent_rollup (
+    url_id BIGINT NOT NULL REFERENCES urls(id) ON DELETE CASCADE,
+    device_type SMALLINT NOT NULL,
+    browser_family SMALLINT NOT NULL,
+    os_family SMALLINT NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (url_id, device_type, browser_family, os_family)
+);
+
+-- Backfill of clicks recorded before the rollups; the boundary row is written by the backend on startup
+CREATE TABLE IF NOT EXISTS click_rollup_state (
+    id INT PRIMARY KEY CHECK (id = 1),
+    backfill_before_id BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS click_rollup_backfill (
+    chunk_start BIGINT PRIMARY KEY,
+    completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Lease serializing ClickPartitionManager runs across nodes
+CREATE TABLE IF NOT EXISTS click_partition_lease (
+    id INT PRIMARY KEY CHECK (id = 1),
+    holder TEXT NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
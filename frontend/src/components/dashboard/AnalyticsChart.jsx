@@ -12,13 +12,15 @@ import {
 import './AnalyticsChart.css';
 
 const AnalyticsChart = ({ analytics }) => {
-    // Convert analytics object to array for Recharts
-    const chartData = Object.entries(analytics || {}).map(([date, clicks]) => ({
-        date: new Date(date).toLocaleDateString('en-US', { month: 'short', day: 'numeric' }),
+    // Dense series: point i starts at start + i * stepSeconds
+    const start = analytics && analytics.start ? new Date(analytics.start).getTime() : 0;
+    const chartData = (analytics && analytics.clicks ? analytics.clicks : []).map((clicks, i) => ({
+        date: new Date(start + i * analytics.stepSeconds * 1000)
+            .toLocaleDateString('en-US', { month: 'short', day: 'numeric' }),
         clicks: clicks,
     }));
 
-    if (chartData.length === 0) {
+    if (!analytics || !analytics.totalClicks) {
         return (
             <div className="analytics-container">
                 <h2>Analytics</h2>
@@ -29,7 +31,7 @@ const AnalyticsChart = ({ analytics }) => {
         );
     }
 
-    const totalClicks = chartData.reduce((sum, data) => sum + data.clicks, 0);
+    const totalClicks = analytics.totalClicks;
 
     return (
         <div className="analytics-container">
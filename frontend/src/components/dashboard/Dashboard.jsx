@@ -7,15 +7,38 @@ import './Dashboard.css';
 
 const Dashboard = () => {
     const [urls, setUrls] = useState([]);
-    const [analytics, setAnalytics] = useState({});
+    const [analytics, setAnalytics] = useState(null);
     const [loading, setLoading] = useState(true);
     const [activeTab, setActiveTab] = useState('shorten');
 
     useEffect(() => {
         fetchUrls();
         fetchAnalytics();
+        // Live deltas, at most one update per second, keep the totals current without refetching
+        return urlService.subscribeToClicks(applyClickDeltas);
     }, []);
 
+    const applyClickDeltas = (deltas) => {
+        setUrls((current) => current.map((url) => (
+            deltas[url.id] ? { ...url, totalClicks: url.totalClicks + deltas[url.id] } : url
+        )));
+        const clicks = Object.values(deltas).reduce((sum, delta) => sum + delta, 0);
+        setAnalytics((current) => {
+            if (!current || !current.clicks || current.clicks.length === 0) {
+                return current;
+            }
+            // Only the last point can still be growing
+            const last = current.clicks.length - 1;
+            const end = new Date(current.start).getTime() + (last + 1) * current.stepSeconds * 1000;
+            if (Date.now() >= end) {
+                return current;
+            }
+            const series = [...current.clicks];
+            series[last] += clicks;
+            return { ...current, clicks: series, totalClicks: current.totalClicks + clicks };
+        });
+    };
+
     const fetchUrls = async () => {
         try {
             const data = await urlService.getUserUrls();
@@ -14,13 +14,76 @@ export const urlService = {
         return response.data;
     },
 
-    getUserAnalytics: async () => {
-        const response = await api.get('/analytics/user');
+    getUserAnalytics: async (granularity = 'day') => {
+        const response = await api.get('/analytics/user/series', { params: { granularity } });
         return response.data;
     },
 
     getUrlAnalytics: async (shortCode) => {
         const response = await api.get(`/analytics/${shortCode}`);
         return response.data;
+    },
+
+    /**
+     * Streams click count deltas ({ urlId: clicks }) of the user's URLs from
+     * the server-sent event endpoint, reconnecting after errors. fetch is used
+     * instead of EventSource so the JWT can go in the Authorization header.
+     * Returns a function that closes the stream.
+     */
+    subscribeToClicks: (onDeltas) => {
+        const controller = new AbortController();
+        let retryDelay = 1000;
+
+        const connect = async () => {
+            while (!controller.signal.aborted) {
+                try {
+                    const response = await fetch(`${api.defaults.baseURL}/analytics/live`, {
+                        headers: {
+                            Accept: 'text/event-stream',
+                            Authorization: `Bearer ${localStorage.getItem('token')}`,
+                        },
+                        signal: controller.signal,
+                    });
+                    if (response.status === 401) {
+                        return;
+                    }
+                    if (!response.ok) {
+                        throw new Error(`Live click stream failed: ${response.status}`);
+                    }
+                    retryDelay = 1000;
+                    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+                    let buffer = '';
+                    for (;;) {
+                        const { value, done } = await reader.read();
+                        if (done) {
+                            break;
+                        }
+                        buffer += value;
+                        // Events end with a blank line; comments (heartbeats) carry no data
+                        let end;
+                        while ((end = buffer.indexOf('\n\n')) >= 0) {
+                            const data = buffer.slice(0, end).split('\n')
+                                .filter((line) => line.startsWith('data:'))
+                                .map((line) => line.slice(5))
+                                .join('\n');
+                            buffer = buffer.slice(end + 2);
+                            if (data) {
+                                onDeltas(JSON.parse(data));
+                            }
+                        }
+                    }
+                } catch (err) {
+                    if (controller.signal.aborted) {
+                        return;
+                    }
+                    console.error('Live click stream interrupted:', err);
+                }
+                await new Promise((resolve) => setTimeout(resolve, retryDelay));
+                retryDelay = Math.min(retryDelay * 2, 30000);
+            }
+        };
+
+        connect();
+        return () => controller.abort();
     }
 };